@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import com.lightbend.paradox.{ErrorCollector, NullLogger, PagedErrorContext, ParadoxProcessor, ThrowingErrorContext}
+import com.lightbend.paradox.markdown.{Frontin, Page, Path, Reader, Writer}
+import com.lightbend.paradox.template.PageTemplate
+import com.lightbend.paradox.tree.Tree.{Forest, Location}
+
+/**
+ * Generated pages and sites for the benchmarks.
+ */
+object Fixtures {
+
+  val properties: Map[String, String] = Map(
+    "project.name"          -> "bench",
+    "project.version"       -> "1.0.0",
+    "scaladoc.base_url"     -> "https://example.com/api/",
+    "extref.issue.base_url" -> "https://github.com/example/project/issues/%s"
+  )
+
+  val smallPage: String =
+    """# Small page
+      |
+      |A paragraph with *emphasis*, `code` and a [link](https://example.com).
+      |
+      |## Section
+      |
+      |* one
+      |* two
+      |
+      |```scala
+      |val x = 1
+      |```
+      |""".stripMargin
+
+  val hugePage: String = (1 to 2000).map(hugeSection).mkString("# Huge page\n\n", "\n", "")
+
+  private def hugeSection(n: Int): String =
+    s"""## Section $n
+       |
+       |Paragraph $n with *emphasis*, **strong text**, `inline code` and a [link](https://example.com/$n).
+       |
+       |1. First item
+       |2. Second item, with a longer line of text
+       |
+       || Column | Value |
+       ||--------|-------|
+       || $n     | ${n * 2} |
+       |
+       |```scala
+       |def f$n(x: Int): Int = x + $n
+       |```
+       |""".stripMargin
+
+  /**
+   * Page using the default directives, which refers to `other.md` and `snippet.scala` next to it.
+   */
+  val directivePage: String = (1 to 200).map(directiveSection).mkString("# Directives\n\n", "\n", "")
+
+  private def directiveSection(n: Int): String =
+    s"""## Directives $n
+       |
+       |See @ref[other](other.md#other), @scaladoc[Page](com.example.Page),
+       |@extref[#$n](issue:$n) and @var[project.version].
+       |
+       |@@snip [snippet.scala](snippet.scala) { #example$n }
+       |
+       |@@@ note
+       |
+       |Note $n with `code`.
+       |
+       |@@@
+       |""".stripMargin
+
+  val otherPage: String = "# Other\n\nAnother page.\n"
+
+  val snippet: String = (1 to 200).map { n =>
+    s"""object Example$n {
+       |  // #example$n
+       |  def example$n(x: Int): Int =
+       |    x * $n
+       |  // #example$n
+       |}
+       |""".stripMargin
+  }.mkString
+
+  val pages: Map[String, String] = Map("small" -> smallPage, "huge" -> hugePage, "directives" -> directivePage)
+
+  val template: String =
+    """<!DOCTYPE html>
+      |<html>
+      |<head><title>$page.title$ · $page.properties.("project.name")$</title><base href="$page.base$"></head>
+      |<body>
+      |<nav>$page.navigation$</nav>
+      |<div class="breadcrumbs">$page.breadcrumbs$</div>
+      |$if(page.subheaders)$<aside>$page.toc$</aside>$endif$
+      |<main>$page.content$</main>
+      |<footer>$page.prev.html$ $page.next.html$ $page.source_url$</footer>
+      |</body>
+      |</html>
+      |""".stripMargin
+
+  /**
+   * Write a page along with the page and snippet that the directive page refers to, returning the page mappings.
+   */
+  def writePage(dir: File, text: String): Seq[(File, String)] = {
+    write(new File(dir, "snippet.scala"), snippet)
+    Seq("page.md" -> text, "other.md" -> otherPage).map { case (path, text) =>
+      val file = new File(dir, path)
+      write(file, text)
+      file -> path
+    }
+  }
+
+  /**
+   * Write a site with an index page, and sections of up to 100 pages each.
+   */
+  def writeSite(dir: File, pageCount: Int): Seq[(File, String)] = {
+    val sections = (1 to pageCount).grouped(100).toList.zipWithIndex.map { case (pages, i) => (i + 1, pages) }
+    val index    = sections
+      .map { case (s, _) => s"* [Section $s](section-$s/index.md)" }
+      .mkString("# Site\n\n@@@ index\n\n", "\n", "\n\n@@@\n")
+    val sectionPages = sections.flatMap { case (s, pages) =>
+      val sectionIndex = pages
+        .map(p => s"* [Page $p](page-$p.md)")
+        .mkString(s"# Section $s\n\n@@@ index\n\n", "\n", "\n\n@@@\n")
+      (s"section-$s/index.md" -> sectionIndex) :: pages.toList.map { p =>
+        val next = if (pages.contains(p + 1)) p + 1 else pages.head
+        s"section-$s/page-$p.md" -> sitePage(p, next)
+      }
+    }
+    ("index.md" -> index :: sectionPages).map { case (path, text) =>
+      val file = new File(dir, path)
+      write(file, text)
+      file -> path
+    }
+  }
+
+  private def sitePage(n: Int, next: Int): String =
+    s"""# Page $n
+       |
+       |Introduction to page $n, with *emphasis* and `code`, followed by @ref[the next page](page-$next.md).
+       |
+       |## Usage
+       |
+       |* First
+       |* Second
+       |
+       |```scala
+       |val page$n = "page $n"
+       |```
+       |
+       |## Details
+       |
+       |Version @var[project.version] of @var[project.name].
+       |
+       |### More details
+       |
+       |Some more text.
+       |""".stripMargin
+
+  /**
+   * Parse the pages of a site.
+   */
+  def forest(mappings: Seq[(File, String)], processor: ParadoxProcessor = new ParadoxProcessor): Forest[Page] = {
+    val parsed = mappings.map { case (file, path) =>
+      val frontin = Frontin(file)
+      val root    = processor.parseAndProcessMarkdown(
+        file,
+        frontin.body,
+        properties ++ frontin.header,
+        new ThrowingErrorContext
+      )
+      (file, path, root, frontin.header)
+    }
+    Page.forest(parsed, Path.replaceSuffix(Writer.DefaultSourceSuffix, Writer.DefaultTargetSuffix), properties)
+  }
+
+  /**
+   * All locations of a site, in order.
+   */
+  def locations(forest: Forest[Page]): Vector[Location[Page]] =
+    Iterator.iterate(Location.forest(forest))(_.flatMap(_.next)).takeWhile(_.isDefined).map(_.get).toVector
+
+  /**
+   * Location of the page with this target path.
+   */
+  def location(forest: Forest[Page], path: String): Location[Page] =
+    locations(forest).find(_.tree.label.path == path).get
+
+  def context(location: Location[Page], paths: Map[String, Page], reader: Reader, writer: Writer): Writer.Context =
+    Writer.Context(
+      location,
+      paths,
+      reader,
+      writer,
+      new PagedErrorContext(new ErrorCollector, location.tree.label),
+      NullLogger,
+      properties = properties
+    )
+
+  def pageTemplate(dir: File): PageTemplate = {
+    write(new File(dir, "page.st"), template)
+    new PageTemplate(dir)
+  }
+
+  def temporaryDirectory(prefix: String): File =
+    Files.createTempDirectory(s"paradox-bench-$prefix").toFile
+
+  def delete(file: File): Unit = {
+    Option(file.listFiles).foreach(_.foreach(delete))
+    file.delete()
+  }
+
+  def write(file: File, text: String): Unit = {
+    file.getParentFile.mkdirs()
+    Files.write(file.toPath, text.getBytes(StandardCharsets.UTF_8))
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.paradox.ParadoxProcessor
+import com.lightbend.paradox.markdown.{Page, Reader, TableOfContents, Writer}
+import com.lightbend.paradox.template.PageTemplate
+import org.openjdk.jmh.annotations._
+
+/**
+ * Writing a page through its template, with the page contents already rendered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class PageTemplateBenchmark {
+
+  @Param(Array("small", "huge"))
+  var page: String = _
+
+  var directory: File                 = _
+  var template: PageTemplate          = _
+  var contents: PageTemplate.Contents = _
+  var target: File                    = _
+
+  @Setup
+  def setup(): Unit = {
+    directory = Fixtures.temporaryDirectory("template")
+    val processor = new ParadoxProcessor
+    val forest    = Fixtures.forest(Fixtures.writePage(new File(directory, "site"), Fixtures.pages(page)), processor)
+    val location  = Fixtures.location(forest, "page.html")
+    val writer    = new Writer
+    val context   = Fixtures.context(location, Page.allPages(forest), new Reader, writer)
+    val navToc    = new TableOfContents(pages = true, headers = true, ordered = false, maxDepth = 2)
+    val pageToc   = new TableOfContents(pages = false, headers = true, ordered = false, maxDepth = 2)
+    template = Fixtures.pageTemplate(new File(directory, "templates"))
+    contents = processor.PageContents(Nil, Map.empty, location, writer, context, navToc, pageToc)
+    target = new File(directory, "page.html")
+    // the parts of the page are rendered once, so only the template is measured
+    template.write(template.defaultName, contents, target)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Fixtures.delete(directory)
+
+  @Benchmark
+  def write(): File = template.write(template.defaultName, contents, target)
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.paradox.markdown.Reader
+import org.openjdk.jmh.annotations._
+import org.pegdown.ast.RootNode
+
+/**
+ * Parsing markdown pages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class ReaderBenchmark {
+
+  @Param(Array("small", "huge", "directives"))
+  var page: String = _
+
+  var reader: Reader = _
+  var text: String   = _
+
+  @Setup
+  def setup(): Unit = {
+    reader = new Reader
+    text = Fixtures.pages(page)
+  }
+
+  @Benchmark
+  def read(): RootNode = reader.read(text)
+
+}
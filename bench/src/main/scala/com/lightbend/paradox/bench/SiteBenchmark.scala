@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.paradox.{NullLogger, ParadoxProcessor}
+import com.lightbend.paradox.markdown.Writer
+import com.lightbend.paradox.template.PageTemplate
+import org.openjdk.jmh.annotations._
+
+/**
+ * Building a whole generated site, from reading the sources to writing the pages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.SingleShotTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+class SiteBenchmark {
+
+  @Param(Array("100", "1000", "10000"))
+  var pages: Int = _
+
+  @Param(Array("1", "4"))
+  var parallelism: Int = _
+
+  var directory: File               = _
+  var mappings: Seq[(File, String)] = _
+  var template: PageTemplate        = _
+  var output: File                  = _
+
+  @Setup
+  def setup(): Unit = {
+    directory = Fixtures.temporaryDirectory("site")
+    mappings = Fixtures.writeSite(new File(directory, "source"), pages)
+    template = Fixtures.pageTemplate(new File(directory, "templates"))
+  }
+
+  @Setup(Level.Iteration)
+  def clearOutput(): Unit = {
+    output = new File(directory, "output")
+    Fixtures.delete(output)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Fixtures.delete(directory)
+
+  @Benchmark
+  def process(): Either[String, Seq[(File, String)]] =
+    new ParadoxProcessor(parallelism = parallelism).process(
+      mappings,
+      leadingBreadcrumbs = Nil,
+      outputDirectory = output,
+      sourceSuffix = Writer.DefaultSourceSuffix,
+      targetSuffix = Writer.DefaultTargetSuffix,
+      illegalLinkPath = Writer.DefaultIllegalLinkPath,
+      groups = Map.empty,
+      properties = Fixtures.properties,
+      navDepth = 2,
+      navExpandDepth = None,
+      navIncludeHeaders = true,
+      expectedRoots = List("index.html"),
+      pageTemplate = template,
+      logger = NullLogger
+    )
+
+}
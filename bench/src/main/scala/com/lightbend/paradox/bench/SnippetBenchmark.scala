@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.paradox.markdown.{Snippet, SnippetFile}
+import org.openjdk.jmh.annotations._
+
+/**
+ * Extracting labelled snippets from a source file, reading the file each time or from the label index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class SnippetBenchmark {
+
+  @Param(Array("example1", "example100", "example200"))
+  var label: String = _
+
+  var directory: File     = _
+  var file: File          = _
+  var source: SnippetFile = _
+
+  @Setup
+  def setup(): Unit = {
+    directory = Fixtures.temporaryDirectory("snippet")
+    file = new File(directory, "snippet.scala")
+    Fixtures.write(file, Fixtures.snippet)
+    source = SnippetFile.read(file)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Fixtures.delete(directory)
+
+  @Benchmark
+  def extractFromFile(): String = Snippet(file, Seq(label), filterLabelLines = true)._1
+
+  @Benchmark
+  def extractFromIndex(): String = Snippet.extract(source, Seq(label), filterLabelLines = true)
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.paradox.markdown.{NavigationCache, Page, Reader, TableOfContents, Writer}
+import com.lightbend.paradox.tree.Tree.Location
+import org.openjdk.jmh.annotations._
+import org.pegdown.ast.Node
+
+/**
+ * Site navigation for a page in the middle of a site, built from the root of the site.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class TableOfContentsBenchmark {
+
+  @Param(Array("100", "1000"))
+  var pages: Int = _
+
+  var directory: File             = _
+  var toc: TableOfContents        = _
+  var writer: Writer              = _
+  var navigation: NavigationCache = _
+  var location: Location[Page]    = _
+  var context: Writer.Context     = _
+
+  @Setup
+  def setup(): Unit = {
+    directory = Fixtures.temporaryDirectory("toc")
+    val forest    = Fixtures.forest(Fixtures.writeSite(directory, pages))
+    val locations = Fixtures.locations(forest)
+    toc = new TableOfContents(pages = true, headers = true, ordered = false, maxDepth = 2)
+    writer = new Writer
+    navigation = new NavigationCache(toc, writer)
+    location = locations(locations.size / 2)
+    context = Fixtures.context(location, Page.allPages(forest), new Reader, writer)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Fixtures.delete(directory)
+
+  @Benchmark
+  def root(): Node = toc.root(location)
+
+  @Benchmark
+  def writeRoot(): String = writer.writeNavigation(toc.root(location), context)
+
+  @Benchmark
+  def writeCached(): String = navigation(location, context)
+
+}
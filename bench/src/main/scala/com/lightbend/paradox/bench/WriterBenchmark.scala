@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.bench
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.lightbend.paradox.markdown.{Page, Reader, Writer}
+import com.lightbend.paradox.tree.Tree.Location
+import org.openjdk.jmh.annotations._
+
+/**
+ * Rendering parsed markdown pages to HTML, with the default directives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class WriterBenchmark {
+
+  @Param(Array("small", "huge", "directives"))
+  var page: String = _
+
+  var directory: File          = _
+  var writer: Writer           = _
+  var location: Location[Page] = _
+  var context: Writer.Context  = _
+
+  @Setup
+  def setup(): Unit = {
+    directory = Fixtures.temporaryDirectory("writer")
+    val reader = new Reader
+    val forest = Fixtures.forest(Fixtures.writePage(directory, Fixtures.pages(page)))
+    writer = new Writer
+    location = Fixtures.location(forest, "page.html")
+    context = Fixtures.context(location, Page.allPages(forest), reader, writer)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Fixtures.delete(directory)
+
+  @Benchmark
+  def write(): String = writer.write(location.tree.label.markdown, context)
+
+}
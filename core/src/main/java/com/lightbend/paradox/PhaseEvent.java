@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a phase of a build, such as parsing or rendering a page.
+ */
+@Name("com.lightbend.paradox.Phase")
+@Label("Paradox Phase")
+@Description("A phase of a Paradox build, for a page if the phase is for a single page")
+@Category("Paradox")
+public class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Page")
+    public String page;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread during the phase, including nested phases")
+    @DataAmount
+    public long allocated;
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.{File, FileInputStream, InputStreamReader, Reader}
+import java.nio.charset.StandardCharsets
+import org.jsoup.parser.Parser
+
+/**
+ * Index of the anchors that link fragments can refer to in HTML pages: the `id` of any element and the `name` of `a`
+ * elements. Pages are scanned as a stream of tags, without building a document, so only the anchors are kept in
+ * memory.
+ */
+object AnchorIndex {
+
+  /**
+   * Anchors of each page, by path, scanning pages in parallel.
+   */
+  def apply(pages: Seq[(String, File)], parallel: Parallel): Map[String, Set[String]] =
+    pages.map(_._1).zip(parallel.map(pages)(page => anchors(page._2))).toMap
+
+  /**
+   * Anchors of an HTML file in UTF-8.
+   */
+  def anchors(file: File): Set[String] = {
+    val reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)
+    try anchors(reader)
+    finally reader.close()
+  }
+
+  /**
+   * Anchors of an HTML document.
+   */
+  def anchors(reader: Reader): Set[String] = {
+    val in      = new Scanner(reader)
+    val anchors = Set.newBuilder[String]
+    while (in.peek >= 0) {
+      if (in.next() == '<') tag(in, anchors += _)
+    }
+    anchors.result()
+  }
+
+  // elements whose contents are text, which may look like tags
+  private val rawTextElements = Set("script", "style", "textarea", "title")
+
+  // scan the rest of a tag, after its opening '<'
+  private def tag(in: Scanner, add: String => Unit): Unit =
+    if (in.peek == '!') {
+      in.next()
+      if (in.peek == '-') {
+        in.next()
+        if (in.peek == '-') {
+          in.next()
+          if (in.peek == '>') in.next() else in.skipPast("-->")
+        } else in.skipPast(">")
+      } else in.skipPast(">")
+    } else if (in.peek == '/' || in.peek == '?') {
+      in.skipPast(">")
+    } else if (in.peek >= 0 && Character.isLetter(in.peek)) {
+      val name = in.readWhile(c => !isSpace(c) && c != '/' && c != '>').toLowerCase
+      attributes(in, name, add)
+      if (rawTextElements(name)) in.skipPast("</" + name)
+    }
+
+  private def attributes(in: Scanner, element: String, add: String => Unit): Unit = {
+    var done = false
+    while (!done) {
+      in.skipWhile(c => isSpace(c) || c == '/')
+      if (in.peek < 0 || in.peek == '>') {
+        in.next()
+        done = true
+      } else {
+        val name = in.readWhile(c => !isSpace(c) && c != '=' && c != '/' && c != '>').toLowerCase
+        if (name.isEmpty) in.next()
+        in.skipWhile(isSpace)
+        if (in.peek == '=') {
+          in.next()
+          in.skipWhile(isSpace)
+          val value =
+            if (in.peek == '"' || in.peek == '\'') {
+              val quote = in.next()
+              val value = in.readWhile(_ != quote)
+              in.next()
+              value
+            } else in.readWhile(c => !isSpace(c) && c != '>')
+          if (name == "id" || (name == "name" && element == "a")) {
+            add(if (value.indexOf('&') >= 0) Parser.unescapeEntities(value, true) else value)
+          }
+        }
+      }
+    }
+  }
+
+  private def isSpace(c: Int): Boolean =
+    c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f'
+
+  /**
+   * Buffered character input with one character of lookahead.
+   */
+  private final class Scanner(reader: Reader) {
+    private val buffer = new Array[Char](8192)
+    private var pos    = 0
+    private var end    = 0
+
+    private def available: Boolean = pos < end || {
+      end = reader.read(buffer)
+      pos = 0
+      end > 0
+    }
+
+    def peek: Int = if (available) buffer(pos) else -1
+
+    def next(): Int =
+      if (available) {
+        pos += 1
+        buffer(pos - 1)
+      } else -1
+
+    def readWhile(p: Int => Boolean): String = {
+      val builder = new java.lang.StringBuilder
+      while (peek >= 0 && p(peek)) builder.append(next().toChar)
+      builder.toString
+    }
+
+    def skipWhile(p: Int => Boolean): Unit =
+      while (peek >= 0 && p(peek)) next()
+
+    // skip past the next occurrence of a lower case string, ignoring case
+    def skipPast(s: String): Unit = {
+      val recent = new Array[Char](s.length)
+      var count  = 0
+      var found  = false
+      while (!found && peek >= 0) {
+        recent(count % s.length) = Character.toLowerCase(next().toChar)
+        count += 1
+        found = count >= s.length && s.indices.forall(i => recent((count + i) % s.length) == s(i))
+      }
+    }
+  }
+}
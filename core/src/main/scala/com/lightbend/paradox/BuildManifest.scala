@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import com.lightbend.paradox.markdown.{Header, IncludeNode, Page, Writer}
+import com.lightbend.paradox.markdown.SourceDirective
+import com.lightbend.paradox.tree.Tree.{Forest, Location}
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import org.pegdown.ast.{DirectiveNode, Node, TextNode}
+
+import com.lightbend.paradox.compat.Implicits._
+import scala.util.Try
+
+/**
+ * Record of the inputs of every page in a previous build, used by incremental builds to skip re-rendering pages whose
+ * output can't have changed.
+ *
+ * @param site
+ *   digest of everything that can affect all pages: properties, settings, templates and the site structure
+ * @param pages
+ *   inputs of each rendered page, by target path
+ */
+case class BuildManifest(site: String, pages: Map[String, BuildManifest.PageInputs]) {
+
+  /**
+   * Whether the page at this path was built from the same inputs.
+   */
+  def isCurrent(path: String, inputs: BuildManifest.PageInputs): Boolean =
+    pages.get(path).contains(inputs)
+}
+
+object BuildManifest {
+
+  val Filename: String = ".paradox-manifest"
+
+  private val FormatVersion = "paradox-manifest 1"
+  private val Separator     = '\t'
+
+  /**
+   * Digests of a page source and of every file it includes or snips, by file path.
+   */
+  case class PageInputs(source: String, dependencies: Map[String, String])
+
+  /**
+   * Record the current inputs of a page. Returns None when the dependencies of the page can't be determined, in which
+   * case the page is always re-rendered.
+   */
+  def pageInputs(page: Page, properties: Map[String, String]): Option[PageInputs] =
+    dependencies(page.file, page.markdown, properties).map { files =>
+      PageInputs(Digest.file(page.file), files.map(f => f.getPath -> Digest.file(f)).toMap)
+    }
+
+  /**
+   * Files that rendering the markdown reads: included markdown, and snippet and fiddle sources.
+   */
+  def dependencies(file: File, root: Node, properties: Map[String, String]): Option[Seq[File]] = {
+    def resolve(name: String, source: String, from: File): Option[File] =
+      Try(
+        SourceDirective.resolveFile(name, Writer.substituteVarsInString(source, properties), from, properties)
+      ).toOption
+
+    def collect(node: Node, from: File): Option[Seq[File]] = node match {
+      case include: IncludeNode =>
+        sequence(include.included.getChildren.asScala.toSeq.map(collect(_, include.includedFrom)))
+          .map(include.includedFrom +: _)
+      case directive: DirectiveNode if directive.name == "snip" || directive.name == "fiddle" =>
+        directive.source match {
+          case direct: DirectiveNode.Source.Direct => resolve(directive.name, direct.value, from).map(Seq(_))
+          case _                                   => None // reference sources aren't resolved here
+        }
+      case other =>
+        sequence(other.getChildren.asScala.toSeq.map(collect(_, from)))
+    }
+
+    collect(root, file).map(_.distinct)
+  }
+
+  private def sequence(results: Seq[Option[Seq[File]]]): Option[Seq[File]] =
+    if (results.exists(_.isEmpty)) None else Some(results.flatMap(_.toSeq.flatten))
+
+  /**
+   * Description of the linked pages in a site, in depth-first order: everything from other pages that can appear in a
+   * rendered page, such as the paths, titles, headers and anchors used by navigation and prev/next links, or checked by
+   * refs.
+   */
+  def siteStructure(locations: Seq[Location[Page]]): String = {
+    def label(node: Node): String = node match {
+      case text: TextNode => text.getText
+      case other          => other.getClass.getSimpleName + other.getChildren.asScala.map(label).mkString("(", ",", ")")
+    }
+    def header(h: Header): String = s"${h.path} ${label(h.label)} ${h.group.getOrElse("")}"
+    def headers(forest: Forest[Header]): Seq[String] =
+      forest.flatMap(tree => header(tree.label) +: headers(tree.children))
+    locations
+      .map { loc =>
+        val page = loc.tree.label
+        Seq(
+          page.path,
+          loc.parent.fold("")(_.tree.label.path),
+          page.file.getPath,
+          header(page.h1),
+          headers(page.headers).mkString("[", ",", "]"),
+          page.anchors.map(_.path).mkString("[", ",", "]"),
+          page.properties.get.toSeq.sorted.mkString("[", ",", "]")
+        ).mkString(" ")
+      }
+      .mkString("\n")
+  }
+
+  def read(file: File): Option[BuildManifest] =
+    Try(new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8).split('\n').toList).toOption.collect {
+      case FormatVersion :: site :: entries => BuildManifest(site, parsePages(entries))
+    }
+
+  def write(file: File, manifest: BuildManifest): Unit = {
+    val entries = manifest.pages.toSeq.sortBy(_._1).flatMap { case (path, inputs) =>
+      s"page$Separator$path$Separator${inputs.source}" +: inputs.dependencies.toSeq.sorted.map { case (dep, digest) =>
+        s"dep$Separator$dep$Separator$digest"
+      }
+    }
+    val text = (FormatVersion +: manifest.site +: entries).mkString("", "\n", "\n")
+    Files.write(file.toPath, text.getBytes(StandardCharsets.UTF_8))
+  }
+
+  private def parsePages(entries: List[String]): Map[String, PageInputs] =
+    entries
+      .map(_.split(Separator))
+      .foldLeft(List.empty[(String, PageInputs)]) {
+        case (pages, Array("page", path, source)) => (path, PageInputs(source, Map.empty)) :: pages
+        case ((path, inputs) :: pages, Array("dep", dep, digest)) =>
+          (path, inputs.copy(dependencies = inputs.dependencies + (dep -> digest))) :: pages
+        case (pages, _) => pages
+      }
+      .toMap
+}
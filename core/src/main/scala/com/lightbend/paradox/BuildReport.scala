@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.{File, Writer}
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import com.lightbend.paradox.compat.Implicits._
+
+/**
+ * Timing of a build: the wall time and the bytes allocated in each phase of the build, in total and for each page, and
+ * for each directive.
+ *
+ * Measurements are taken on the thread doing the work, so phases that run on several threads add up the time on each
+ * thread. Phases don't include the phases nested in them, such as the page content rendered from a template, while
+ * directives include any nested directives and are part of the phase that renders them. Each measurement is also
+ * emitted as a JFR event, [[PhaseEvent]] or [[DirectiveEvent]].
+ */
+class BuildReport private (val enabled: Boolean) {
+  import BuildReport._
+
+  def this() = this(enabled = true)
+
+  private val phaseTotals     = new ConcurrentHashMap[String, Totals]
+  private val directiveTotals = new ConcurrentHashMap[String, Totals]
+  private val pageTotals      = new ConcurrentHashMap[String, PageTotals]
+  private val threads         = new ThreadLocal[ThreadState] {
+    override def initialValue(): ThreadState = new ThreadState
+  }
+
+  /**
+   * Attribute the measurements in `body`, on this thread, to a page.
+   */
+  def page[A](file: File)(body: => A): A =
+    if (!enabled) body
+    else {
+      val thread   = threads.get
+      val previous = thread.page
+      thread.page = file.getPath
+      try body
+      finally thread.page = previous
+    }
+
+  /**
+   * Measure a phase of the build.
+   */
+  def phase[A](name: String)(body: => A): A =
+    if (!enabled) body
+    else {
+      val thread = threads.get
+      val parent = thread.frame
+      val frame  = new Frame
+      val event  = new PhaseEvent
+      thread.frame = frame
+      event.begin()
+      val startBytes = allocatedBytes()
+      val startNanos = System.nanoTime
+      try body
+      finally {
+        val nanos = System.nanoTime - startNanos
+        val bytes = allocatedBytes() - startBytes
+        thread.frame = parent
+        if (parent ne null) {
+          parent.nanos += nanos
+          parent.bytes += bytes
+        }
+        add(phaseTotals, thread.page, _.phases, name, nanos - frame.nanos, bytes - frame.bytes)
+        event.phase = name
+        event.page = thread.page
+        event.allocated = bytes
+        event.commit()
+      }
+    }
+
+  /**
+   * Measure the rendering of a directive.
+   */
+  def directive[A](name: String)(body: => A): A =
+    if (!enabled) body
+    else {
+      val thread = threads.get
+      val event  = new DirectiveEvent
+      event.begin()
+      val startBytes = allocatedBytes()
+      val startNanos = System.nanoTime
+      try body
+      finally {
+        val nanos = System.nanoTime - startNanos
+        val bytes = allocatedBytes() - startBytes
+        add(directiveTotals, thread.page, _.directives, name, nanos, bytes)
+        event.directive = name
+        event.page = thread.page
+        event.allocated = bytes
+        event.commit()
+      }
+    }
+
+  /**
+   * Totals for each phase.
+   */
+  def phases: Map[String, Timing] = timings(phaseTotals)
+
+  /**
+   * Totals for each directive.
+   */
+  def directives: Map[String, Timing] = timings(directiveTotals)
+
+  /**
+   * Totals for each page, by source file.
+   */
+  def pages: Map[String, PageTiming] =
+    pageTotals.asScala.map { case (page, totals) =>
+      page -> PageTiming(timings(totals.phases), timings(totals.directives))
+    }.toMap
+
+  /**
+   * Write the report as JSON, along with the wall time of the whole build.
+   */
+  def write(out: Writer, wallNanos: Long): Unit = out.write(toJson(wallNanos))
+
+  /**
+   * The report as JSON, with phases, directives and pages sorted by time, slowest first.
+   */
+  def toJson(wallNanos: Long): String = {
+    def array(items: Seq[String], indent: String): String =
+      if (items.isEmpty) "[]" else items.mkString("[\n" + indent + "  ", ",\n" + indent + "  ", "\n" + indent + "]")
+    def entries(key: String, timings: Map[String, Timing], indent: String): String =
+      array(
+        sorted(timings).map { case (name, t) =>
+          s"""{ ${quote(key)} : ${quote(name)}, "count" : ${t.count}, "timeNanos" : ${t.nanos}, """ +
+            s""""allocatedBytes" : ${t.bytes} }"""
+        },
+        indent
+      )
+    val pageEntries = pages.toSeq.sortBy { case (page, t) => (-t.nanos, page) }.map { case (page, t) =>
+      s"""|{
+          |      "page" : ${quote(page)},
+          |      "timeNanos" : ${t.nanos},
+          |      "allocatedBytes" : ${t.bytes},
+          |      "phases" : ${entries("phase", t.phases, "    ")},
+          |      "directives" : ${entries("directive", t.directives, "    ")}
+          |    }""".stripMargin
+    }
+    s"""|{
+        |  "wallTimeNanos" : $wallNanos,
+        |  "phases" : ${entries("phase", phases, "  ")},
+        |  "directives" : ${entries("directive", directives, "  ")},
+        |  "pages" : ${array(pageEntries, "  ")}
+        |}
+        |""".stripMargin
+  }
+
+  private def add(
+      totals: ConcurrentHashMap[String, Totals],
+      page: String,
+      totalsForPage: PageTotals => ConcurrentHashMap[String, Totals],
+      name: String,
+      nanos: Long,
+      bytes: Long
+  ): Unit = {
+    totals.computeIfAbsent(name, _ => new Totals).add(nanos, bytes)
+    if (page ne null) {
+      val forPage = pageTotals.computeIfAbsent(page, _ => new PageTotals)
+      totalsForPage(forPage).computeIfAbsent(name, _ => new Totals).add(nanos, bytes)
+    }
+  }
+}
+
+object BuildReport {
+
+  val Filename = "paradox-build-report.json"
+
+  /**
+   * Report that doesn't measure anything.
+   */
+  val Disabled: BuildReport = new BuildReport(enabled = false)
+
+  /**
+   * Number of measurements, with their total time and allocated bytes.
+   */
+  case class Timing(count: Long, nanos: Long, bytes: Long)
+
+  /**
+   * Totals for the phases and directives of a page.
+   */
+  case class PageTiming(phases: Map[String, Timing], directives: Map[String, Timing]) {
+    def nanos: Long = phases.values.map(_.nanos).sum
+    def bytes: Long = phases.values.map(_.bytes).sum
+  }
+
+  private final class Totals {
+    private val count = new LongAdder
+    private val nanos = new LongAdder
+    private val bytes = new LongAdder
+
+    def add(n: Long, b: Long): Unit = {
+      count.increment()
+      nanos.add(n)
+      bytes.add(b)
+    }
+
+    def timing: Timing = Timing(count.sum, nanos.sum, bytes.sum)
+  }
+
+  private final class PageTotals {
+    val phases     = new ConcurrentHashMap[String, Totals]
+    val directives = new ConcurrentHashMap[String, Totals]
+  }
+
+  // time and bytes of the phases nested in a phase
+  private final class Frame {
+    var nanos = 0L
+    var bytes = 0L
+  }
+
+  private final class ThreadState {
+    var page: String = null
+    var frame: Frame = null
+  }
+
+  private def timings(totals: ConcurrentHashMap[String, Totals]): Map[String, Timing] =
+    totals.asScala.map { case (name, t) => name -> t.timing }.toMap
+
+  private def sorted(timings: Map[String, Timing]): Seq[(String, Timing)] =
+    timings.toSeq.sortBy { case (name, t) => (-t.nanos, name) }
+
+  // allocated bytes aren't available on all JVMs
+  private val threadBean: Option[com.sun.management.ThreadMXBean] =
+    try
+      ManagementFactory.getThreadMXBean match {
+        case bean: com.sun.management.ThreadMXBean if bean.isThreadAllocatedMemorySupported => Some(bean)
+        case _                                                                                => None
+      }
+    catch {
+      case _: LinkageError => None
+    }
+
+  private def allocatedBytes(): Long =
+    threadBean.fold(0L)(_.getThreadAllocatedBytes(Thread.currentThread.getId))
+
+  private def quote(s: String): String = {
+    val sb = new StringBuilder("\"")
+    s.foreach {
+      case '"'          => sb.append("\\\"")
+      case '\\'         => sb.append("\\\\")
+      case '\n'         => sb.append("\\n")
+      case '\r'         => sb.append("\\r")
+      case '\t'         => sb.append("\\t")
+      case c if c < ' ' => sb.append(f"\\u${c.toInt}%04x")
+      case c            => sb.append(c)
+    }
+    sb.append('"').toString
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.security.MessageDigest
+
+import scala.util.Try
+
+/**
+ * Content digests, as lower-case hex strings.
+ */
+object Digest {
+
+  /**
+   * Digest of a string's UTF-8 bytes.
+   */
+  def apply(text: String): String = apply(text.getBytes(StandardCharsets.UTF_8))
+
+  /**
+   * Digest of some bytes.
+   */
+  def apply(bytes: Array[Byte]): String = hex(MessageDigest.getInstance("SHA-1").digest(bytes))
+
+  /**
+   * Digest of a file's contents, or a marker digest if the file doesn't exist.
+   */
+  def file(file: File): String =
+    if (file.isFile) apply(Files.readAllBytes(file.toPath)) else "missing"
+
+  /**
+   * Digest of the class file that a class was loaded from, or a marker digest if it can't be read.
+   */
+  def classFile(cls: Class[?]): String =
+    Option(cls.getResourceAsStream(cls.getName.substring(cls.getName.lastIndexOf('.') + 1) + ".class")) match {
+      case Some(in) =>
+        try apply(in.readAllBytes())
+        finally in.close()
+      case None => "missing"
+    }
+
+  /**
+   * Identifies the version of a class's code: the size and modification time of the jar it was loaded from, which
+   * change between snapshot builds of the same version, or else the digest of its class file.
+   */
+  def code(cls: Class[?]): String = {
+    val location = Try(new File(cls.getProtectionDomain.getCodeSource.getLocation.toURI)).toOption
+    location.filter(_.isFile) match {
+      case Some(jar) => s"${jar.getName}:${jar.length}:${jar.lastModified}"
+      case None      => classFile(cls)
+    }
+  }
+
+  /**
+   * Digest of all files below a directory, including their relative paths.
+   */
+  def directory(dir: File): String = {
+    def files(f: File): Seq[File] =
+      if (f.isDirectory) Option(f.listFiles).toSeq.flatMap(fs => fs.sortBy(_.getName).toSeq.flatMap(files))
+      else Seq(f)
+    val base = dir.toPath
+    apply(files(dir).map(f => base.relativize(f.toPath).toString + " " + file(f)).mkString("\n"))
+  }
+
+  private[paradox] def hex(bytes: Array[Byte]): String = {
+    val builder = new StringBuilder(bytes.length * 2)
+    bytes.foreach(b => builder.append(f"${b & 0xff}%02x"))
+    builder.toString
+  }
+}
@@ -17,11 +17,10 @@
 package com.lightbend.paradox
 
 import java.io.File
-import com.lightbend.paradox.markdown.Page
+import com.lightbend.paradox.markdown.{Page, SourceFile}
 import org.pegdown.ast.Node
 
 import scala.collection.mutable.ListBuffer
-import scala.io.BufferedSource
 
 trait ErrorContext {
   def apply(msg: String, index: Int): Unit
@@ -43,11 +42,26 @@ trait ErrorContext {
   def apply(msg: String, page: Page): Unit = apply(msg, page.file)
 }
 
+/**
+ * Collects errors for reporting at the end of a build. Safe to share between threads.
+ */
 class ErrorCollector extends ErrorContext {
   private val errors = new ListBuffer[ParadoxError]()
 
   private def addError(msg: String, page: Option[File], index: Option[Int]): Unit =
-    errors.append(ParadoxError(msg, page, index))
+    errors.synchronized(errors.append(ParadoxError(msg, page, index)))
+
+  /**
+   * Report all collected errors, in order, to another error context.
+   */
+  def reportTo(context: ErrorContext): Unit =
+    allErrors.foreach {
+      case ParadoxError(msg, Some(file), Some(index)) => context(msg, file, index)
+      case ParadoxError(msg, Some(file), None)        => context(msg, file)
+      case ParadoxError(msg, None, _)                 => context(msg)
+    }
+
+  private def allErrors: List[ParadoxError] = errors.synchronized(errors.toList)
 
   override def apply(msg: String, index: Int): Unit = throw new IllegalArgumentException(
     "Cannot report an indexed error without a page context"
@@ -59,12 +73,12 @@ class ErrorCollector extends ErrorContext {
 
   override def apply(msg: String, file: File): Unit = addError(msg, Some(file), None)
 
-  def hasErrors: Boolean = errors.nonEmpty
+  def hasErrors: Boolean = allErrors.nonEmpty
 
-  def errorCount: Int = errors.toList.distinct.size
+  def errorCount: Int = allErrors.distinct.size
 
   def logErrors(log: ParadoxLogger): Unit = {
-    val totalErrors = errors.toList.distinct
+    val totalErrors = allErrors.distinct
     // First log general errors
     totalErrors.foreach {
       case ParadoxError(msg, None, _) => log.error(msg)
@@ -78,30 +92,14 @@ class ErrorCollector extends ErrorContext {
       .sortBy(_._1.getAbsolutePath)
       .foreach { case (page, errors) =>
         // Load contents of the page
-        var source: BufferedSource = null
-        val lines                  =
-          try {
-            source = scala.io.Source.fromFile(page)(using "UTF-8")
-            source.getLines().toList
-          } finally source.close()
+        val source = SourceFile.read(page)
         errors.sortBy(_.index.getOrElse(0)).foreach {
           case ParadoxError(error, _, Some(idx)) =>
-            val (_, lineNo, colNo, line) = lines.foldLeft((0, 0, 0, None: Option[String])) { (state, line) =>
-              state match {
-                case (_, _, _, Some(_))  => state
-                case (total, l, c, None) =>
-                  if (total + line.length < idx) {
-                    (total + line.length + 1, l + 1, c, None)
-                  } else {
-                    (0, l + 1, idx - total + 1, Some(line))
-                  }
-              }
-            }
-
-            log.error(s"$error at ${page.getAbsolutePath}:$lineNo")
+            val line = source.lineAt(idx)
+            log.error(s"$error at ${page.getAbsolutePath}:${line.fold(source.lineCount)(_.number)}")
             line.foreach { l =>
-              log.error(l)
-              log.error(l.take(colNo - 1).map { case '\t' => '\t'; case _ => ' ' } + "^")
+              log.error(l.text)
+              log.error(l.text.take(idx - l.start).map { case '\t' => '\t'; case _ => ' ' } + "^")
             }
           case ParadoxError(error, _, _) =>
             log.error(s"$error at ${page.getAbsolutePath}")
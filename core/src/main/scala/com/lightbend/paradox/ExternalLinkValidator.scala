@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import com.lightbend.paradox.markdown.CapturedLink
+import java.io.File
+import java.net.{SocketTimeoutException, URI}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.concurrent.{ConcurrentHashMap, ThreadLocalRandom}
+import org.jsoup.Jsoup
+import org.jsoup.nodes.Document
+
+import com.lightbend.paradox.compat.Implicits._
+import scala.annotation.tailrec
+import scala.concurrent.duration._
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * Checks external links concurrently, using up to `parallelism` connections in total and at most `connectionsPerHost`
+ * connections to any one host. Requests that fail with a retryable status or time out are retried up to `retryCount`
+ * times, waiting an exponentially increasing, jittered delay starting from `backoff` in between. Valid links are
+ * remembered in the cache, if defined, and not requested again while the cached result is fresh.
+ */
+class ExternalLinkValidator(
+    retryCount: Int,
+    parallelism: Int,
+    connectionsPerHost: Int,
+    cache: Option[ExternalLinkValidator.Cache],
+    logger: ParadoxLogger,
+    backoff: FiniteDuration = 1.second,
+    maxBackoff: FiniteDuration = 30.seconds
+) {
+  import ExternalLinkValidator._
+
+  private val parallel = new Parallel(parallelism)
+
+  /**
+   * Check all links, returning the results in the same order. The links to each host are split into at most
+   * `connectionsPerHost` queues, which are checked in turn, so that threads never wait for a busy host while there are
+   * links to other hosts to check.
+   */
+  def check(links: Seq[CapturedLink]): Seq[Result] = {
+    val byHost = links.zipWithIndex.groupBy(link => host(link._1.link)).values.toSeq.sortBy(_.head._2)
+    val queues = byHost.flatMap { hostLinks =>
+      val count = math.max(1, math.min(connectionsPerHost, hostLinks.size))
+      (0 until count).map(queue => queue -> hostLinks.indices.filter(_ % count == queue).map(hostLinks))
+    }
+    val results = new Array[Result](links.size)
+    // the first queue of each host goes first
+    parallel.map(queues.sortBy(_._1).map(_._2)) { queue =>
+      queue.foreach { case (link, index) => results(index) = check(link) }
+    }
+    results.toSeq
+  }
+
+  def check(link: CapturedLink): Result = {
+    val url = link.link.toString
+    cache.flatMap(_.get(url, link.hasFragments)) match {
+      case Some(anchors) => Valid(anchors)
+      case None          =>
+        logger.info(s"Validating external link: $url")
+        val result = attempt(link, 0)
+        result match {
+          case Valid(anchors) => cache.foreach(_.put(url, anchors))
+          case _              =>
+        }
+        result
+    }
+  }
+
+  @tailrec
+  private def attempt(link: CapturedLink, retries: Int): Result = {
+    val result =
+      try fetch(link)
+      catch {
+        case NonFatal(e) => Failed(e)
+      }
+    if (retries < retryCount && isRetryable(result)) {
+      sleep(retries)
+      attempt(link, retries + 1)
+    } else result
+  }
+
+  private def isRetryable(result: Result): Boolean = result match {
+    case Invalid(status, _)                => RetryableStatusCodes(status)
+    case Failed(_: SocketTimeoutException) => true
+    case _                                 => false
+  }
+
+  // equal jitter: wait between half and all of the exponential delay, so that retries to a host are spread out
+  private def sleep(retries: Int): Unit = {
+    val delay = math.min(maxBackoff.toMillis, backoff.toMillis << math.min(retries, 20))
+    Thread.sleep(delay / 2 + ThreadLocalRandom.current.nextLong(delay - delay / 2 + 1))
+  }
+
+  private def fetch(link: CapturedLink): Result = {
+    val response = Jsoup
+      .connect(link.link.toString)
+      .userAgent("Paradox Link Validator <https://github.com/lightbend/paradox>")
+      .followRedirects(false)
+      .ignoreHttpErrors(true)
+      .ignoreContentType(true)
+      .execute()
+
+    // jsoup doesn't offer any simple way to clean up, the only way to close is to get the body stream and close it,
+    // but if you've already read the response body, that will throw an exception, and there's no way to check if
+    // you've already tried to read the response body, so we can't do that in a finally block, we have to do it
+    // explicitly every time we don't want to consume the stream.
+    def close(): Unit = response.bodyStream().close()
+
+    if (response.statusCode() / 100 == 3) {
+      close()
+      Redirected(response.statusCode(), response.statusMessage(), response.header("Location"))
+    } else if (response.statusCode() != 200) {
+      close()
+      Invalid(response.statusCode(), response.statusMessage())
+    } else if (link.hasFragments) {
+      Valid(Some(anchors(response.parse())))
+    } else {
+      close()
+      Valid(None)
+    }
+  }
+
+  private def host(uri: URI): String =
+    Option(uri.getAuthority).fold("")(_.toLowerCase)
+}
+
+object ExternalLinkValidator {
+
+  // 500 Internal Server Error
+  // 502 Bad Gateway
+  // 503 Service Unavailable
+  // 504 Gateway Timeout
+  private val RetryableStatusCodes = Set(500, 502, 503, 504)
+
+  /**
+   * Result of checking an external link.
+   */
+  sealed trait Result
+
+  /**
+   * The link responded with 200 OK. Anchors are only collected for links with fragments.
+   */
+  case class Valid(anchors: Option[Set[String]]) extends Result
+
+  case class Redirected(status: Int, message: String, location: String) extends Result
+
+  case class Invalid(status: Int, message: String) extends Result
+
+  case class Failed(exception: Throwable) extends Result
+
+  /**
+   * The ids and anchor names that a link fragment can refer to.
+   */
+  def anchors(document: Document): Set[String] =
+    (document.select("[id]").asScala.map(_.id) ++ document.select("a[name]").asScala.map(_.attr("name"))).toSet
+
+  /**
+   * Valid external links checked within the last `ttl`, persisted to a file between builds. Safe to share between
+   * threads.
+   */
+  class Cache(file: File, ttl: FiniteDuration, clock: () => Long = () => System.currentTimeMillis) {
+    private case class Entry(checked: Long, anchors: Option[Set[String]])
+
+    private val entries = new ConcurrentHashMap[String, Entry]
+
+    load()
+
+    /**
+     * The anchors of a valid link, if it was checked recently. Cached links without anchors only count when they are
+     * not needed.
+     */
+    def get(url: String, needsAnchors: Boolean): Option[Option[Set[String]]] =
+      Option(entries.get(url)).filter(isFresh).map(_.anchors).filter(anchors => anchors.isDefined || !needsAnchors)
+
+    def put(url: String, anchors: Option[Set[String]]): Unit =
+      entries.put(url, Entry(clock(), anchors))
+
+    // the cache is best effort, failing to save it only means checking links again next time
+    def save(): Unit =
+      try {
+        val lines = entries.asScala.toSeq.filter(e => isFresh(e._2)).sortBy(_._1).map { case (url, entry) =>
+          // anchors that can't be written are dropped altogether, the page is fetched again when they are needed
+          val anchors = entry.anchors.filterNot(_.exists(_.exists(c => c == Separator || c == '\n')))
+          (Seq(url, entry.checked.toString) ++ anchors.fold(Seq("-"))(a => "+" +: a.toSeq.sorted))
+            .mkString(Separator.toString)
+        }
+        val text = (FormatVersion +: lines).mkString("", "\n", "\n")
+        Option(file.getAbsoluteFile.getParentFile).foreach(_.mkdirs())
+        val temp = File.createTempFile(file.getName, ".tmp", file.getAbsoluteFile.getParentFile)
+        try {
+          Files.write(temp.toPath, text.getBytes(StandardCharsets.UTF_8))
+          Files.move(temp.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally temp.delete()
+      } catch {
+        case NonFatal(_) =>
+      }
+
+    private def isFresh(entry: Entry): Boolean =
+      clock() - entry.checked < ttl.toMillis
+
+    private def load(): Unit =
+      Try(new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8).split('\n').toList).toOption.foreach {
+        case FormatVersion :: lines =>
+          lines.map(_.split(Separator).toList).foreach {
+            case url :: checked :: "-" :: Nil =>
+              Try(checked.toLong).foreach(c => entries.put(url, Entry(c, None)))
+            case url :: checked :: "+" :: anchors =>
+              Try(checked.toLong).foreach(c => entries.put(url, Entry(c, Some(anchors.toSet))))
+            case _ =>
+          }
+        case _ =>
+      }
+  }
+
+  private val FormatVersion = "paradox-link-cache 1"
+  private val Separator     = '\t'
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.{
+  BufferedOutputStream,
+  BufferedWriter,
+  File,
+  FileOutputStream,
+  IOException,
+  OutputStream,
+  OutputStreamWriter,
+  Writer
+}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{AtomicMoveNotSupportedException, Files, StandardCopyOption}
+import java.security.{DigestOutputStream, MessageDigest}
+import java.util.concurrent.ConcurrentHashMap
+
+import com.lightbend.paradox.compat.Implicits._
+import scala.util.Try
+
+/**
+ * Files written to an output directory, which are only replaced when their content changes, so that unchanged files
+ * keep their modification times and tools that synchronise the output can skip them.
+ *
+ * Each file is written to a temporary file while computing its digest, which is compared with the digest recorded for
+ * the file by the previous build. The temporary file is discarded if the content is the same and the file hasn't been
+ * touched since, and otherwise atomically moved over the file. Call [[finish]] once all files are written, to remove
+ * files of the previous build that weren't written again and record the files of this build. Safe to use from
+ * multiple threads.
+ */
+class OutputFiles(directory: File) {
+  import OutputFiles.Entry
+
+  private val manifestFile = new File(directory, OutputFiles.Filename)
+  private val previous     = OutputFiles.read(manifestFile)
+  private val current      = new ConcurrentHashMap[String, Entry]
+
+  /**
+   * Write a file in the output directory, with UTF-8 text.
+   */
+  def write(target: File)(content: Writer => Unit): File =
+    writeBytes(target) { stream =>
+      val out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))
+      try content(out)
+      finally out.close()
+    }
+
+  /**
+   * Write a file in the output directory, with the bytes written to a stream, which is closed afterwards.
+   */
+  def writeBytes(target: File)(content: OutputStream => Unit): File = {
+    val parent = target.getAbsoluteFile.getParentFile
+    parent.mkdirs()
+    // not Files.createTempFile, which only makes the file readable by its owner, while pages are served by others
+    val temp = File.createTempFile("." + target.getName + "-", ".tmp", parent).toPath
+    if (target.exists) Try(Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target.toPath)))
+    try {
+      val digest = MessageDigest.getInstance("SHA-1")
+      val out    = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile)), digest)
+      try content(out)
+      finally out.close()
+      val hash = Digest.hex(digest.digest)
+      val path = relativePath(target)
+      previous.get(path).filter(entry => entry.digest == hash && entry.isCurrent(target)) match {
+        case Some(unchanged) =>
+          current.put(path, unchanged)
+        case None =>
+          try Files.move(temp, target.toPath, StandardCopyOption.ATOMIC_MOVE)
+          catch {
+            case _: AtomicMoveNotSupportedException =>
+              Files.move(temp, target.toPath, StandardCopyOption.REPLACE_EXISTING)
+          }
+          current.put(path, Entry(hash, target.length, target.lastModified))
+      }
+    } finally Files.deleteIfExists(temp)
+    target
+  }
+
+  /**
+   * Keep a file of the previous build that is up to date without being written again.
+   */
+  def keep(target: File): Unit = {
+    val path  = relativePath(target)
+    val entry = previous.get(path).filter(_.isCurrent(target))
+    current.put(path, entry.getOrElse(Entry(Digest.file(target), target.length, target.lastModified)))
+  }
+
+  /**
+   * Remove the files of the previous build that weren't written or kept, and record the files of this build.
+   */
+  def finish(): Unit = {
+    (previous.keySet -- current.keySet.asScala).foreach(path => new File(directory, path).delete())
+    directory.mkdirs()
+    OutputFiles.write(manifestFile, current.asScala.toMap)
+  }
+
+  private def relativePath(target: File): String =
+    directory.getAbsoluteFile.toPath.relativize(target.getAbsoluteFile.toPath).toString.replace(File.separatorChar, '/')
+}
+
+object OutputFiles {
+
+  val Filename: String = ".paradox-outputs"
+
+  private val FormatVersion = "paradox-outputs 1"
+  private val Separator     = '\t'
+
+  /**
+   * Digest, size and modification time of an output file when it was written.
+   */
+  private case class Entry(digest: String, length: Long, modified: Long) {
+    def isCurrent(file: File): Boolean = file.isFile && file.length == length && file.lastModified == modified
+  }
+
+  /**
+   * Delete an output directory, unless it records the files of a previous build, in which case they're only replaced
+   * as they change.
+   */
+  def clean(directory: File): Unit =
+    if (!new File(directory, Filename).isFile) delete(directory)
+
+  /**
+   * Synchronise a directory with mappings of files to relative paths, linking the files where the file system allows it
+   * and copying them otherwise. Files that are already linked, or copies with the same size and modification time, are
+   * left as they are, and files that aren't mapped are removed.
+   */
+  def sync(mappings: Seq[(File, String)], target: File): File = {
+    val paths = mappings.map { case (file, path) => path.replace(File.separatorChar, '/') -> file }.toMap
+    target.mkdirs()
+    remove(target, "", paths.keySet)
+    paths.foreach { case (path, source) =>
+      val dest = new File(target, path)
+      if (source.isDirectory) dest.mkdirs()
+      else if (!isSynced(source, dest)) {
+        dest.getParentFile.mkdirs()
+        Files.deleteIfExists(dest.toPath)
+        try Files.createLink(dest.toPath, source.toPath)
+        catch {
+          case _: IOException | _: UnsupportedOperationException | _: SecurityException =>
+            Files.copy(source.toPath, dest.toPath, StandardCopyOption.COPY_ATTRIBUTES)
+        }
+      }
+    }
+    target
+  }
+
+  private def isSynced(source: File, dest: File): Boolean =
+    dest.isFile && (Try(Files.isSameFile(source.toPath, dest.toPath)).getOrElse(false) ||
+      (dest.length == source.length && dest.lastModified == source.lastModified))
+
+  // remove files below a directory that aren't mapped, and directories that are left empty
+  private def remove(dir: File, prefix: String, mapped: Set[String]): Unit =
+    Option(dir.listFiles).toSeq.flatten.foreach { file =>
+      val path = prefix + file.getName
+      if (file.isDirectory && !Files.isSymbolicLink(file.toPath)) {
+        remove(file, path + "/", mapped)
+        if (!mapped(path) && Option(file.list).forall(_.isEmpty)) file.delete()
+      } else if (!mapped(path)) file.delete()
+    }
+
+  private def delete(file: File): Unit = {
+    if (file.isDirectory && !Files.isSymbolicLink(file.toPath)) Option(file.listFiles).toSeq.flatten.foreach(delete)
+    file.delete()
+  }
+
+  private def read(file: File): Map[String, Entry] =
+    Try(new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8).split('\n').toList).toOption
+      .collect { case FormatVersion :: entries =>
+        entries.map(_.split(Separator)).collect { case Array(path, digest, length, modified) =>
+          path -> Entry(digest, length.toLong, modified.toLong)
+        }.toMap
+      }
+      .getOrElse(Map.empty)
+
+  private def write(file: File, entries: Map[String, Entry]): Unit = {
+    val lines = entries.toSeq.sortBy(_._1).map { case (path, entry) =>
+      Seq(path, entry.digest, entry.length, entry.modified).mkString(Separator.toString)
+    }
+    Files.write(file.toPath, (FormatVersion +: lines).mkString("", "\n", "\n").getBytes(StandardCharsets.UTF_8))
+  }
+}
@@ -18,30 +18,58 @@ package com.lightbend.paradox
 
 import com.lightbend.paradox.template.PageTemplate
 import com.lightbend.paradox.markdown._
+import com.lightbend.paradox.tree.Tree
 import com.lightbend.paradox.tree.Tree.{Forest, Location}
 
-import java.io.{File, FileOutputStream, OutputStreamWriter}
-import java.nio.charset.StandardCharsets
-import org.jsoup.{Connection, Jsoup}
-import org.jsoup.nodes.Document
+import java.io.File
 import org.pegdown.ast._
 
-import java.net.SocketTimeoutException
 import java.util
 import scala.annotation.tailrec
+import scala.collection.mutable
+import scala.concurrent.duration._
 import com.lightbend.paradox.compat.Implicits._
 import scala.util.control.NonFatal
 import scala.util.matching.Regex
 
 /**
  * Markdown site processor.
+ *
+ * Pages are parsed and rendered on up to `parallelism` threads; the output and error reporting are the same for any
+ * setting. Parsed markdown is cached in `parseCacheDirectory`, if defined. With `streamOutput`, page content is written
+ * directly to the output files as it is rendered, rather than created in memory first, which for single-page output
+ * keeps only the pages being rendered ahead of the output in memory. With `buildReport`, the time and allocations of
+ * each phase of a site build are written to a report in the output directory. With `captureLinks`, the links and
+ * anchors of each page are recorded in the output directory while rendering the site, so that links can be validated
+ * with [[validateCaptured]] without parsing and rendering the pages again. With `lowMemory`, only the outline of each
+ * page that other pages use is kept once the pages are parsed, and each page is parsed again when it's rendered, so
+ * that memory use grows with the largest page rather than with the whole site.
  */
 class ParadoxProcessor(
     reader: Reader = new Reader,
     writer: Writer = new Writer,
-    singlePageWriter: Writer = SinglePageSupport.writer
+    singlePageWriter: Writer = SinglePageSupport.writer,
+    parallelism: Int = 1,
+    parseCacheDirectory: Option[File] = None,
+    streamOutput: Boolean = false,
+    buildReport: Boolean = false,
+    captureLinks: Boolean = false,
+    lowMemory: Boolean = false
 ) {
 
+  /**
+   * Worker threads shared by all the work of this processor.
+   */
+  val parallel: Parallel = new Parallel(parallelism)
+
+  private val parseCache = for {
+    directory <- parseCacheDirectory
+    key       <- reader.cacheKey
+  } yield new ParseCache(directory, key)
+
+  // snippet and include files, read once and shared by all pages
+  private val snippets = new SnippetCache
+
   /**
    * Process all mappings to build the site.
    */
@@ -59,7 +87,166 @@ class ParadoxProcessor(
       navIncludeHeaders: Boolean,
       expectedRoots: List[String],
       pageTemplate: PageTemplate,
+      logger: ParadoxLogger,
+      incremental: Boolean = false
+  ): Either[String, Seq[(File, String)]] = {
+    val report = if (buildReport) new BuildReport else BuildReport.Disabled
+    val start  = System.nanoTime
+    renderSite(
+      parse(mappings, sourceSuffix, targetSuffix, properties, logger, report),
+      report,
+      start,
+      leadingBreadcrumbs,
+      outputDirectory,
+      sourceSuffix,
+      targetSuffix,
+      illegalLinkPath,
+      groups,
+      properties,
+      navDepth,
+      navExpandDepth,
+      navIncludeHeaders,
+      expectedRoots,
+      pageTemplate,
+      logger,
+      incremental
+    )
+  }
+
+  /**
+   * Build the site, the single-page and the print outputs that are defined, parsing the pages once for all outputs
+   * that have the same suffixes and properties. The outputs are rendered concurrently.
+   */
+  def processAll(
+      mappings: Seq[(File, String)],
+      site: Option[ParadoxProcessor.SiteOutput],
+      single: Option[ParadoxProcessor.SinglePageOutput],
+      print: Option[ParadoxProcessor.SinglePageOutput],
       logger: ParadoxLogger
+  ): ParadoxProcessor.Results = {
+    val report = if (buildReport && site.isDefined) new BuildReport else BuildReport.Disabled
+    val start  = System.nanoTime
+    val keys   = site.map(o => (o.sourceSuffix, o.targetSuffix, o.properties)).toSeq ++
+      (single.toSeq ++ print.toSeq).map(o => (o.sourceSuffix, o.targetSuffix, o.properties))
+    val parsed = keys.distinct.map { case key @ (sourceSuffix, targetSuffix, properties) =>
+      key -> parse(mappings, sourceSuffix, targetSuffix, properties, logger, report)
+    }.toMap
+
+    def renderSingle(output: ParadoxProcessor.SinglePageOutput, print: Boolean): Either[String, Seq[(File, String)]] =
+      renderSinglePage(
+        parsed((output.sourceSuffix, output.targetSuffix, output.properties)),
+        output.outputDirectory,
+        output.sourceSuffix,
+        output.targetSuffix,
+        output.illegalLinkPath,
+        output.groups,
+        output.properties,
+        output.navDepth,
+        output.navExpandDepth,
+        output.expectedRoots,
+        output.pageTemplate,
+        print,
+        logger
+      )
+
+    val outputs: Seq[() => Either[String, Seq[(File, String)]]] = Seq(
+      site.map { o => () =>
+        renderSite(
+          parsed((o.sourceSuffix, o.targetSuffix, o.properties)),
+          report,
+          start,
+          o.leadingBreadcrumbs,
+          o.outputDirectory,
+          o.sourceSuffix,
+          o.targetSuffix,
+          o.illegalLinkPath,
+          o.groups,
+          o.properties,
+          o.navDepth,
+          o.navExpandDepth,
+          o.navIncludeHeaders,
+          o.expectedRoots,
+          o.pageTemplate,
+          logger,
+          o.incremental
+        )
+      },
+      single.map(o => () => renderSingle(o, print = false)),
+      print.map(o => () => renderSingle(o, print = true))
+    ).flatten
+    val results = parallel.map(outputs)(_.apply()).iterator
+    ParadoxProcessor.Results(
+      site.map(_ => results.next()),
+      single.map(_ => results.next()),
+      print.map(_ => results.next())
+    )
+  }
+
+  private def parse(
+      mappings: Seq[(File, String)],
+      sourceSuffix: String,
+      targetSuffix: String,
+      properties: Map[String, String],
+      logger: ParadoxLogger,
+      report: BuildReport
+  ): Parsed = {
+    val errors           = new ErrorCollector
+    val (roots, digests) = logParseCache(logger) {
+      val parsed  = parseMarkdown(mappings, properties, errors, report, outline = lowMemory)
+      val digests = parsed.collect { case (file, _, root, _) if lowMemory => file -> parsedDigest(file, root) }.toMap
+      (report.phase("index")(Page.forest(parsed, Path.replaceSuffix(sourceSuffix, targetSuffix), properties)), digests)
+    }
+    Parsed(roots, errors, digests)
+  }
+
+  // the markdown of a page to render, which is parsed again if only the outline of the page was kept
+  private def pageMarkdown(parsed: Parsed, properties: Map[String, String], report: BuildReport, error: ErrorContext)(
+      page: Page
+  ): RootNode =
+    if (!lowMemory) page.markdown
+    else {
+      val source = report.phase("front-matter")(SourceFile.read(page.file))
+      // errors were reported when the page was first parsed, unless it has changed since
+      val errors = new ErrorCollector
+      val root   = parseAndProcessMarkdown(source, properties ++ source.header, errors, report, new IncludeCache)
+      if (parsed.digests.get(page.file).exists(_ != parsedDigest(page.file, root))) {
+        error("Page or the markdown it includes changed while building the site, build again", page)
+        errors.reportTo(error)
+      }
+      root
+    }
+
+  // digest of a page's source and the markdown it includes, to check that a page parsed again is the one parsed first
+  private def parsedDigest(file: File, root: Node): String = {
+    def includes(node: Node): Seq[File] = node match {
+      case include: IncludeNode => include.includedFrom +: includes(include.included)
+      case other                => other.getChildren.asScala.toSeq.flatMap(includes)
+    }
+    Digest((file +: includes(root)).map(Digest.file).mkString(","))
+  }
+
+  // pages parsed for one or more outputs, with the errors from parsing them, and with `lowMemory` the digests of what
+  // each page was parsed from
+  private case class Parsed(roots: Forest[Page], errors: ErrorCollector, digests: Map[File, String])
+
+  private def renderSite(
+      parsed: Parsed,
+      report: BuildReport,
+      start: Long,
+      leadingBreadcrumbs: List[(String, String)],
+      outputDirectory: File,
+      sourceSuffix: String,
+      targetSuffix: String,
+      illegalLinkPath: Regex,
+      groups: Map[String, Seq[String]],
+      properties: Map[String, String],
+      navDepth: Int,
+      navExpandDepth: Option[Int],
+      navIncludeHeaders: Boolean,
+      expectedRoots: List[String],
+      pageTemplate: PageTemplate,
+      logger: ParadoxLogger,
+      incremental: Boolean
   ): Either[String, Seq[(File, String)]] = {
 
     require(
@@ -68,10 +255,12 @@ class ParadoxProcessor(
     )
 
     val errorCollector = new ErrorCollector
+    parsed.errors.reportTo(errorCollector)
 
-    val roots = parsePages(mappings, Path.replaceSuffix(sourceSuffix, targetSuffix), properties, errorCollector)
-    val pages = Page.allPages(roots)
-    val globalPageMappings = rootPageMappings(roots)
+    val roots                       = parsed.roots
+    val graph                       = report.phase("index")(PageGraph(roots))
+    val (pages, globalPageMappings) = report.phase("index")((graph.paths, rootPageMappings(roots)))
+    val outputs                     = new OutputFiles(outputDirectory)
 
     val navToc = new TableOfContents(
       pages = true,
@@ -80,41 +269,61 @@ class ParadoxProcessor(
       maxDepth = navDepth,
       maxExpandDepth = navExpandDepth
     )
-    val pageToc = new TableOfContents(pages = false, headers = true, ordered = false, maxDepth = navDepth)
-
-    @tailrec
-    def render(location: Option[Location[Page]], rendered: Seq[(File, String)] = Seq.empty): Seq[(File, String)] =
-      location match {
-        case Some(loc) =>
-          val page = loc.tree.label
-          checkDuplicateAnchors(page, logger)
-          val pageProperties = properties ++ page.properties.get
-          val currentMapping =
-            Path.generateTargetFile(Path.relativeLocalPath(page.rootSrcPage, page.file.getPath), globalPageMappings)
-          val writerContext = Writer.Context(
+    val pageToc    = new TableOfContents(pages = false, headers = true, ordered = false, maxDepth = navDepth)
+    val navigation = new NavigationCache(navToc, writer)
+
+    def render(loc: Location[Page]): ((File, String), ErrorCollector, Option[LinkCapturer.PageLinks]) =
+      report.page(loc.tree.label.file) {
+        val page = loc.tree.label
+        // errors are collected per page and merged in page order, so reporting doesn't depend on scheduling
+        val pageErrors     = new ErrorCollector
+        val links          = if (captureLinks) Some(new LinkCapturer) else None
+        val pageProperties = properties ++ page.properties.get
+        val currentMapping =
+          Path.generateTargetFile(Path.relativeLocalPath(page.rootSrcPage, page.file.getPath), globalPageMappings)
+        val writerContext = Writer.Context(
+          loc,
+          pages,
+          reader,
+          writer,
+          new PagedErrorContext(pageErrors, page),
+          logger,
+          currentMapping,
+          sourceSuffix,
+          targetSuffix,
+          illegalLinkPath,
+          groups,
+          pageProperties,
+          snippets = snippets,
+          report = report,
+          links = links
+        )
+        val pageContext =
+          PageContents(
+            leadingBreadcrumbs,
+            groups,
             loc,
-            pages,
-            reader,
             writer,
-            new PagedErrorContext(errorCollector, page),
-            logger,
-            currentMapping,
-            sourceSuffix,
-            targetSuffix,
-            illegalLinkPath,
-            groups,
-            pageProperties
+            writerContext,
+            navToc,
+            pageToc,
+            streamOutput,
+            Some(navigation),
+            Some(graph),
+            pageMarkdown(parsed, properties, report, writerContext.error)
           )
-          val pageContext = PageContents(leadingBreadcrumbs, groups, loc, writer, writerContext, navToc, pageToc)
-          val outputFile  = new File(outputDirectory, page.path)
-          outputFile.getParentFile.mkdirs
-          pageTemplate.write(
-            page.properties(Page.Properties.DefaultLayoutMdIndicator, pageTemplate.defaultName),
-            pageContext,
-            outputFile
-          )
-          render(loc.next, rendered :+ (outputFile, page.path))
-        case None => rendered
+        val outputFile = new File(outputDirectory, page.path)
+        report.phase("template") {
+          outputs.write(outputFile) { out =>
+            pageTemplate.write(
+              page.properties(Page.Properties.DefaultLayoutMdIndicator, pageTemplate.defaultName),
+              pageContext,
+              out
+            )
+          }
+        }
+        val pageLinks = links.map(l => LinkCapturer.PageLinks(page.anchorPaths.distinct, l.pageLinks))
+        ((outputFile, page.path), pageErrors, pageLinks)
       }
 
     if (expectedRoots.sorted != roots.map(_.label.path).sorted)
@@ -125,15 +334,133 @@ class ParadoxProcessor(
           "Specified ToC roots: " + expectedRoots.sorted.mkString("[", ", ", "]" + "\n")
       )
 
+    val locations = graph.locations
+    report.phase("anchors")(locations.foreach(loc => checkDuplicateAnchors(loc.tree.label, logger)))
+
     outputDirectory.mkdirs()
-    val results = createMetadata(outputDirectory, properties) :: (roots flatMap { root => render(Some(root.location)) })
+    val manifestFile = new File(outputDirectory, BuildManifest.Filename)
+    val previous     = if (incremental) BuildManifest.read(manifestFile) else None
+    // the manifest is only written again after a build without errors, so that failing pages are always rendered
+    manifestFile.delete()
+    val linksFile = new File(outputDirectory, LinkCapturer.Filename)
+    val previousLinks: Map[String, LinkCapturer.PageLinks] =
+      if (captureLinks && incremental) LinkCapturer.read(linksFile).getOrElse(Map.empty) else Map.empty
+    linksFile.delete()
+
+    val site =
+      if (incremental) report.phase("incremental") {
+        Digest(
+          Seq(
+            properties.toSeq.sorted.mkString(","),
+            leadingBreadcrumbs.mkString(","),
+            groups.toSeq.sortBy(_._1).mkString(","),
+            sourceSuffix,
+            targetSuffix,
+            illegalLinkPath.regex,
+            navDepth.toString,
+            navExpandDepth.toString,
+            navIncludeHeaders.toString,
+            Digest.directory(pageTemplate.directory),
+            ParadoxProcessor.Version,
+            writer.fingerprint,
+            streamOutput.toString,
+            BuildManifest.siteStructure(locations)
+          ).mkString("\n")
+        )
+      }
+      else ""
+    val inputs = parallel.map(locations) { loc =>
+      val page = loc.tree.label
+      if (incremental) report.page(page.file) {
+        report.phase("incremental")(BuildManifest.pageInputs(page, properties ++ page.properties.get))
+      }
+      else None
+    }
+    val current  = previous.filter(_.site == site)
+    val toRender = locations.zip(inputs).map { case (loc, pageInputs) =>
+      val page     = loc.tree.label
+      val upToDate = pageInputs.exists(i => current.exists(_.isCurrent(page.path, i))) &&
+        new File(outputDirectory, page.path).exists && (!captureLinks || previousLinks.contains(page.path))
+      (loc, !upToDate)
+    }
+    if (incremental) logger.info(s"Rendering ${toRender.count(_._2)} of ${locations.size} pages, the rest are up to date")
+
+    val rendered = parallel.map(toRender) {
+      case (loc, true)  => render(loc)
+      case (loc, false) =>
+        val path       = loc.tree.label.path
+        val outputFile = new File(outputDirectory, path)
+        outputs.keep(outputFile)
+        ((outputFile, path), new ErrorCollector, previousLinks.get(path))
+    }
+    rendered.foreach { case (_, pageErrors, _) => pageErrors.reportTo(errorCollector) }
+    val metadata = report.phase("metadata")(createMetadata(outputDirectory, outputs, properties))
+    val results  = metadata +: rendered.map(_._1)
+
+    // written through the outputs, so that the report is removed again by a build without one
+    if (report.enabled) {
+      val reportFile = outputs.write(new File(outputDirectory, BuildReport.Filename))(
+        report.write(_, System.nanoTime - start)
+      )
+      logger.info(s"Build report written to $reportFile")
+    }
+    outputs.finish()
 
     if (errorCollector.hasErrors) {
       errorCollector.logErrors(logger)
       Left(s"Paradox failed with ${errorCollector.errorCount} errors")
-    } else Right(results)
+    } else {
+      if (incremental) {
+        val pageInputs = locations.zip(inputs).collect { case (loc, Some(i)) => loc.tree.label.path -> i }
+        BuildManifest.write(manifestFile, BuildManifest(site, pageInputs.toMap))
+      }
+      if (captureLinks) {
+        val pageLinks = rendered.collect { case ((_, path), _, Some(links)) => path -> links }
+        LinkCapturer.write(linksFile, pageLinks.toMap)
+      }
+      Right(results)
+    }
   }
 
+  /**
+   * Parse all mappings into a site whose pages are rendered when they're requested, for previewing. Markdown files
+   * added to the source directories while previewing become part of the site.
+   */
+  def preview(
+      mappings: Seq[(File, String)],
+      sourceDirectories: Seq[File],
+      leadingBreadcrumbs: List[(String, String)],
+      sourceSuffix: String,
+      targetSuffix: String,
+      illegalLinkPath: Regex,
+      groups: Map[String, Seq[String]],
+      properties: Map[String, String],
+      navDepth: Int,
+      navExpandDepth: Option[Int],
+      navIncludeHeaders: Boolean,
+      pageTemplate: PageTemplate,
+      logger: ParadoxLogger
+  ): PreviewSite =
+    new PreviewSite(
+      this,
+      reader,
+      writer,
+      snippets,
+      mappings,
+      sourceDirectories,
+      leadingBreadcrumbs,
+      sourceSuffix,
+      targetSuffix,
+      illegalLinkPath,
+      groups,
+      properties,
+      navDepth,
+      navExpandDepth,
+      navIncludeHeaders,
+      pageTemplate,
+      logger
+    )
+
   /**
    * Validate all mappings to build the site.
    */
@@ -145,15 +472,20 @@ class ParadoxProcessor(
       ignorePaths: List[Regex],
       retryCount: Int,
       validateAbsolute: Boolean,
-      logger: ParadoxLogger
+      logger: ParadoxLogger,
+      linkParallelism: Int = 1,
+      connectionsPerHost: Int = 1,
+      linkCacheFile: Option[File] = None,
+      linkCacheTtl: FiniteDuration = Duration.Zero,
+      sourceSuffix: String = Writer.DefaultSourceSuffix,
+      targetSuffix: String = Writer.DefaultTargetSuffix
   ): Int = {
 
     val errorCollector = new ErrorCollector
 
-    val roots              = parsePages(mappings, identity, properties, errorCollector)
+    val roots              = logParseCache(logger)(parsePages(mappings, identity, properties, errorCollector))
     val pages              = Page.allPages(roots)
     val globalPageMappings = rootPageMappings(roots)
-    val fullSite           = allSiteFiles.map(_.swap).toMap
 
     val linkCapturer = new LinkCapturer
 
@@ -176,7 +508,8 @@ class ParadoxProcessor(
           "",
           "".r,
           groups,
-          pageProperties
+          pageProperties,
+          snippets = snippets
         )
         val serializer = linkCapturer.serializer(writerContext)
         page.markdown.accept(serializer)
@@ -188,92 +521,164 @@ class ParadoxProcessor(
       validate(Some(root.location))
     }
 
-    linkCapturer.allLinks
+    // headers and anchors of pages are known, other anchors are found in the generated HTML. Pages are parsed with
+    // their source paths, unless they have an "out" path, while links refer to the generated HTML.
+    val pagesByTarget = pages.values.map { page =>
+      page.properties.convertToTarget(Path.replaceSuffix(sourceSuffix, targetSuffix))(page.path) -> page
+    }.toMap
+    validateLinks(
+      linkCapturer.allLinks,
+      path => fragment => pagesByTarget.get(path).exists(_.hasAnchor("#" + fragment)),
+      allSiteFiles,
+      ignorePaths,
+      retryCount,
+      validateAbsolute,
+      errorCollector,
+      logger,
+      linkParallelism,
+      connectionsPerHost,
+      linkCacheFile,
+      linkCacheTtl
+    )
+
+    errorCollector.logErrors(logger)
+    errorCollector.errorCount
+  }
+
+  /**
+   * Validate the links captured while processing a site with `captureLinks`, without parsing or rendering any pages.
+   * Links are validated as if the site was at the base path, which is empty or ends with a slash. Returns None if no
+   * links were captured in the output directory.
+   */
+  def validateCaptured(
+      outputDirectory: File,
+      basePath: String,
+      allSiteFiles: Seq[(File, String)],
+      ignorePaths: List[Regex],
+      retryCount: Int,
+      validateAbsolute: Boolean,
+      logger: ParadoxLogger,
+      linkParallelism: Int = 1,
+      connectionsPerHost: Int = 1,
+      linkCacheFile: Option[File] = None,
+      linkCacheTtl: FiniteDuration = Duration.Zero
+  ): Option[Int] =
+    LinkCapturer.read(new File(outputDirectory, LinkCapturer.Filename)).map { pages =>
+      val errorCollector = new ErrorCollector
+      val anchors        = pages.map { case (path, page) => (basePath + path) -> page.anchors.toSet }
+      validateLinks(
+        LinkCapturer.resolve(pages.values.toSeq.flatMap(_.links), basePath),
+        path => fragment => anchors.get(path).exists(_.contains("#" + fragment)),
+        allSiteFiles,
+        ignorePaths,
+        retryCount,
+        validateAbsolute,
+        errorCollector,
+        logger,
+        linkParallelism,
+        connectionsPerHost,
+        linkCacheFile,
+        linkCacheTtl
+      )
+      errorCollector.logErrors(logger)
+      errorCollector.errorCount
+    }
+
+  /**
+   * Report links to paths that aren't in the site, or to anchors that aren't on the linked page, and optionally
+   * external links that can't be retrieved. The anchors of a page are looked up by its path, and otherwise found in
+   * the generated HTML.
+   */
+  private def validateLinks(
+      links: List[CapturedLink],
+      hasPageAnchor: String => String => Boolean,
+      allSiteFiles: Seq[(File, String)],
+      ignorePaths: List[Regex],
+      retryCount: Int,
+      validateAbsolute: Boolean,
+      errorCollector: ErrorCollector,
+      logger: ParadoxLogger,
+      linkParallelism: Int,
+      connectionsPerHost: Int,
+      linkCacheFile: Option[File],
+      linkCacheTtl: FiniteDuration
+  ): Unit = {
+    val fullSite = allSiteFiles.map(_.swap).toMap
+
+    val (internalLinks, externalLinks) = links
       .filterNot(l => ignorePaths.exists(_.pattern.matcher(l.link.toString).matches()))
-      .foreach {
-        case c @ CapturedLink(uri, fragments) if c.isInternal =>
-          fullSite.get(uri.getPath) match {
-            case Some(file) =>
-              if (c.hasFragments) {
-                validateFragments(uri.getPath, Jsoup.parse(file, "UTF-8"), fragments, errorCollector)
-              }
-            case None =>
-              reportErrorOnSources(errorCollector, c.allSources)(s"Could not find path [${uri.getPath}] in site")
+      .partition(_.isInternal)
+
+    val htmlAnchors = AnchorIndex(
+      internalLinks
+        .filter(c => c.fragments.exists(_.fragment.exists(f => !hasPageAnchor(c.link.getPath)(f))))
+        .map(_.link.getPath)
+        .distinct
+        .flatMap(path => fullSite.get(path).map(path -> _)),
+      parallel
+    )
+
+    internalLinks.foreach { case c @ CapturedLink(uri, fragments) =>
+      fullSite.get(uri.getPath) match {
+        case Some(_) =>
+          if (c.hasFragments) {
+            def hasAnchor(fragment: String): Boolean =
+              hasPageAnchor(uri.getPath)(fragment) || htmlAnchors.get(uri.getPath).exists(_.contains(fragment))
+            validateFragments(uri.getPath, hasAnchor, fragments, errorCollector)
           }
-        case absolute if validateAbsolute =>
-          validateExternalLink(absolute, retryCount, errorCollector, logger)
-        case _ =>
-        // Ignore
+        case None =>
+          reportErrorOnSources(errorCollector, c.allSources)(s"Could not find path [${uri.getPath}] in site")
       }
+    }
 
-    errorCollector.logErrors(logger)
-    errorCollector.errorCount
+    if (validateAbsolute) {
+      val cache =
+        linkCacheFile.filter(_ => linkCacheTtl > Duration.Zero).map(new ExternalLinkValidator.Cache(_, linkCacheTtl))
+      val validator = new ExternalLinkValidator(retryCount, linkParallelism, connectionsPerHost, cache, logger)
+      externalLinks.zip(validator.check(externalLinks)).foreach { case (link, result) =>
+        reportExternalLink(link, result, errorCollector, logger)
+      }
+      cache.foreach(_.save())
+    }
   }
 
-  private def validateExternalLink(
+  private def reportExternalLink(
       capturedLink: CapturedLink,
-      retryCount: Int,
+      result: ExternalLinkValidator.Result,
       errorContext: ErrorContext,
       logger: ParadoxLogger
   ): Unit = {
-    logger.info(s"Validating external link: ${capturedLink.link}")
-
     def reportError = reportErrorOnSources(errorContext, capturedLink.allSources)(_)
-    val url         = capturedLink.link.toString
-
-    try {
-      val request = Jsoup
-        .connect(url)
-        .userAgent("Paradox Link Validator <https://github.com/lightbend/paradox>")
-        .followRedirects(false)
-        .ignoreHttpErrors(true)
-        .ignoreContentType(true)
-
-      val response = Validator.validateWithRetries(request, retryCount)
-
-      // jsoup doesn't offer any simple way to clean up, the only way to close is to get the body stream and close it,
-      // but if you've already read the response body, that will throw an exception, and there's no way to check if
-      // you've already tried to read the response body, so we can't do that in a finally block, we have to do it
-      // explicitly every time we don't want to consume the stream.
-      def close(): Unit = response.bodyStream().close()
-
-      if (response.statusCode() / 100 == 3) {
-        close()
-        reportError(s"Received a ${response.statusCode()} ${response
-            .statusMessage()} on external link, location redirected to is [${response.header("Location")}]")
-      } else if (response.statusCode() != 200) {
-        close()
-        reportError(
-          s"Error validating external link ${capturedLink.link}, status was ${response.statusCode()} ${response.statusMessage()}"
-        )
-      } else {
-        if (capturedLink.hasFragments) {
-          validateFragments(url, response.parse(), capturedLink.fragments, errorContext)
-        } else {
-          close()
+
+    result match {
+      case ExternalLinkValidator.Valid(anchors) =>
+        anchors.foreach { a =>
+          validateFragments(capturedLink.link.toString, a.contains, capturedLink.fragments, errorContext)
         }
-      }
-    } catch {
-      case NonFatal(e) =>
+      case ExternalLinkValidator.Redirected(status, message, location) =>
+        reportError(s"Received a $status $message on external link, location redirected to is [$location]")
+      case ExternalLinkValidator.Invalid(status, message) =>
+        reportError(s"Error validating external link ${capturedLink.link}, status was $status $message")
+      case ExternalLinkValidator.Failed(e) =>
         reportError(s"Exception occurred when validating external link: $e")
         logger.debug(e)
     }
   }
 
-  private def reportErrorOnSources(errorContext: ErrorContext, sources: List[(File, Node)])(msg: String): Unit =
-    sources.foreach { case (file, node) =>
-      errorContext(msg, file, node)
+  private def reportErrorOnSources(errorContext: ErrorContext, sources: List[(File, Int)])(msg: String): Unit =
+    sources.foreach { case (file, index) =>
+      errorContext(msg, file, index)
     }
 
   private def validateFragments(
       path: String,
-      content: Document,
+      hasAnchor: String => Boolean,
       fragments: List[CapturedLinkFragment],
       errorContext: ErrorContext
   ): Unit =
     fragments.foreach {
       case CapturedLinkFragment(Some(fragment), sources) =>
-        if (content.getElementById(fragment) == null && content.select(s"a[name=$fragment]").isEmpty) {
+        if (!hasAnchor(fragment)) {
           reportErrorOnSources(errorContext, sources)(s"Could not find anchor [$fragment] in page [$path]")
         }
       case _ =>
@@ -293,6 +698,37 @@ class ParadoxProcessor(
       pageTemplate: PageTemplate,
       print: Boolean,
       logger: ParadoxLogger
+  ): Either[String, Seq[(File, String)]] =
+    renderSinglePage(
+      parse(mappings, sourceSuffix, targetSuffix, properties, logger, BuildReport.Disabled),
+      outputDirectory,
+      sourceSuffix,
+      targetSuffix,
+      illegalLinkPath,
+      groups,
+      properties,
+      navDepth,
+      navExpandDepth,
+      expectedRoots,
+      pageTemplate,
+      print,
+      logger
+    )
+
+  private def renderSinglePage(
+      parsed: Parsed,
+      outputDirectory: File,
+      sourceSuffix: String,
+      targetSuffix: String,
+      illegalLinkPath: Regex,
+      groups: Map[String, Seq[String]],
+      properties: Map[String, String],
+      navDepth: Int,
+      navExpandDepth: Option[Int],
+      expectedRoots: List[String],
+      pageTemplate: PageTemplate,
+      print: Boolean,
+      logger: ParadoxLogger
   ): Either[String, Seq[(File, String)]] = {
 
     require(
@@ -301,41 +737,52 @@ class ParadoxProcessor(
     )
 
     val errorCollector = new ErrorCollector
+    parsed.errors.reportTo(errorCollector)
 
-    val roots = parsePages(mappings, Path.replaceSuffix(sourceSuffix, targetSuffix), properties, errorCollector)
-    val pages = Page.allPages(roots)
+    val roots              = parsed.roots
+    val graph              = PageGraph(roots)
+    val pages              = graph.paths
     val globalPageMappings = rootPageMappings(roots)
 
     val navToc = new SinglePageSupport.SinglePageTableOfContents(maxDepth = navDepth, maxExpandDepth = navExpandDepth)
 
-    @tailrec
-    def render(location: Option[Location[Page]], rendered: Seq[PageContents] = Seq.empty): Seq[PageContents] =
-      location match {
-        case Some(loc) =>
-          val page = loc.tree.label
-          checkDuplicateAnchors(page, logger)
-          val pageProperties = properties ++ page.properties.get
-          val currentMapping =
-            Path.generateTargetFile(Path.relativeLocalPath(page.rootSrcPage, page.file.getPath), globalPageMappings)
-          val writerContext = Writer.Context(
-            loc,
-            pages,
-            reader,
-            singlePageWriter,
-            new PagedErrorContext(errorCollector, page),
-            logger,
-            currentMapping,
-            sourceSuffix,
-            targetSuffix,
-            illegalLinkPath,
-            groups,
-            pageProperties
-          )
-          val pageContents =
-            PageContents(Nil, groups, loc, singlePageWriter, writerContext, navToc, new TableOfContents())
-          render(loc.next, rendered :+ pageContents)
-        case None => rendered
-      }
+    // errors are collected per page and reported in page order, as streamed pages may be rendered on worker threads
+    def render(loc: Location[Page]): (PageContents, ErrorCollector) = {
+      val page = loc.tree.label
+      checkDuplicateAnchors(page, logger)
+      val pageErrors     = new ErrorCollector
+      val pageProperties = properties ++ page.properties.get
+      val currentMapping =
+        Path.generateTargetFile(Path.relativeLocalPath(page.rootSrcPage, page.file.getPath), globalPageMappings)
+      val writerContext = Writer.Context(
+        loc,
+        pages,
+        reader,
+        singlePageWriter,
+        new PagedErrorContext(pageErrors, page),
+        logger,
+        currentMapping,
+        sourceSuffix,
+        targetSuffix,
+        illegalLinkPath,
+        groups,
+        pageProperties,
+        snippets = snippets
+      )
+      val pageContents = PageContents(
+        Nil,
+        groups,
+        loc,
+        singlePageWriter,
+        writerContext,
+        navToc,
+        new TableOfContents(),
+        isContentStreamed = streamOutput,
+        graph = Some(graph),
+        markdown = pageMarkdown(parsed, properties, BuildReport.Disabled, writerContext.error)
+      )
+      pageContents -> pageErrors
+    }
 
     if (expectedRoots.sorted != roots.map(_.label.path).sorted)
       errorCollector(
@@ -346,27 +793,34 @@ class ParadoxProcessor(
       )
 
     outputDirectory.mkdirs()
-    val results = roots.flatMap { root =>
-      val pages      = render(Some(root.location))
-      val page       = root.location.tree.label
-      val outputFile = new File(outputDirectory, page.path)
-      outputFile.getParentFile.mkdirs
+    val outputs = new OutputFiles(outputDirectory)
+    val results = graph.roots.toList.flatMap { root =>
+      val rendered      = graph.tree(root).map(render)
+      val pages         = rendered.map(_._1)
+      val page          = graph.page(root)
+      val outputFile    = new File(outputDirectory, page.path)
       val pagesToRender = pages.tail
       val pageName      = if (print) pageTemplate.defaultPrintName else pageTemplate.defaultSingleName
       val cover         = if (print) {
         val printCover = new File(outputDirectory, "print-cover.html")
-        Some(pageTemplate.writePrintCover("print-cover", pages.head, printCover) -> "print-cover.html")
+        val written    = outputs.write(printCover)(pageTemplate.writePrintCover("print-cover", pages.head, _))
+        Some(written -> "print-cover.html")
       } else None
 
-      val single = pageTemplate.writeSingle(
-        page.properties(Page.Properties.DefaultSingleLayoutMdIndicator, pageName),
-        pages.head,
-        pagesToRender,
-        outputFile
-      ) -> page.path
+      val single = outputs.write(outputFile) { out =>
+        pageTemplate.writeSingle(
+          page.properties(Page.Properties.DefaultSingleLayoutMdIndicator, pageName),
+          pages.head,
+          pagesToRender,
+          out,
+          parallel
+        )
+      } -> page.path
+      rendered.foreach { case (_, pageErrors) => pageErrors.reportTo(errorCollector) }
 
       cover.toSeq :+ single
     }
+    outputs.finish()
 
     if (errorCollector.hasErrors) {
       errorCollector.logErrors(logger)
@@ -375,27 +829,28 @@ class ParadoxProcessor(
   }
 
   private def checkDuplicateAnchors(page: Page, logger: ParadoxLogger): Unit = {
-    val anchors = (page.headers.flatMap(_.toSet) :+ page.h1).map(_.path) ++ page.anchors.map(_.path)
-    anchors
-      .filter(_ != "#")
-      .groupBy(identity)
-      .collect { case (anchor, n) if n.size > 1 => anchor }
+    val seen = mutable.Set.empty[String]
+    page.anchorPaths
+      .filter(anchor => anchor != "#" && !seen.add(anchor))
+      .distinct
       .foreach { anchor =>
         logger.warn(s"Duplicate anchor [$anchor] on [${page.path}]")
       }
   }
 
-  private def createMetadata(outputDirectory: File, properties: Map[String, String]): (File, String) = {
-    val metadataFilename             = "paradox.json"
-    val target                       = new File(outputDirectory, metadataFilename)
-    var osWriter: OutputStreamWriter = null
-    try {
-      osWriter = new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8)
-      osWriter.write(s"""{
-                        |  "name" : "${properties("project.name")}",
-                        |  "version" : "${properties("project.version")}"
-                        |}""".stripMargin)
-    } finally osWriter.close()
+  private def createMetadata(
+      outputDirectory: File,
+      outputs: OutputFiles,
+      properties: Map[String, String]
+  ): (File, String) = {
+    val metadataFilename = "paradox.json"
+    val target           = new File(outputDirectory, metadataFilename)
+    outputs.write(target) {
+      _.write(s"""{
+                 |  "name" : "${properties("project.name")}",
+                 |  "version" : "${properties("project.version")}"
+                 |}""".stripMargin)
+    }
     (target, metadataFilename)
   }
 
@@ -409,33 +864,61 @@ class ParadoxProcessor(
       writer: Writer,
       context: Writer.Context,
       navToc: TableOfContents,
-      pageToc: TableOfContents
-  ) extends PageTemplate.Contents {
+      pageToc: TableOfContents,
+      isContentStreamed: Boolean = false,
+      navigationCache: Option[NavigationCache] = None,
+      graph: Option[PageGraph] = None,
+      markdown: Page => RootNode = _.markdown
+  ) extends PageTemplate.StreamedContents {
     import com.lightbend.paradox.compat.Implicits._
 
     private val page = loc.tree.label
 
     val getTitle: String   = page.title
     val getContent: String =
-      try writer.writeContent(page.markdown, context)
+      if (isContentStreamed) contentPlaceholder
+      else
+        try context.report.phase("serialize")(writer.writeContent(markdown(page), context))
+        catch {
+          case e: Throwable =>
+            context.logger.debug(e)
+            context.error(s"Error writing content: ${e.getMessage}", page)
+            ""
+        }
+
+    override def contentPlaceholder: String = PageTemplate.contentPlaceholder(page.path)
+
+    private var contentWritten = false
+
+    def writeContent(out: java.io.Writer): Unit = {
+      // errors and links are only reported the first time, if the template inserts the content more than once
+      val writeContext =
+        if (contentWritten) context.copy(error = new PagedErrorContext(new ErrorCollector, page), links = None)
+        else context
+      contentWritten = true
+      try writeContext.report.phase("serialize")(writer.writeContent(markdown(page), writeContext, out))
       catch {
         case e: Throwable =>
-          context.logger.debug(e)
-          context.error(s"Error writing content: ${e.getMessage}", page)
-          ""
+          writeContext.logger.debug(e)
+          writeContext.error(s"Error writing content: ${e.getMessage}", page)
       }
+    }
 
     lazy val getBase: String            = page.base
     lazy val getHome: PageTemplate.Link = link(Some(loc.root))
-    lazy val getPrev: PageTemplate.Link = link(loc.prev)
+    lazy val getPrev: PageTemplate.Link = link(graph.fold(loc.prev)(_.prev(loc)))
     lazy val getSelf: PageTemplate.Link = link(Some(loc))
-    lazy val getNext: PageTemplate.Link = link(loc.next)
-    lazy val getBreadcrumbs: String     =
+    lazy val getNext: PageTemplate.Link = link(graph.fold(loc.next)(_.next(loc)))
+    lazy val getBreadcrumbs: String     = context.report.phase("navigation") {
       writer.writeBreadcrumbs(Breadcrumbs.markdown(leadingBreadcrumbs, loc.path), context)
-    lazy val getNavigation: String  = writer.writeNavigation(navToc.root(loc), context)
+    }
+    lazy val getNavigation: String = context.report.phase("navigation") {
+      navigationCache.fold(writer.writeNavigation(navToc.root(loc), context))(_.apply(loc, context))
+    }
     lazy val getGroups: String      = Groups.html(groups)
     lazy val hasSubheaders: Boolean = page.headers.nonEmpty
-    lazy val getToc: String         = writer.writeToc(pageToc.headers(loc), context)
+    lazy val getToc: String         =
+      context.report.phase("navigation")(writer.writeToc(pageToc.headers(loc), context))
     lazy val getSource_url: String  = githubLink(Some(loc)).getHtml
     def getPath: String             = page.path
 
@@ -497,6 +980,8 @@ class ParadoxProcessor(
 
     override def variables: Map[String, String] = context.properties
 
+    override lazy val snippets: SnippetCache = context.snippets
+
     private def href(location: Location[Page]): String =
       try {
         val sourceFilePath = location.tree.label.file.toString
@@ -516,9 +1001,12 @@ class ParadoxProcessor(
       mappings: Seq[(File, String)],
       convertPath: String => String,
       properties: Map[String, String],
-      error: ErrorContext
-  ): Forest[Page] =
-    Page.forest(parseMarkdown(mappings, properties, error), convertPath, properties)
+      error: ErrorContext,
+      report: BuildReport = BuildReport.Disabled
+  ): Forest[Page] = {
+    val parsed = parseMarkdown(mappings, properties, error, report)
+    report.phase("index")(Page.forest(parsed, convertPath, properties))
+  }
 
   /**
    * Parse markdown files into pegdown AST.
@@ -526,29 +1014,85 @@ class ParadoxProcessor(
   def parseMarkdown(
       mappings: Seq[(File, String)],
       properties: Map[String, String],
-      error: ErrorContext
+      error: ErrorContext,
+      report: BuildReport = BuildReport.Disabled
   ): Seq[(File, String, RootNode, Map[String, String])] =
-    mappings map { case (file, path) =>
-      val frontin = Frontin(file)
-      val root    = parseAndProcessMarkdown(file, frontin.body, properties ++ frontin.header, error)
-      (file, normalizePath(path), root, frontin.header)
+    parseMarkdown(mappings, properties, error, report, outline = false)
+
+  private def parseMarkdown(
+      mappings: Seq[(File, String)],
+      properties: Map[String, String],
+      error: ErrorContext,
+      report: BuildReport,
+      outline: Boolean
+  ): Seq[(File, String, RootNode, Map[String, String])] = {
+    val includes = new IncludeCache
+    val parsed   = parallel.map(mappings) { case (file, path) =>
+      report.page(file) {
+        // errors are collected per page and reported in mapping order, so reporting doesn't depend on scheduling
+        val pageErrors = new ErrorCollector
+        val source     = report.phase("front-matter")(SourceFile.read(file))
+        val root       = parseAndProcessMarkdown(source, properties ++ source.header, pageErrors, report, includes)
+        ((file, normalizePath(path), if (outline) Index.outline(root) else root, source.header), pageErrors)
+      }
+    }
+    parsed.map { case (page, pageErrors) =>
+      pageErrors.reportTo(error)
+      page
     }
+  }
 
   def parseAndProcessMarkdown(
       file: File,
       markdown: String,
       properties: Map[String, String],
-      error: ErrorContext
+      error: ErrorContext,
+      report: BuildReport = BuildReport.Disabled
+  ): RootNode =
+    parseAndProcessMarkdown(file, markdown, properties, error, report, new IncludeCache)
+
+  private def parseAndProcessMarkdown(
+      file: File,
+      markdown: String,
+      properties: Map[String, String],
+      error: ErrorContext,
+      report: BuildReport,
+      includes: IncludeCache
   ): RootNode = {
-    val root = reader.read(markdown)
-    processIncludes(file, root, properties, error)
+    val root = report.phase("parse")(parseCache.fold(reader.read(markdown))(_.read(markdown)(reader.read(markdown))))
+    report.phase("includes")(processIncludes(file, root, properties, error, report, includes))
+  }
+
+  // a source file is parsed from the buffer it was read into, and its body is only copied to look it up in the cache
+  private def parseAndProcessMarkdown(
+      source: SourceFile,
+      properties: Map[String, String],
+      error: ErrorContext,
+      report: BuildReport,
+      includes: IncludeCache
+  ): RootNode = {
+    val root = report.phase("parse")(parseCache.fold(reader.read(source))(_.read(source.body)(reader.read(source))))
+    report.phase("includes")(processIncludes(source.file, root, properties, error, report, includes))
+  }
+
+  private def logParseCache[T](logger: ParadoxLogger)(parse: => T): T = parseCache match {
+    case Some(cache) =>
+      val (hits, misses) = (cache.hits, cache.misses)
+      val result         = parse
+      // everything this processor has parsed is kept, so parsing with other properties doesn't remove their trees
+      val removed = cache.prune()
+      logger.info(s"Parse cache: ${cache.hits - hits} hits, ${cache.misses - misses} misses, $removed removed")
+      result
+    case None => parse
   }
 
   private def processIncludes(
       file: File,
       root: RootNode,
       properties: Map[String, String],
-      error: ErrorContext
+      error: ErrorContext,
+      report: BuildReport,
+      includes: IncludeCache
   ): RootNode = {
     val newRoot = new RootNode
     // This is a mutable list, and is expected to be mutated by anything that wishes to add children
@@ -563,19 +1107,26 @@ class ParadoxProcessor(
             error(s"Only explicit links are supported by the include directive, reference links are not", file, include)
             ""
         }
-        val includeFile         = SourceDirective.resolveFile("include", source, file, properties)
-        val frontin             = Frontin(includeFile)
-        val filterLabels        = Directive.filterLabels("include", include.attributes, labels, properties)
-        val (text, snippetLang) = Snippet(includeFile, labels, filterLabels)
-        // I guess we could support multiple markup languages in future...
-        if (snippetLang != "md" && snippetLang != "markdown") {
-          error(s"Don't know how to include '*.$snippetLang' content.", file, include)
-        } else {
-          val includedRoot = parseAndProcessMarkdown(includeFile, text, properties ++ frontin.header, error)
-          val includeNode  = IncludeNode(includedRoot, includeFile, source)
-          includeNode.setStartIndex(include.getStartIndex)
-          includeNode.setEndIndex(include.getEndIndex)
-          newChildren.add(includeNode)
+        val includeFile  = SourceDirective.resolveFile("include", source, file, properties)
+        val filterLabels = Directive.filterLabels("include", include.attributes, labels, properties)
+        val included     = includes(includeFile, labels, filterLabels, properties, error) { includeErrors =>
+          val (text, snippetLang) = Snippet(snippets(includeFile), labels, filterLabels)
+          // I guess we could support multiple markup languages in future...
+          if (snippetLang != "md" && snippetLang != "markdown") Left(snippetLang)
+          else {
+            val header = SourceFile.read(includeFile).header
+            Right(parseAndProcessMarkdown(includeFile, text, properties ++ header, includeErrors, report, includes))
+          }
+        }
+        included match {
+          case Left(snippetLang) =>
+            error(s"Don't know how to include '*.$snippetLang' content.", file, include)
+          case Right(includedRoot) =>
+            // the included markdown may be shared with other includes, each include node has its own indexes
+            val includeNode = IncludeNode(includedRoot, includeFile, source)
+            includeNode.setStartIndex(include.getStartIndex)
+            includeNode.setEndIndex(include.getEndIndex)
+            newChildren.add(includeNode)
         }
 
       case other => newChildren.add(other)
@@ -597,38 +1148,65 @@ class ParadoxProcessor(
    * Create Mappings from page path to target file name
    */
   def rootPageMappings(pages: Forest[Page]): Map[String, String] = {
-    @tailrec
-    def mapping(location: Option[Location[Page]], fileMappings: List[(String, String)] = Nil): List[(String, String)] =
-      location match {
-        case Some(loc) =>
-          val page          = loc.tree.label
-          val fullSrcPath   = page.file.getPath
-          val curTargetPath = page.path
-          val curSrcPath    = Path.relativeLocalPath(page.rootSrcPage, fullSrcPath)
-          val curMappings   = (curSrcPath, curTargetPath)
-          mapping(loc.next, curMappings :: fileMappings)
-        case None => fileMappings
-      }
-    pages.flatMap(root => mapping(Some(root.location))).toMap
+    def mappings(tree: Tree[Page]): List[(String, String)] = {
+      val page = tree.label
+      (Path.relativeLocalPath(page.rootSrcPage, page.file.getPath), page.path) :: tree.children.flatMap(mappings)
+    }
+    // the first page in depth-first order wins within a tree
+    pages.flatMap(root => mappings(root).reverse).toMap
   }
 
 }
 
-object Validator {
-
-  // 500 Internal Server Error
-  // 502 Bad Gateway
-  // 503 Service Unavailable
-  // 504 Gateway Timeout
-  private val retryableStatusCodes = Set(500, 502, 503, 504)
-
-  def validateWithRetries(request: Connection, retryCount: Int): Connection.Response =
-    try {
-      val res = request.execute()
-      if (retryCount == 0 || res.statusCode() == 200 || !retryableStatusCodes.contains(res.statusCode())) res
-      else validateWithRetries(request, retryCount - 1)
-    } catch {
-      case e: SocketTimeoutException => if (retryCount == 0) throw e else validateWithRetries(request, retryCount - 1)
-    }
+object ParadoxProcessor {
 
+  /**
+   * Version of paradox, from the manifest of its jar, or `unknown` if it isn't run from a jar.
+   */
+  val Version: String =
+    Option(classOf[ParadoxProcessor].getPackage).flatMap(p => Option(p.getImplementationVersion)).getOrElse("unknown")
+
+  /**
+   * Settings of the multi-page site output, as given to [[ParadoxProcessor.process]].
+   */
+  case class SiteOutput(
+      leadingBreadcrumbs: List[(String, String)],
+      outputDirectory: File,
+      sourceSuffix: String,
+      targetSuffix: String,
+      illegalLinkPath: Regex,
+      groups: Map[String, Seq[String]],
+      properties: Map[String, String],
+      navDepth: Int,
+      navExpandDepth: Option[Int],
+      navIncludeHeaders: Boolean,
+      expectedRoots: List[String],
+      pageTemplate: PageTemplate,
+      incremental: Boolean = false
+  )
+
+  /**
+   * Settings of a single-page or print output, as given to [[ParadoxProcessor.processSinglePage]].
+   */
+  case class SinglePageOutput(
+      outputDirectory: File,
+      sourceSuffix: String,
+      targetSuffix: String,
+      illegalLinkPath: Regex,
+      groups: Map[String, Seq[String]],
+      properties: Map[String, String],
+      navDepth: Int,
+      navExpandDepth: Option[Int],
+      expectedRoots: List[String],
+      pageTemplate: PageTemplate
+  )
+
+  /**
+   * Result of each output built by [[ParadoxProcessor.processAll]], if it was defined.
+   */
+  case class Results(
+      site: Option[Either[String, Seq[(File, String)]]],
+      single: Option[Either[String, Seq[(File, String)]]],
+      print: Option[Either[String, Seq[(File, String)]]]
+  )
 }
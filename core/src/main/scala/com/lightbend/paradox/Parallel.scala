@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.util.concurrent.{
+  Callable,
+  ExecutionException,
+  FutureTask,
+  LinkedBlockingQueue,
+  ThreadFactory,
+  ThreadPoolExecutor,
+  TimeUnit
+}
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Work on up to `parallelism` threads, shared by all the work of a build: the thread waiting for the results, and a
+ * pool of worker threads for the rest. Every call uses the same workers, so per-thread state, such as the parsers of a
+ * reader or the template groups of a page template, is only created once per thread. Workers exit once they have been
+ * idle for a while, so the pool doesn't need to be shut down.
+ *
+ * Calls can be nested: a thread that needs the result of work that no worker has started yet runs it itself, so work
+ * submitted from a worker never waits for a free worker. A parallelism of one or less runs everything on the calling
+ * thread.
+ */
+final class Parallel(val parallelism: Int) {
+
+  private lazy val executor = {
+    val executor = new ThreadPoolExecutor(
+      parallelism - 1,
+      parallelism - 1,
+      Parallel.KeepAliveSeconds,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue[Runnable],
+      Parallel.threadFactory
+    )
+    executor.allowCoreThreadTimeOut(true)
+    executor
+  }
+
+  /**
+   * Apply `f` to every item. Results are returned in the order of `items`, the first failure (in item order) is
+   * rethrown and any work that hasn't started is cancelled.
+   */
+  def map[A, B](items: Seq[A])(f: A => B): Seq[B] =
+    if (parallelism <= 1 || items.size <= 1) items.map(f)
+    else {
+      val tasks = items.toList.map(item => submit(f(item)))
+      try tasks.map(_.result())
+      finally tasks.foreach(_.cancel())
+    }
+
+  /**
+   * Work whose result is needed later, which is started on a worker thread.
+   */
+  def submit[A](f: => A): Parallel.Task[A] = {
+    val task = new Parallel.Task(new Callable[A] { def call(): A = f })
+    if (parallelism > 1) executor.execute(task)
+    task
+  }
+}
+
+object Parallel {
+
+  /**
+   * Runs all work on the calling thread.
+   */
+  val Sequential: Parallel = new Parallel(1)
+
+  /**
+   * Submitted work, which the thread getting its result runs if it hasn't started yet.
+   */
+  final class Task[A] private[Parallel] (callable: Callable[A]) extends FutureTask[A](callable) {
+
+    /**
+     * The result of the work, rethrowing its failure.
+     */
+    def result(): A = {
+      run()
+      try get()
+      catch {
+        case e: ExecutionException if e.getCause != null => throw e.getCause
+      }
+    }
+
+    /**
+     * Cancel the work if it hasn't started yet.
+     */
+    def cancel(): Unit = cancel(false)
+  }
+
+  private val KeepAliveSeconds = 60L
+
+  private val threadFactory: ThreadFactory = new ThreadFactory {
+    private val count                           = new AtomicInteger
+    override def newThread(r: Runnable): Thread = {
+      val thread = new Thread(r, s"paradox-worker-${count.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }
+  }
+}
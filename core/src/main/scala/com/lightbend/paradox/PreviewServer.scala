@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.{File, IOException, OutputStream}
+import java.net.{InetSocketAddress, URLDecoder}
+import java.nio.charset.StandardCharsets
+import java.nio.file._
+import java.nio.file.StandardWatchEventKinds._
+import java.util.concurrent.{CopyOnWriteArrayList, Executors, ThreadFactory, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.lightbend.paradox.compat.Implicits._
+import com.sun.net.httpserver.{HttpExchange, HttpServer}
+
+import scala.util.control.NonFatal
+
+/**
+ * Local HTTP server for previewing a site. Pages are rendered by the [[PreviewSite]] when they're requested, and other
+ * files are served from the asset directories. The source directories are watched for changes, which update the site
+ * and reload the changed pages in the browser, through server-sent events.
+ */
+class PreviewServer(
+    site: PreviewSite,
+    sourceDirectories: Seq[File],
+    assetDirectories: Seq[File],
+    port: Int,
+    logger: ParadoxLogger
+) {
+  import PreviewServer._
+
+  private val executor = Executors.newCachedThreadPool(threadFactory("paradox-preview"))
+  private val server   = HttpServer.create(new InetSocketAddress("localhost", port), 0)
+  private val clients  = new CopyOnWriteArrayList[OutputStream]
+  private val watcher  = FileSystems.getDefault.newWatchService
+
+  server.setExecutor(executor)
+  server.createContext("/", exchange => handle(exchange))
+
+  /**
+   * Start serving and watching for changes.
+   */
+  def start(): PreviewServer = {
+    sourceDirectories.filter(_.isDirectory).foreach(d => register(d.toPath))
+    executor.execute(() => watch())
+    server.start()
+    this
+  }
+
+  /**
+   * Stop serving and watching for changes.
+   */
+  def stop(): Unit = {
+    server.stop(0)
+    watcher.close()
+    executor.shutdownNow()
+  }
+
+  /**
+   * The address the site is served on.
+   */
+  def url: String = s"http://localhost:${server.getAddress.getPort}/"
+
+  /**
+   * Update the site for changed files, and reload the browsers showing pages that have changed.
+   */
+  def update(changed: Set[File]): Unit = {
+    val start   = System.nanoTime
+    val updated = site.update(changed)
+    logger.info(s"Updated ${updated.size} pages in ${TimeUnit.NANOSECONDS.toMillis(System.nanoTime - start)} ms")
+    if (updated.nonEmpty) reload(updated)
+  }
+
+  private def reload(paths: Set[String]): Unit = {
+    val event = paths.toSeq.sorted.map("data: " + _).mkString("", "\n", "\n\n").getBytes(StandardCharsets.UTF_8)
+    clients.asScala.foreach { client =>
+      try client.synchronized {
+        client.write(event)
+        client.flush()
+      }
+      catch {
+        case _: IOException =>
+          clients.remove(client)
+          client.close()
+      }
+    }
+  }
+
+  private def handle(exchange: HttpExchange): Unit =
+    try {
+      val path = URLDecoder.decode(exchange.getRequestURI.getRawPath, "UTF-8").stripPrefix("/")
+      if (path == EventsPath) events(exchange)
+      else {
+        val target = if (path.isEmpty || path.endsWith("/")) path + "index.html" else path
+        site.page(target) match {
+          case Some(html) => respond(exchange, 200, "text/html; charset=utf-8", withReload(html, target))
+          case None       =>
+            asset(target) match {
+              case Some(file) => respond(exchange, 200, contentType(file.getName), Files.readAllBytes(file.toPath))
+              case None       => respond(exchange, 404, "text/plain; charset=utf-8", s"Not found: /$target")
+            }
+        }
+      }
+    } catch {
+      case NonFatal(e) =>
+        logger.debug(e)
+        logger.error(s"Error previewing ${exchange.getRequestURI}: ${e.getMessage}")
+        respond(exchange, 500, "text/plain; charset=utf-8", s"Error: ${e.getMessage}")
+    }
+
+  private def events(exchange: HttpExchange): Unit = {
+    exchange.getResponseHeaders.set("Content-Type", "text/event-stream")
+    exchange.getResponseHeaders.set("Cache-Control", "no-cache")
+    exchange.sendResponseHeaders(200, 0)
+    // the response is left open, events are written to it when pages change
+    clients.add(exchange.getResponseBody)
+  }
+
+  private def asset(path: String): Option[File] =
+    assetDirectories.iterator
+      .map(dir => (dir.getCanonicalFile, new File(dir, path).getCanonicalFile))
+      .collectFirst {
+        case (dir, file) if file.isFile && file.getPath.startsWith(dir.getPath + File.separator) => file
+      }
+
+  private def respond(exchange: HttpExchange, status: Int, contentType: String, body: String): Unit =
+    respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8))
+
+  private def respond(exchange: HttpExchange, status: Int, contentType: String, body: Array[Byte]): Unit = {
+    exchange.getResponseHeaders.set("Content-Type", contentType)
+    exchange.getResponseHeaders.set("Cache-Control", "no-cache")
+    exchange.sendResponseHeaders(status, if (body.isEmpty) -1 else body.length.toLong)
+    try exchange.getResponseBody.write(body)
+    finally exchange.close()
+  }
+
+  private def register(directory: Path): Unit =
+    walk(directory).filter(Files.isDirectory(_)).foreach { dir =>
+      dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE)
+    }
+
+  private def walk(directory: Path): List[Path] = {
+    val paths = Files.walk(directory)
+    try paths.iterator.asScala.toList
+    finally paths.close()
+  }
+
+  private def watch(): Unit =
+    try
+      while (true) {
+        // changes are collected until there have been none for a moment, as saving a file can cause several events
+        val changed = collection.mutable.Set.empty[File]
+        var key     = watcher.take()
+        while (key ne null) {
+          val dir = key.watchable.asInstanceOf[Path]
+          key.pollEvents.asScala.foreach { event =>
+            event.context match {
+              case name: Path =>
+                val path = dir.resolve(name)
+                if (event.kind == ENTRY_CREATE && Files.isDirectory(path)) {
+                  register(path)
+                  walk(path).foreach(p => changed += p.toFile)
+                } else changed += path.toFile
+              case _ => // overflow
+            }
+          }
+          key.reset()
+          key = watcher.poll(QuietMillis, TimeUnit.MILLISECONDS)
+        }
+        try update(changed.toSet)
+        catch {
+          case NonFatal(e) =>
+            logger.debug(e)
+            logger.error(s"Error updating preview: ${e.getMessage}")
+        }
+      }
+    catch {
+      case _: InterruptedException | _: ClosedWatchServiceException => // stopped
+    }
+
+  private def withReload(html: String, path: String): String = {
+    val script =
+      s"""<script>new EventSource("/$EventsPath").onmessage = function (e) {
+         |  if (e.data.split("\\n").indexOf("$path") >= 0) location.reload();
+         |};</script>
+         |""".stripMargin
+    val end = html.toLowerCase.lastIndexOf("</body>")
+    if (end < 0) html + script else html.substring(0, end) + script + html.substring(end)
+  }
+}
+
+object PreviewServer {
+
+  /**
+   * Path of the server-sent events that reload pages.
+   */
+  val EventsPath = "__paradox/events"
+
+  private val QuietMillis = 50L
+
+  private val ContentTypes = Map(
+    "html"  -> "text/html; charset=utf-8",
+    "css"   -> "text/css; charset=utf-8",
+    "js"    -> "text/javascript; charset=utf-8",
+    "json"  -> "application/json",
+    "svg"   -> "image/svg+xml",
+    "png"   -> "image/png",
+    "jpg"   -> "image/jpeg",
+    "jpeg"  -> "image/jpeg",
+    "gif"   -> "image/gif",
+    "ico"   -> "image/x-icon",
+    "woff"  -> "font/woff",
+    "woff2" -> "font/woff2",
+    "ttf"   -> "font/ttf",
+    "txt"   -> "text/plain; charset=utf-8"
+  )
+
+  private def contentType(name: String): String =
+    ContentTypes.getOrElse(name.substring(name.lastIndexOf('.') + 1).toLowerCase, "application/octet-stream")
+
+  private def threadFactory(name: String): ThreadFactory = new ThreadFactory {
+    private val count                           = new AtomicInteger
+    override def newThread(r: Runnable): Thread = {
+      val thread = new Thread(r, s"$name-${count.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }
+  }
+}
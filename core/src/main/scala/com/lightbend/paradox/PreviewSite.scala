@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.{File, StringWriter}
+import java.util.concurrent.ConcurrentHashMap
+
+import com.lightbend.paradox.compat.Implicits._
+import com.lightbend.paradox.markdown._
+import com.lightbend.paradox.template.PageTemplate
+import com.lightbend.paradox.tree.Tree.{Forest, Location}
+import org.pegdown.ast.RootNode
+
+import scala.util.matching.Regex
+
+/**
+ * Parsed site that renders its pages when they're requested, for previewing. Rendered pages are kept until a source
+ * they depend on changes. Safe to use from multiple threads.
+ *
+ * Created with [[ParadoxProcessor.preview]].
+ */
+class PreviewSite private[paradox] (
+    processor: ParadoxProcessor,
+    reader: Reader,
+    writer: Writer,
+    snippets: SnippetCache,
+    mappings: Seq[(File, String)],
+    sourceDirectories: Seq[File],
+    leadingBreadcrumbs: List[(String, String)],
+    sourceSuffix: String,
+    targetSuffix: String,
+    illegalLinkPath: Regex,
+    groups: Map[String, Seq[String]],
+    properties: Map[String, String],
+    navDepth: Int,
+    navExpandDepth: Option[Int],
+    navIncludeHeaders: Boolean,
+    pageTemplate: PageTemplate,
+    logger: ParadoxLogger
+) {
+  import PreviewSite._
+
+  private val navToc = new TableOfContents(
+    pages = true,
+    headers = navIncludeHeaders,
+    ordered = false,
+    maxDepth = navDepth,
+    maxExpandDepth = navExpandDepth
+  )
+  private val pageToc = new TableOfContents(pages = false, headers = true, ordered = false, maxDepth = navDepth)
+
+  @volatile private var state: State = {
+    val sources = mappings.map { case (file, path) => normalize(file) -> path }
+    site(sources, parse(sources).map(p => p._1 -> p).toMap, Map.empty)
+  }
+
+  /**
+   * Target paths of all pages.
+   */
+  def paths: Seq[String] = state.locations.keys.toSeq.sorted
+
+  /**
+   * The rendered page at a target path, if there is one. Errors are logged, and the page is rendered as well as
+   * possible.
+   */
+  def page(path: String): Option[String] = {
+    val current = state
+    current.locations.get(path).map { loc =>
+      current.rendered.computeIfAbsent(path, _ => render(current, loc))
+    }
+  }
+
+  /**
+   * Update the site for changed, added or removed files. Changed markdown sources are parsed again, along with the
+   * sources that include or snip them. Returns the target paths of the pages that will be rendered again, which are
+   * all paths if the structure of the site has changed, such as the titles or headers shown in the navigation.
+   */
+  def update(changed: Set[File]): Set[String] = synchronized {
+    val files    = changed.map(normalize)
+    val previous = state
+    val kept     = previous.sources.filter { case (file, _) => file.exists }
+    val added    = files.toSeq.sortBy(_.getPath).filterNot(kept.toMap.contains).flatMap(source)
+    val sources  = kept ++ added
+    // new sources and sources with unknown dependencies are always parsed again
+    def dependsOnChanges(file: File): Boolean = previous.dependencies.get(file).forall(_.forall(_.exists(files)))
+    val affected = sources.collect { case (file, _) if files(file) || dependsOnChanges(file) => file }.toSet
+    val reparsed = parse(sources.filter(s => affected.contains(s._1))).map(p => p._1 -> p).toMap
+    val parsed   = sources.flatMap { case (file, _) => reparsed.get(file).orElse(previous.parsed.get(file)) }
+    val updated  = site(sources, parsed.map(p => p._1 -> p).toMap, previous.rendered.asScala.toMap)
+    val invalid  =
+      if (updated.structure != previous.structure) updated.locations.keySet
+      else
+        updated.locations.collect {
+          case (path, loc) if affected.contains(normalize(loc.tree.label.file)) => path
+        }.toSet
+    invalid.foreach(updated.rendered.remove)
+    state = updated
+    invalid
+  }
+
+  private def source(file: File): Option[(File, String)] =
+    if (!file.isFile || !file.getName.endsWith(sourceSuffix) || file.getName.startsWith(".")) None
+    else
+      sourceDirectories.map(normalize).collectFirst {
+        case dir if file.getPath.startsWith(dir.getPath + File.separator) =>
+          file -> processor.normalizePath(file.getPath.substring(dir.getPath.length + 1))
+      }
+
+  private def parse(sources: Seq[(File, String)]): Seq[(File, String, RootNode, Map[String, String])] = {
+    val errors = new ErrorCollector
+    val parsed = processor.parseMarkdown(sources, properties, errors)
+    errors.logErrors(logger)
+    parsed
+  }
+
+  private def site(
+      sources: Seq[(File, String)],
+      parsed: Map[File, (File, String, RootNode, Map[String, String])],
+      rendered: Map[String, String]
+  ): State = {
+    val convertPath: String => String = Path.replaceSuffix(sourceSuffix, targetSuffix)
+    val roots     = Page.forest(sources.flatMap(s => parsed.get(s._1)), convertPath, properties)
+    val graph     = PageGraph(roots)
+    val locations = graph.locations
+    val dependencies = locations.map { loc =>
+      val page = loc.tree.label
+      normalize(page.file) -> BuildManifest
+        .dependencies(page.file, page.markdown, properties ++ page.properties.get)
+        .map(_.map(normalize).toSet)
+    }.toMap
+    val state = State(
+      sources,
+      parsed,
+      roots,
+      graph.paths,
+      processor.rootPageMappings(roots),
+      locations.map(loc => loc.tree.label.path -> loc).toMap,
+      dependencies,
+      BuildManifest.siteStructure(locations),
+      new NavigationCache(navToc, writer),
+      new ConcurrentHashMap[String, String]
+    )
+    state.rendered.putAll(rendered.asJava)
+    state
+  }
+
+  private def render(state: State, loc: Location[Page]): String = {
+    val page           = loc.tree.label
+    val errors         = new ErrorCollector
+    val pageProperties = properties ++ page.properties.get
+    val currentMapping =
+      Path.generateTargetFile(Path.relativeLocalPath(page.rootSrcPage, page.file.getPath), state.globalPageMappings)
+    val context = Writer.Context(
+      loc,
+      state.pages,
+      reader,
+      writer,
+      new PagedErrorContext(errors, page),
+      logger,
+      currentMapping,
+      sourceSuffix,
+      targetSuffix,
+      illegalLinkPath,
+      groups,
+      pageProperties,
+      snippets = snippets
+    )
+    val contents =
+      processor.PageContents(
+        leadingBreadcrumbs,
+        groups,
+        loc,
+        writer,
+        context,
+        navToc,
+        pageToc,
+        navigationCache = Some(state.navigation)
+      )
+    val out = new StringWriter
+    pageTemplate.write(
+      page.properties(Page.Properties.DefaultLayoutMdIndicator, pageTemplate.defaultName),
+      contents,
+      out
+    )
+    errors.logErrors(logger)
+    out.toString
+  }
+}
+
+object PreviewSite {
+
+  // files are compared by absolute and normalized path, as includes can be relative to the including file
+  private def normalize(file: File): File = file.toPath.toAbsolutePath.normalize.toFile
+
+  /**
+   * Parsed sources by file, the site built from them, and the pages rendered so far. A new state is created for each
+   * update, so pages rendered from a previous state don't end up in the current one.
+   */
+  private final case class State(
+      sources: Seq[(File, String)],
+      parsed: Map[File, (File, String, RootNode, Map[String, String])],
+      roots: Forest[Page],
+      pages: Map[String, Page],
+      globalPageMappings: Map[String, String],
+      locations: Map[String, Location[Page]],
+      dependencies: Map[File, Option[Set[File]]],
+      structure: String,
+      navigation: NavigationCache,
+      rendered: ConcurrentHashMap[String, String]
+  )
+}
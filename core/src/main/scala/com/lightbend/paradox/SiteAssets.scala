@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox
+
+import java.io.File
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.regex.Matcher
+import java.util.zip.GZIPOutputStream
+
+import scala.util.Try
+import scala.util.matching.Regex
+
+/**
+ * Post-processing of the files of a site for serving with long-lived cache headers: fingerprinting assets with a digest
+ * of their content, and precompressing text files.
+ *
+ * Files that change are written to an output directory, and the site mappings are changed to use them, so that the
+ * site can still be synchronised from the mappings.
+ */
+object SiteAssets {
+
+  /**
+   * Name of the manifest of fingerprinted assets, a JSON object of the fingerprinted path of each asset by its path.
+   */
+  val ManifestFilename: String = "paradox-assets.json"
+
+  /**
+   * Extensions of the files that references to assets are rewritten in.
+   */
+  val RewrittenExtensions: Set[String] = Set("html", "css")
+
+  /**
+   * Extensions of the files that are precompressed.
+   */
+  val CompressedExtensions: Set[String] = Set("html", "css", "js", "json", "svg", "txt", "xml")
+
+  // href and src attributes, and url() in stylesheets
+  private val Reference: Regex =
+    """(?:(?:href|src)\s*=\s*(?:"([^"]*)"|'([^']*)'))|(?:url\(\s*(?:"([^"]*)"|'([^']*)'|([^'")\s]+))\s*\))""".r
+
+  /**
+   * Process site mappings, of files to their paths in the site.
+   *
+   * @param assets
+   *   paths of the assets to fingerprint, such as those of the theme
+   * @param fingerprint
+   *   whether to rename the assets with a digest of their content, and rewrite references to them in pages and
+   *   stylesheets
+   * @param precompress
+   *   whether to add gzip variants of text files, with a `.gz` suffix
+   * @param outputDirectory
+   *   where to write the files that change
+   * @param parallel
+   *   the threads to process files on
+   * @return
+   *   the mappings of the processed site
+   */
+  def process(
+      mappings: Seq[(File, String)],
+      assets: Set[String],
+      fingerprint: Boolean,
+      precompress: Boolean,
+      outputDirectory: File,
+      parallel: Parallel = Parallel.Sequential
+  ): Seq[(File, String)] =
+    if (!fingerprint && !precompress) mappings
+    else {
+      val outputs    = new OutputFiles(outputDirectory)
+      val files      = mappings.map { case (file, path) => file -> normalize(path) }
+      val processed  =
+        if (fingerprint) fingerprinted(files, assets.map(normalize), outputs, outputDirectory, parallel) else files
+      val compressed =
+        if (precompress) compress(processed, outputs, outputDirectory, parallel) else Nil
+      outputs.finish()
+      processed ++ compressed
+    }
+
+  /**
+   * The path with a fingerprint inserted before the extension.
+   */
+  def fingerprinted(path: String, digest: String): String = {
+    val name = path.lastIndexOf('/') + 1
+    path.lastIndexOf('.') match {
+      case dot if dot > name => path.substring(0, dot) + "." + digest + path.substring(dot)
+      case _                 => path + "." + digest
+    }
+  }
+
+  private def fingerprinted(
+      files: Seq[(File, String)],
+      assets: Set[String],
+      outputs: OutputFiles,
+      outputDirectory: File,
+      parallel: Parallel
+  ): Seq[(File, String)] = {
+    // assets that reference other assets are fingerprinted once rewritten, so that their names change with the others
+    val (referencing, other) =
+      files.filter { case (file, path) => assets(path) && file.isFile }.partition(f => isRewritten(f._2))
+    val renamedOther = parallel.map(other) { case (file, path) =>
+      path -> fingerprinted(path, Digest.file(file).take(DigestLength))
+    }.toMap
+    val rewrittenAssets = parallel.map(referencing) { case (file, path) =>
+      path -> rewrite(read(file), path, renamedOther)
+    }.toMap
+    val renamed = renamedOther ++ rewrittenAssets.map { case (path, text) =>
+      path -> fingerprinted(path, Digest(text).take(DigestLength))
+    }
+    val processed = parallel.map(files) {
+      case (file, path) if file.isFile && isRewritten(path) =>
+        val text      = read(file)
+        val rewritten = rewrittenAssets.getOrElse(path, rewrite(text, path, renamed))
+        val source    =
+          if (rewritten == text) file
+          else outputs.write(new File(outputDirectory, path))(_.write(rewritten))
+        source -> renamed.getOrElse(path, path)
+      case (file, path) => file -> renamed.getOrElse(path, path)
+    }
+    val manifest = outputs.write(new File(outputDirectory, ManifestFilename)) {
+      _.write(renamed.toSeq.sorted.map { case (path, to) => s"""  "$path" : "$to"""" }.mkString("{\n", ",\n", "\n}\n"))
+    }
+    processed :+ (manifest -> ManifestFilename)
+  }
+
+  /**
+   * Rewrite references to renamed files in a file at a path.
+   */
+  def rewrite(text: String, path: String, renamed: Map[String, String]): String =
+    if (renamed.isEmpty) text
+    else
+      Reference.replaceAllIn(
+        text,
+        m => {
+          val group     = (1 to 5).find(m.group(_) != null).get
+          val reference = m.group(group)
+          val rewritten = renamedReference(reference, path, renamed)
+          val matched   = m.matched
+          Matcher.quoteReplacement(
+            if (rewritten == reference) matched
+            else
+              matched.substring(0, m.start(group) - m.start) + rewritten + matched.substring(m.end(group) - m.start)
+          )
+        }
+      )
+
+  // a relative reference to a renamed file, with the file name replaced
+  private def renamedReference(reference: String, path: String, renamed: Map[String, String]): String = {
+    val end    = reference.indexWhere(c => c == '?' || c == '#') match {
+      case -1 => reference.length
+      case n  => n
+    }
+    val target     = reference.substring(0, end)
+    val isRelative = target.nonEmpty && !target.startsWith("/") && !target.contains(":")
+    val resolved   = if (isRelative) Try(URI.create(path).resolve(target).normalize.getPath).toOption else None
+    resolved.flatMap(renamed.get).fold(reference) { to =>
+      val directory = target.substring(0, target.lastIndexOf('/') + 1)
+      directory + to.substring(to.lastIndexOf('/') + 1) + reference.substring(end)
+    }
+  }
+
+  private def compress(
+      files: Seq[(File, String)],
+      outputs: OutputFiles,
+      outputDirectory: File,
+      parallel: Parallel
+  ): Seq[(File, String)] =
+    parallel.map(files.filter { case (file, path) => file.isFile && CompressedExtensions(extension(path)) }) {
+      case (file, path) =>
+        val compressed = outputs.writeBytes(new File(outputDirectory, path + ".gz")) { out =>
+          val gzip = new GZIPOutputStream(out)
+          Files.copy(file.toPath, gzip)
+          gzip.finish()
+        }
+        compressed -> (path + ".gz")
+    }
+
+  private val DigestLength = 12
+
+  private def read(file: File): String = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+
+  private def normalize(path: String): String = path.replace(File.separatorChar, '/')
+
+  private def isRewritten(path: String): Boolean = RewrittenExtensions(extension(path))
+
+  private def extension(path: String): String =
+    path.substring(path.lastIndexOf('/') + 1).split('.').toList match {
+      case _ :: (extensions @ (_ :: _)) => extensions.last.toLowerCase
+      case _                            => ""
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.lightbend.paradox.markdown
 
+import com.lightbend.paradox.BuildReport
 import com.lightbend.paradox.tree.Tree.Location
 import java.io.{File, FileNotFoundException}
 import java.util.Optional
@@ -31,16 +32,18 @@ import com.lightbend.paradox.compat.unsafeWrapArray
 import scala.util.matching.Regex
 
 /**
- * Serialize directives, checking the name and format against registered directives.
+ * Serialize directives, checking the name and format against registered directives. The rendering of each directive is
+ * measured in the build report.
  */
-class DirectiveSerializer(directives: Seq[Directive]) extends ToHtmlSerializerPlugin {
+class DirectiveSerializer(directives: Seq[Directive], report: BuildReport = BuildReport.Disabled)
+    extends ToHtmlSerializerPlugin {
   val directiveMap: Map[String, Directive] = directives.flatMap(d => d.names.map(n => (n, d))).toMap
 
   def visit(node: Node, visitor: Visitor, printer: Printer): Boolean = node match {
     case dnode: DirectiveNode =>
       directiveMap.get(dnode.name) match {
         case Some(directive) if directive.format(dnode.format) =>
-          directive.render(dnode, visitor, printer)
+          report.directive(dnode.name)(directive.render(dnode, visitor, printer))
         case _ => // printer.print(s"<!-- $dnode -->")
       }
       true
@@ -119,14 +122,11 @@ trait SourceDirective {
         ""
       }
 
-    Writer.substituteVarsInString(
-      node.source match {
-        case x: DirectiveNode.Source.Direct => x.value
-        case x: DirectiveNode.Source.Ref    => ref(x.value)
-        case DirectiveNode.Source.Empty     => ref(node.label)
-      },
-      variables
-    )
+    ctx.interpolator(node.source match {
+      case x: DirectiveNode.Source.Direct => x.value
+      case x: DirectiveNode.Source.Ref    => ref(x.value)
+      case DirectiveNode.Source.Empty     => ref(node.label)
+    })
   }
 
   protected def resolveFile(propPrefix: String, source: String, page: Page, variables: Map[String, String]): File =
@@ -183,9 +183,8 @@ case class RefDirective(ctx: Writer.Context) extends InlineDirective("ref", "ref
   private def check(node: DirectiveNode, path: String): Option[String] =
     ctx.paths.get(Path.resolve(page.path, path)).map { target =>
       if (path.contains("#")) {
-        val anchor  = path.substring(path.lastIndexOf('#'))
-        val headers = (target.headers.flatMap(_.toSet) :+ target.h1).map(_.path) ++ target.anchors.map(_.path)
-        if (!headers.contains(anchor)) {
+        val anchor = path.substring(path.lastIndexOf('#'))
+        if (!target.hasAnchor(anchor)) {
           ctx.error(s"Unknown anchor [$path]", node)
         }
       }
@@ -431,6 +430,12 @@ trait GitHubResolver {
 
   def variables: Map[String, String]
 
+  /**
+   * Snippet files to read label ranges from. Override it with the snippets of the writer context where there is one, to
+   * share them with the rest of the build.
+   */
+  lazy val snippets: SnippetCache = new SnippetCache
+
   lazy val githubDomain: String = variables.getOrElse(GitHubResolver.githubDomain, "github.com")
   val IssuesLink: Regex         = """([^/]+/[^/]+)?#([0-9]+)""".r
   val CommitLink: Regex         = """(([^/]+/[^/]+)?@)?(\p{XDigit}{5,40})""".r
@@ -454,7 +459,7 @@ trait GitHubResolver {
     val labelFragment =
       for {
         label <- labelOpt
-        (min, max) <- Snippet.extractLabelRange(file, label)
+        (min, max) <- Snippet.extractLabelRange(snippets(file), label, filterLabelLines = true)
       } yield
         if (min == max)
           s"L$min"
@@ -493,6 +498,8 @@ trait GitHubResolver {
  */
 case class GitHubDirective(ctx: Writer.Context) extends ExternalLinkDirective("github", "github:") with GitHubResolver {
 
+  override lazy val snippets: SnippetCache = ctx.snippets
+
   def resolveLink(node: DirectiveNode, link: String): Url =
     link match {
       case IssuesLink(project, issue)     => resolveProject(project) / "issues" / issue
@@ -512,13 +519,15 @@ case class SnipDirective(ctx: Writer.Context)
     with SourceDirective
     with GitHubResolver {
 
+  override lazy val snippets: SnippetCache = ctx.snippets
+
   def render(node: DirectiveNode, visitor: Visitor, printer: Printer): Unit =
     try {
       val labels              = node.attributes.values("identifier").asScala.toSeq
       val source              = resolvedSource(node, page)
       val filterLabels        = Directive.filterLabels("snip", node.attributes, labels, variables)
       val file                = resolveFile("snip", source, page, variables)
-      val (text, snippetLang) = Snippet(file, labels, filterLabels)
+      val (text, snippetLang) = Snippet(ctx.snippets(file), labels, filterLabels)
       val lang                = Option(node.attributes.value("type")).getOrElse(snippetLang)
       val group               = Option(node.attributes.value("group")).getOrElse("")
       val sourceUrl           =
@@ -586,7 +595,7 @@ case class FiddleDirective(ctx: Writer.Context) extends LeafBlockDirective("fidd
       val source       = resolvedSource(node, page)
       val file         = resolveFile("fiddle", source, page, variables)
       val filterLabels = Directive.filterLabels("fiddle", node.attributes, labels, variables)
-      val (code, _)    = Snippet(file, labels, filterLabels)
+      val (code, _)    = Snippet(ctx.snippets(file), labels, filterLabels)
 
       printer.println.print(
         s"""
@@ -657,9 +666,7 @@ case class VarsDirective(variables: Map[String, String]) extends ContainerBlockD
       case Some(verbatim: VerbatimNode) =>
         val startDelimiter = node.attributes.value("start-delimiter", "$")
         val stopDelimiter  = node.attributes.value("stop-delimiter", "$")
-        val text           = variables.foldLeft(verbatim.getText) { case (str, (key, value)) =>
-          str.replace(startDelimiter + key + stopDelimiter, value)
-        }
+        val text           = new PropertyInterpolator(variables, startDelimiter, stopDelimiter)(verbatim.getText)
         new VerbatimNode(text, verbatim.getType).accept(visitor)
       case _ => node.contentsNode.accept(visitor)
     }
@@ -789,12 +796,9 @@ case class DependencyDirective(ctx: Writer.Context) extends LeafBlockDirective("
     val stopDelimiter            = node.attributes.value("stop-delimiter", "$")
     val scalaBinaryVersionVarUse = startDelimiter + ScalaBinaryVersionVar + stopDelimiter
 
-    def coordinate(name: String): Option[String] =
-      Option(node.attributes.value(name)).map { value =>
-        variables.foldLeft(value) { case (str, (key, value)) =>
-          str.replace(startDelimiter + key + stopDelimiter, value)
-        }
-      }
+    val interpolator = ctx.interpolatorFor(startDelimiter, stopDelimiter)
+
+    def coordinate(name: String): Option[String] = Option(node.attributes.value(name)).map(interpolator(_))
 
     def requiredCoordinate(name: String): String =
       coordinate(name).getOrElse {
@@ -1085,12 +1089,9 @@ case class RepositoryDirective(ctx: Writer.Context) extends LeafBlockDirective("
       .sorted
       .map(_.replace("name", ""))
 
-    def coordinate(name: String): Option[String] =
-      Option(node.attributes.value(name)).map { value =>
-        variables.foldLeft(value) { case (str, (key, value)) =>
-          str.replace(startDelimiter + key + stopDelimiter, value)
-        }
-      }
+    val interpolator = ctx.interpolatorFor(startDelimiter, stopDelimiter)
+
+    def coordinate(name: String): Option[String] = Option(node.attributes.value(name)).map(interpolator(_))
 
     def requiredCoordinate(name: String): String =
       coordinate(name).getOrElse {
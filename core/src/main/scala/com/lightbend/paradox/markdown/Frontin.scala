@@ -18,7 +18,6 @@ package com.lightbend.paradox.markdown
 
 import java.io.{File, StringReader}
 import com.lightbend.paradox.compat.Implicits._
-import scala.io.BufferedSource
 
 case class Frontin(header: Map[String, String], body: String)
 
@@ -28,25 +27,38 @@ object Frontin {
   def separates(str: String): Boolean =
     str.trim == separator && str.startsWith(separator)
 
-  def apply(file: File): Frontin = {
-    var source: BufferedSource = null
-    val lines                  =
-      try {
-        source = scala.io.Source.fromFile(file)(using "UTF-8")
-        source.getLines().mkString("\n")
-      } finally source.close()
-    apply(lines)
+  def apply(file: File): Frontin = SourceFile.read(file).frontin
+
+  def apply(str: String): Frontin = split(str) match {
+    case Some((header, bodyStart)) => Frontin(loadProperties(Some(header)), str.substring(bodyStart))
+    case None                      => Frontin(Map.empty[String, String], str)
   }
 
-  def apply(str: String): Frontin =
-    str.linesWithSeparators.toList match {
-      case Nil                     => Frontin(Map.empty[String, String], "")
-      case x :: xs if separates(x) =>
-        xs span (!separates(_)) match {
-          case (h, b) => Frontin(loadProperties(Some(h.mkString(""))), if (b.isEmpty) "" else b.tail.mkString(""))
-        }
-      case _ => Frontin(Map.empty[String, String], str)
+  /**
+   * The header and the index of the body of text that starts with front matter, found without splitting the text into
+   * lines. The body is empty if the front matter isn't closed.
+   */
+  def split(text: CharSequence): Option[(String, Int)] = {
+    val firstEnd = lineEnd(text, 0)
+    if (!separates(text.subSequence(0, firstEnd).toString)) None
+    else {
+      val headerStart = math.min(firstEnd + 1, text.length)
+      var start       = headerStart
+      var closing     = -1
+      while (closing < 0 && start < text.length) {
+        val end = lineEnd(text, start)
+        if (separates(text.subSequence(start, end).toString)) closing = start else start = end + 1
+      }
+      if (closing < 0) Some(text.subSequence(headerStart, text.length).toString -> text.length)
+      else Some(text.subSequence(headerStart, closing).toString -> math.min(lineEnd(text, closing) + 1, text.length))
     }
+  }
+
+  private def lineEnd(text: CharSequence, start: Int): Int = {
+    var i = start
+    while (i < text.length && text.charAt(i) != '\n') i += 1
+    i
+  }
 
   def loadProperties(str: Option[String]): Map[String, String] = str match {
     case None    => Map.empty[String, String]
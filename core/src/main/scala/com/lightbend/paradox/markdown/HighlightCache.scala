@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.concurrent.ConcurrentHashMap
+
+import com.lightbend.paradox.Digest
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * Highlighted code, keyed by the language and a digest of the code, so that snippets repeated across pages are only
+ * highlighted once. Highlighted code is also stored in a directory, if defined, so that unchanged snippets aren't
+ * highlighted again on the next build. Safe to use from multiple threads.
+ */
+class HighlightCache(directory: Option[File] = None) {
+
+  private val entries = new ConcurrentHashMap[String, String]
+
+  /**
+   * Highlighted HTML for code in a language, if the language is supported.
+   */
+  def apply(language: String, text: String): Option[String] =
+    if (!Highlighter.supports(language)) None
+    else {
+      val key = Digest(Seq(Highlighter.Version.toString, language, text).mkString("\u0000"))
+      Option(entries.get(key)).orElse(load(key)).orElse(Highlighter(language, text).map(store(key, _))).map { html =>
+        entries.putIfAbsent(key, html)
+        html
+      }
+    }
+
+  private def file(key: String): Option[File] = directory.map(new File(_, key + ".html"))
+
+  private def load(key: String): Option[String] =
+    file(key).filter(_.isFile).flatMap { f =>
+      Try(new String(Files.readAllBytes(f.toPath), StandardCharsets.UTF_8)).toOption
+    }
+
+  // the cache is best effort, failing to store highlighted code only means highlighting it again next time
+  private def store(key: String, html: String): String = {
+    file(key).foreach { f =>
+      try {
+        f.getParentFile.mkdirs()
+        val temp = File.createTempFile(f.getName, ".tmp", f.getParentFile)
+        try {
+          Files.write(temp.toPath, html.getBytes(StandardCharsets.UTF_8))
+          Files.move(temp.toPath, f.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally temp.delete()
+      } catch {
+        case NonFatal(_) =>
+      }
+    }
+    html
+  }
+}
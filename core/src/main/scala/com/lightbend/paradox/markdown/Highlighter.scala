@@ -0,0 +1,349 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import org.pegdown.FastEncoder
+
+/**
+ * Syntax highlighting of code for common languages, producing HTML with the classes that prettify uses, so that themes
+ * style it the same as code highlighted in the browser.
+ *
+ * Code is split into comments, strings, keywords, literals, types and punctuation in a single scan, without parsing,
+ * which is close to what prettify does.
+ */
+object Highlighter {
+
+  /**
+   * Version of the highlighted output, to be part of cache keys so that cached output is discarded when it changes.
+   */
+  val Version: Int = 1
+
+  private val Comment     = "com"
+  private val Str         = "str"
+  private val Keyword     = "kwd"
+  private val Literal     = "lit"
+  private val Type        = "typ"
+  private val Punctuation = "pun"
+  private val Plain       = "pln"
+  private val Tag         = "tag"
+  private val AttrName    = "atn"
+  private val AttrValue   = "atv"
+  private val Declaration = "dec"
+
+  private case class Language(
+      keywords: Set[String] = Set.empty,
+      literals: Set[String] = Set("true", "false", "null"),
+      lineComments: Seq[String] = Seq("//"),
+      blockComment: Option[(String, String)] = Some("/*" -> "*/"),
+      quotes: String = "\"'",
+      multilineQuotes: String = "",
+      tripleQuotes: Seq[String] = Nil,
+      annotations: Boolean = false,
+      types: Boolean = true,
+      ignoreCase: Boolean = false
+  )
+
+  private def words(text: String): Set[String] = text.split("\\s+").toSet
+
+  private val Scala = Language(
+    keywords = words(
+      """abstract case catch class def do else enum export extends extension final finally for forSome given if implicit
+        |import lazy match new object override package private protected return sealed super then this throw trait try
+        |type using val var while with yield""".stripMargin
+    ),
+    tripleQuotes = Seq("\"\"\""),
+    annotations = true
+  )
+
+  private val Java = Language(
+    keywords = words(
+      """abstract assert boolean break byte case catch char class const continue default do double else enum extends
+        |final finally float for goto if implements import instanceof int interface long native new package permits
+        |private protected public record return sealed short static strictfp super switch synchronized this throw throws
+        |transient try var void volatile while yield""".stripMargin
+    ),
+    tripleQuotes = Seq("\"\"\""),
+    annotations = true
+  )
+
+  private val Kotlin = Language(
+    keywords = words(
+      """abstract annotation as break by catch class companion const constructor continue data do else enum external
+        |final finally for fun get if import in infix init inline inner interface internal is lateinit object open
+        |operator out override package private protected public return sealed set super suspend this throw try typealias
+        |val var vararg when where while""".stripMargin
+    ),
+    tripleQuotes = Seq("\"\"\""),
+    annotations = true
+  )
+
+  private val JavaScript = Language(
+    keywords = words(
+      """abstract as async await break case catch class const continue debugger declare default delete do else enum
+        |export extends finally for from function get if implements import in instanceof interface let namespace new of
+        |private protected public readonly return set static super switch this throw try type typeof var void while
+        |with yield""".stripMargin
+    ),
+    literals = words("true false null undefined NaN Infinity"),
+    multilineQuotes = "`",
+    quotes = "\"'`"
+  )
+
+  private val Json = Language(lineComments = Nil, blockComment = None, quotes = "\"", types = false)
+
+  private val Python = Language(
+    keywords = words(
+      """and as assert async await break class continue def del elif else except finally for from global if import in
+        |is lambda nonlocal not or pass raise return try while with yield""".stripMargin
+    ),
+    literals = words("True False None"),
+    lineComments = Seq("#"),
+    blockComment = None,
+    tripleQuotes = Seq("\"\"\"", "'''"),
+    annotations = true
+  )
+
+  private val Shell = Language(
+    keywords = words(
+      "case do done elif else esac exit export fi for function if in local readonly return then unset until while"
+    ),
+    literals = Set.empty,
+    lineComments = Seq("#"),
+    blockComment = None,
+    types = false
+  )
+
+  private val Yaml = Language(
+    literals = words("true false null yes no on off ~"),
+    lineComments = Seq("#"),
+    blockComment = None,
+    types = false
+  )
+
+  private val Hocon = Language(
+    literals = words("true false null yes no on off"),
+    lineComments = Seq("#", "//"),
+    blockComment = None,
+    quotes = "\"",
+    tripleQuotes = Seq("\"\"\""),
+    types = false
+  )
+
+  private val Sql = Language(
+    keywords = words(
+      """add all alter and as asc begin between by case check column commit constraint create default delete desc
+        |distinct drop else end exists foreign from full group having in index inner insert into is join key left like
+        |limit not on or order outer primary references right rollback select set table then union unique update values
+        |view when where with""".stripMargin
+    ),
+    literals = words("true false null"),
+    lineComments = Seq("--"),
+    quotes = "'",
+    types = false,
+    ignoreCase = true
+  )
+
+  private val Languages: Map[String, Language] = Map(
+    "scala"      -> Scala,
+    "java"       -> Java,
+    "kotlin"     -> Kotlin,
+    "kt"         -> Kotlin,
+    "javascript" -> JavaScript,
+    "js"         -> JavaScript,
+    "typescript" -> JavaScript,
+    "ts"         -> JavaScript,
+    "json"       -> Json,
+    "python"     -> Python,
+    "py"         -> Python,
+    "bash"       -> Shell,
+    "sh"         -> Shell,
+    "shell"      -> Shell,
+    "yaml"       -> Yaml,
+    "yml"        -> Yaml,
+    "conf"       -> Hocon,
+    "hocon"      -> Hocon,
+    "sql"        -> Sql
+  )
+
+  private val MarkupLanguages: Set[String] = Set("xml", "html", "xhtml", "svg")
+
+  /**
+   * Whether code in a language is highlighted.
+   */
+  def supports(language: String): Boolean = Languages.contains(language) || MarkupLanguages(language)
+
+  /**
+   * Highlighted HTML for code in a language, if the language is supported.
+   */
+  def apply(language: String, text: String): Option[String] =
+    if (MarkupLanguages(language)) Some(markup(text))
+    else Languages.get(language).map(code(_, text))
+
+  private def code(language: Language, text: String): String = {
+    val out = new Output(text)
+    var i   = 0
+    while (i < text.length) {
+      val (style, end) = token(language, text, i)
+      out.append(style, i, end)
+      i = end
+    }
+    out.result
+  }
+
+  // style and end of the token at an index
+  private def token(language: Language, text: String, i: Int): (String, Int) = {
+    val c            = text.charAt(i)
+    val blockComment = language.blockComment.filter(comment => text.startsWith(comment._1, i))
+    val tripleQuote  = language.tripleQuotes.find(text.startsWith(_, i))
+    if (language.lineComments.exists(text.startsWith(_, i))) Comment -> lineEnd(text, i)
+    else if (blockComment.isDefined) Comment -> until(text, i + blockComment.get._1.length, blockComment.get._2)
+    else if (tripleQuote.isDefined) Str -> until(text, i + tripleQuote.get.length, tripleQuote.get)
+    else if (language.quotes.indexOf(c) >= 0) quoted(text, i, language.multilineQuotes.indexOf(c) >= 0) match {
+      case -1  => Punctuation -> (i + 1)
+      case end => Str -> end
+    }
+    else if (Character.isDigit(c)) Literal -> scan(text, i, ch => Character.isLetterOrDigit(ch) || ch == '_')
+    else if (isIdentifierStart(c)) {
+      val end = scan(text, i, isIdentifierPart)
+      identifier(language, text.substring(i, end)) -> end
+    } else if (c == '@' && language.annotations && i + 1 < text.length && isIdentifierStart(text.charAt(i + 1)))
+      Literal -> scan(text, i + 1, isIdentifierPart)
+    else if (Character.isWhitespace(c)) Plain -> scan(text, i, Character.isWhitespace)
+    else Punctuation -> (i + 1)
+  }
+
+  private def identifier(language: Language, word: String): String = {
+    val key = if (language.ignoreCase) word.toLowerCase else word
+    if (language.keywords(key)) Keyword
+    else if (language.literals(key)) Literal
+    else if (language.types && Character.isUpperCase(word.charAt(0))) Type
+    else Plain
+  }
+
+  private def markup(text: String): String = {
+    val out = new Output(text)
+    var i   = 0
+    while (i < text.length) {
+      val next = if (i + 1 < text.length) text.charAt(i + 1) else ' '
+      if (text.startsWith("<!--", i)) {
+        val end = until(text, i + 4, "-->")
+        out.append(Comment, i, end)
+        i = end
+      } else if (text.startsWith("<!", i) || text.startsWith("<?", i)) {
+        val end = until(text, i + 2, ">")
+        out.append(Declaration, i, end)
+        i = end
+      } else if (text.charAt(i) == '<' && (Character.isLetter(next) || next == '/')) {
+        i = tag(text, i, out)
+      } else {
+        val end = text.indexOf('<', i + 1) match {
+          case -1 => text.length
+          case n  => n
+        }
+        out.append(Plain, i, end)
+        i = end
+      }
+    }
+    out.result
+  }
+
+  // a start or end tag with its attributes, returning the index after it
+  private def tag(text: String, start: Int, out: Output): Int = {
+    val nameEnd = scan(text, start + 2, ch => !Character.isWhitespace(ch) && ch != '>' && ch != '/')
+    out.append(Tag, start, nameEnd)
+    var i = nameEnd
+    while (i < text.length && text.charAt(i) != '>') {
+      val c            = text.charAt(i)
+      val (style, end) =
+        if (Character.isWhitespace(c)) Plain -> scan(text, i, Character.isWhitespace)
+        else if (c == '/') Tag -> (i + 1)
+        else if (c == '=') Punctuation -> (i + 1)
+        else if (c == '"' || c == '\'') AttrValue -> quoted(text, i, multiline = true)
+        else AttrName -> scan(text, i, ch => !Character.isWhitespace(ch) && ch != '=' && ch != '>' && ch != '/')
+      out.append(style, i, end)
+      i = end
+    }
+    if (i < text.length) {
+      out.append(Tag, i, i + 1)
+      i + 1
+    } else i
+  }
+
+  private def isIdentifierStart(c: Char): Boolean = Character.isLetter(c) || c == '_' || c == '$'
+
+  private def isIdentifierPart(c: Char): Boolean = Character.isLetterOrDigit(c) || c == '_' || c == '$'
+
+  private def scan(text: String, start: Int, include: Char => Boolean): Int = {
+    var i = start
+    while (i < text.length && include(text.charAt(i))) i += 1
+    i
+  }
+
+  private def lineEnd(text: String, start: Int): Int = text.indexOf('\n', start) match {
+    case -1 => text.length
+    case n  => n
+  }
+
+  // the index after a delimiter, or the end of the text if it isn't closed
+  private def until(text: String, start: Int, close: String): Int = text.indexOf(close, start) match {
+    case -1 => text.length
+    case n  => n + close.length
+  }
+
+  // the index after a quoted string, or -1 if a string that can't span lines isn't closed on the line
+  private def quoted(text: String, start: Int, multiline: Boolean): Int = {
+    val quote = text.charAt(start)
+    var i     = start + 1
+    var end   = 0
+    while (end == 0 && i < text.length) {
+      val c = text.charAt(i)
+      if (c == '\\') i += 2
+      else if (c == quote) end = i + 1
+      else if (c == '\n' && !multiline) end = -1
+      else i += 1
+    }
+    if (end != 0) end else if (multiline) text.length else -1
+  }
+
+  // HTML for consecutive tokens, with tokens of the same style in one span
+  private class Output(text: String) {
+    private val html       = new java.lang.StringBuilder(text.length * 2)
+    private var style      = Plain
+    private var start, end = 0
+
+    def append(tokenStyle: String, tokenStart: Int, tokenEnd: Int): Unit = {
+      if (tokenStyle != style) {
+        flush()
+        style = tokenStyle
+        start = tokenStart
+      }
+      end = tokenEnd
+    }
+
+    def result: String = {
+      flush()
+      html.toString
+    }
+
+    private def flush(): Unit = if (end > start) {
+      val encoded = FastEncoder.encode(text.substring(start, end))
+      if (style == Plain) html.append(encoded)
+      else html.append("<span class=\"").append(style).append("\">").append(encoded).append("</span>")
+      start = end
+    }
+  }
+}
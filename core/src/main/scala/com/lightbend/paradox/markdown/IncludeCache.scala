@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+
+import com.lightbend.paradox.{ErrorCollector, ErrorContext}
+import org.pegdown.ast.RootNode
+
+/**
+ * Included markdown that has been parsed during a build, so that a fragment included by many pages is parsed once. The
+ * parsed markdown is shared by the include nodes of all pages, which each have their own source indexes, and must not
+ * be modified. Files are not expected to change during a build. Safe to use from multiple threads.
+ *
+ * Included markdown is parsed the same for all pages that include the same labels of the same file, with the same
+ * label filtering and the same properties for resolving nested includes. Errors found while parsing are reported
+ * again for each page.
+ */
+class IncludeCache {
+
+  private case class Key(file: File, labels: Seq[String], filterLabels: Boolean, properties: Map[String, String])
+
+  private case class Entry(included: Either[String, RootNode], errors: ErrorCollector)
+
+  private val entries = new ConcurrentHashMap[Key, Entry]
+
+  /**
+   * The parsed markdown for an include, or the language of content that isn't markdown, parsing it if needed.
+   */
+  def apply(
+      file: File,
+      labels: Seq[String],
+      filterLabels: Boolean,
+      properties: Map[String, String],
+      error: ErrorContext
+  )(parse: ErrorContext => Either[String, RootNode]): Either[String, RootNode] = {
+    val key   = Key(file.getCanonicalFile, labels, filterLabels, properties.filter(p => IncludeCache.isRelevant(p._1)))
+    // not computeIfAbsent, as parsing adds the nested includes; a fragment may be parsed twice if pages race for it
+    val entry = Option(entries.get(key)).getOrElse {
+      val errors = new ErrorCollector
+      val parsed = Entry(parse(errors), errors)
+      Option(entries.putIfAbsent(key, parsed)).getOrElse(parsed)
+    }
+    entry.errors.reportTo(error)
+    entry.included
+  }
+}
+
+object IncludeCache {
+
+  /**
+   * Whether a property is used to resolve nested includes.
+   */
+  def isRelevant(key: String): Boolean =
+    key.startsWith("include.") || key == SnipDirective.buildBaseDir
+}
@@ -64,6 +64,51 @@ object Index {
   def page(file: File, path: String, markdown: RootNode, properties: Map[String, String]): Page =
     Page(file, path, markdown, properties, indices(markdown), headers(markdown), anchors(markdown))
 
+  /**
+   * The parts of a parsed page that are used for indexing and for finding the files it depends on: headers, anchors,
+   * index, snip and fiddle directives, and the containers and includes with any of these, along with the references.
+   * Keeping only the outline of pages keeps the metadata of a site in memory without the content of every page.
+   */
+  def outline(root: RootNode): RootNode = {
+    val outlined = new RootNode
+    outlined.getChildren.addAll(outlineNodes(root).asJava)
+    outlined.setReferences(root.getReferences)
+    outlined.setAbbreviations(root.getAbbreviations)
+    outlined
+  }
+
+  private def outlineNodes(root: RootNode): List[Node] =
+    root.getChildren.asScala.toList.flatMap {
+      case header: HeaderNode                                          => List(header)
+      case node: HtmlBlockNode if node.getText.startsWith("<a id=\"") => List(node)
+      case node: DirectiveNode if isIndexDirective(node)               => List(node)
+      case node: DirectiveNode if node.format == DirectiveNode.Format.ContainerBlock =>
+        val contents = outline(node.contentsNode.asInstanceOf[RootNode])
+        if (contents.getChildren.isEmpty) Nil
+        else
+          List(
+            withIndexes(
+              node,
+              new DirectiveNode(node.format, node.name, node.label, node.source, node.attributes, "", contents)
+            )
+          )
+      case include @ IncludeNode(included, includedFrom, includedFromPath) =>
+        List(withIndexes(include, IncludeNode(outline(included), includedFrom, includedFromPath)))
+      case other => dependencies(other)
+    }
+
+  // snip and fiddle directives below a node, which read files
+  private def dependencies(node: Node): List[Node] = node match {
+    case directive: DirectiveNode if directive.name == "snip" || directive.name == "fiddle" => List(directive)
+    case other => other.getChildren.asScala.toList.flatMap(dependencies)
+  }
+
+  private def withIndexes[N <: AbstractNode](from: Node, node: N): N = {
+    node.setStartIndex(from.getStartIndex)
+    node.setEndIndex(from.getEndIndex)
+    node
+  }
+
   /**
    * Create a tree of header refs from a parsed markdown page.
    */
@@ -168,14 +213,43 @@ object Index {
   def link(pages: List[Page], properties: Map[String, String]): Forest[Page] = {
     // Substitute all variables in index page links first
     val substituted = pages.map { page =>
+      lazy val interpolator = new PropertyInterpolator(properties ++ page.properties)
       page.copy(indices = page.indices.map {
         case Tree.Node(label, children) =>
-          val newPath = Writer.substituteVarsInString(label.path, properties ++ page.properties)
+          val newPath = interpolator(label.path)
           Tree.Node(label.copy(path = newPath), children)
         case other => other
       })
-    }
-    Tree.link(substituted, links(substituted))
+    }.toIndexedSeq
+    linkIds(substituted, childIds(substituted))
+  }
+
+  /**
+   * Form a linked forest from pages and the numbers of the child pages of each page. Pages are numbered by their
+   * position, so that linking doesn't hash pages. A page linked from more than one page is a child of the first page
+   * visited, and roots are in the order of the pages.
+   */
+  private def linkIds(pages: IndexedSeq[Page], children: Array[List[Int]]): Forest[Page] = {
+    val trees  = new Array[Tree[Page]](pages.size)
+    val isRoot = new Array[Boolean](pages.size)
+    val seen   = new Array[Boolean](pages.size)
+    def visit(id: Int): Unit =
+      if (!seen(id)) {
+        seen(id) = true
+        children(id) foreach visit
+        val linked = children(id) flatMap { child =>
+          if (isRoot(child)) {
+            isRoot(child) = false
+            Some(trees(child))
+          } else None
+        }
+        trees(id) = Tree(pages(id), linked)
+        isRoot(id) = true
+      } else if (trees(id) eq null) {
+        throw new RuntimeException("Cycle found at: " + pages(id))
+      }
+    pages.indices foreach visit
+    pages.indices.filter(isRoot).map(trees).toList
   }
 
   /**
@@ -187,30 +261,39 @@ object Index {
    * Find links between pages using parsed indices.
    */
   def links(pages: List[Page]): Map[Page, List[Page]] = {
-    import scala.collection.mutable
+    val indexed = pages.toIndexedSeq
+    val edges   = childIds(indexed)
+    indexed.indices
+      .collect { case id if edges(id).nonEmpty => indexed(id) -> edges(id).map(indexed) }
+      .toMap
+      .withDefaultValue(Nil)
+  }
 
-    val edges   = mutable.Map.empty[Page, List[Page]].withDefaultValue(Nil)
-    val pageMap = (pages map { page => page.path -> page }).toMap
+  /**
+   * Find the numbers of the child pages of each page, by position, using parsed indices.
+   */
+  private def childIds(pages: IndexedSeq[Page]): Array[List[Int]] = {
+    val edges = Array.fill(pages.size)(List.empty[Int])
+    val ids   = pages.indices.map(id => pages(id).path -> id).toMap
 
     def lookup(current: String, path: String) =
-      pageMap.getOrElse(
+      ids.getOrElse(
         Path.resolve(current, path),
         throw new LinkException(s"Unknown page [$path] linked from [$current]")
       )
 
-    def add(path: String, page: Page, indices: Forest[Ref], nested: Boolean): Unit =
+    def add(path: String, id: Int, indices: Forest[Ref], nested: Boolean): Unit =
       // if nested then prepending children, so process this level in reverse to retain order
       (if (nested) indices.reverse else indices) foreach { i =>
         val child   = lookup(path, i.label.path)
-        val current = edges(page)
+        val current = edges(id)
         // nested links have priority (being further up the overall hierarchy)
-        val added = if (nested) child :: current else current ::: List(child)
-        edges += page -> added
+        edges(id) = if (nested) child :: current else current ::: List(child)
         add(path, child, i.children, nested = true)
       }
 
-    pages foreach { page => add(page.path, page, page.indices, nested = false) }
-    edges.toMap.withDefaultValue(Nil)
+    pages.indices foreach { id => add(pages(id).path, id, pages(id).indices, nested = false) }
+    edges
   }
 
 }
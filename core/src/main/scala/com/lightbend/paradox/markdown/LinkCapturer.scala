@@ -18,19 +18,23 @@ package com.lightbend.paradox.markdown
 
 import java.io.File
 import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
 
 import org.pegdown.ast._
 import org.pegdown.{LinkRenderer, Printer, ToHtmlSerializer}
 
 import com.lightbend.paradox.compat.Implicits._
+import scala.util.Try
 
 /**
  * This captures links for validation.
  *
- * To validate, we parse all the markdown files again (we do this because we want to capture the original source of the
- * links so we can report meaningful source files and line numbers etc). Then, when converting it to HTML, we use a
- * special link renderer that captures links. The HTML itself generated during that process is never written anywhere,
- * it's just discarded.
+ * Links are either captured while rendering the site, by passing a capturer for each page in the [[Writer.Context]],
+ * or by parsing all the markdown files again (we capture the original source of the links so we can report meaningful
+ * source files and line numbers etc). Then, when converting it to HTML, we use a special link renderer that captures
+ * links. When parsing again, the HTML itself generated during that process is never written anywhere, it's just
+ * discarded.
  */
 class LinkCapturer {
 
@@ -61,18 +65,50 @@ class LinkCapturer {
     override def render(node: DirectiveNode, visitor: Visitor, printer: Printer): Unit = ()
   }
 
+  /**
+   * This is used for ref links when capturing while rendering the site, where they still need to be rendered.
+   */
+  private class NonCapturingDirective(d: Directive) extends Directive {
+    override def names: Seq[String] = d.names
+
+    override def format: Set[DirectiveNode.Format] = d.format
+
+    override def render(node: DirectiveNode, visitor: Visitor, printer: Printer): Unit = {
+      capturing = false
+      try
+        d.render(node, visitor, printer)
+      finally
+        capturing = true
+    }
+  }
+
   private val plugins = Writer.defaultPlugins(Writer.defaultDirectives.map(_.andThen {
-    case ext: ExternalLinkDirective => new NodeOverridingDirective(ext)
-    case ref: RefDirective          => new NonRenderingDirective(ref)
-    case other                      => other
+    case ref: RefDirective => new NonRenderingDirective(ref)
+    case other             => directive(other)
   }))
 
   def serializer(context: Writer.Context): ToHtmlSerializer = new ToHtmlSerializer(
-    new LinkCapturerRenderer(this, Writer.defaultLinks(context), context.page),
+    renderer(Writer.defaultLinks(context), context.page),
     Writer.defaultVerbatims.asJava,
     plugins.map(p => p(context)).asJava
   )
 
+  /**
+   * Wrap the link renderer of a page to capture the links it renders.
+   */
+  def renderer(linkRenderer: LinkRenderer, page: Page): LinkRenderer =
+    new LinkCapturerRenderer(this, linkRenderer, page)
+
+  /**
+   * Wrap a directive to capture the links it renders with the directive as their source, or, for ref links, to not
+   * capture them.
+   */
+  def directive(d: Directive): Directive = d match {
+    case ext: ExternalLinkDirective => new NodeOverridingDirective(ext)
+    case ref: RefDirective          => new NonCapturingDirective(ref)
+    case other                      => other
+  }
+
   private def withNodeOverride[T](node: Node)(block: => T): T =
     nodeOverride match {
       case Some(existing) =>
@@ -85,84 +121,162 @@ class LinkCapturer {
           nodeOverride = None
     }
 
-  def allLinks: List[CapturedLink] =
-    // First, resolve the links, discarding links that we can't resolve.
+  def allLinks: List[CapturedLink] = LinkCapturer.resolve(links, "")
+
+  /**
+   * The links captured so far, in the order they were rendered.
+   */
+  def pageLinks: List[LinkCapturer.PageLink] = links.reverse
+
+  private var nodeOverride: Option[Node] = None
+
+  private var capturing = true
+
+  private var links: List[LinkCapturer.PageLink] = Nil
+
+  def capture(page: Page, node: Node, rendering: LinkRenderer.Rendering): LinkRenderer.Rendering = {
+    if (capturing) {
+      val source  = nodeOverride.getOrElse(node)
+      val javadoc = source match {
+        case d: DirectiveNode => d.name == "javadoc"
+        case _                => false
+      }
+      links = LinkCapturer.PageLink(page.path, page.file, source.getStartIndex, javadoc, rendering.href) :: links
+    }
+    rendering
+  }
+}
+
+object LinkCapturer {
+
+  val Filename: String = ".paradox-links"
+
+  private val FormatVersion = "paradox-links 1"
+  private val Separator     = '\t'
+
+  /**
+   * A link as it was rendered on a page, before it's resolved against the path of the page.
+   *
+   * @param path
+   *   path of the page the link is on
+   * @param file
+   *   source file of the link, which is the included file for links in included markdown, as that is rendered with a
+   *   page for the included file (see [[Page.included]])
+   * @param index
+   *   index of the link in the source file
+   * @param javadoc
+   *   whether the link was rendered by the javadoc directive, which may use frames style links
+   */
+  case class PageLink(path: String, file: File, index: Int, javadoc: Boolean, href: String)
+
+  /**
+   * The anchors and links of a rendered page.
+   */
+  case class PageLinks(anchors: Seq[String], links: Seq[PageLink])
+
+  /**
+   * Resolve links against the paths of their pages, prefixed with a base path, discarding links that we can't resolve,
+   * and group them by the resolved link.
+   */
+  def resolve(links: Seq[PageLink], basePath: String): List[CapturedLink] =
     links
-      .collect {
-        case Link(page, node, uri, fragment) if isPageInSite(page, uri) =>
-          val path = node match {
+      .flatMap { case PageLink(pagePath, file, index, javadoc, href) =>
+        val path            = basePath + pagePath
+        val fullUri         = URI.create(href)
+        val (uri, fragment) =
+          if (fullUri.getFragment == null) (fullUri, None)
+          else
+            (
+              new URI(fullUri.getScheme, fullUri.getAuthority, fullUri.getPath, fullUri.getQuery, null),
+              Some(fullUri.getFragment)
+            )
+        if (isPageInSite(path, uri)) {
+          val linkPath =
             // Javadoc links may use the frames style, and may reference index.html, if so, need to drop it.
-            case d: DirectiveNode if d.name == "javadoc" && uri.getQuery != null =>
+            if (javadoc && uri.getQuery != null) {
               if (uri.getPath.endsWith("/index.html")) {
                 uri.getPath.stripSuffix("index.html") + uri.getQuery
               } else {
                 uri.getPath + uri.getQuery
               }
-            case _ => uri.getPath
-          }
+            } else uri.getPath
           // Append index.html to any path that ends with /
           val pathWithIndex =
-            if (path.endsWith("/")) uri.getPath + "index.html"
-            else path
+            if (linkPath.endsWith("/")) uri.getPath + "index.html"
+            else linkPath
 
-          val resolvedUri = URI.create(page.path).resolve(pathWithIndex)
-          Link(page, node, resolvedUri, fragment)
-
-        case link @ Link(_, _, uri, _) if uri.getAuthority != null => link
+          Some((URI.create(path).resolve(pathWithIndex), fragment, file, index))
+        } else if (uri.getAuthority != null) Some((uri, fragment, file, index))
+        else None
       }
-      .groupBy(_.uri)
+      .groupBy(_._1)
       .toList
       .map { case (uri, links) =>
         val fragments = links
-          .groupBy(_.fragment)
+          .groupBy(_._2)
           .toList
           .map { case (fragment, links) =>
-            CapturedLinkFragment(fragment, links.map(l => (l.page.file, l.node)))
+            CapturedLinkFragment(fragment, links.toList.map(l => (l._3, l._4)))
           }
         CapturedLink(uri, fragments)
       }
 
-  private def isPageInSite(page: Page, uri: URI): Boolean =
+  private def isPageInSite(pagePath: String, uri: URI): Boolean =
     if (uri.getAuthority == null && uri.getPath != null) {
       // If the page has a host relative absolute path, as is the case when paradoxValidationSiteBasePath is configured,
       // then we can always resolve it (potentially to an invalid path that will get reported as an error later), so
       // return true regardless of what the URIs path is.
-      if (page.path.startsWith("/")) {
+      if (pagePath.startsWith("/")) {
         true
       } else if (!uri.getPath.startsWith("/")) {
-        !URI.create(page.path).resolve(uri).getPath.startsWith("../")
+        !URI.create(pagePath).resolve(uri).getPath.startsWith("../")
       } else false
     } else false
 
-  private var nodeOverride: Option[Node] = None
-
-  private case class Link(page: Page, node: Node, uri: URI, fragment: Option[String])
-
-  private var links: List[Link] = Nil
+  /**
+   * Read the anchors and links captured for each page, by page path.
+   */
+  def read(file: File): Option[Map[String, PageLinks]] =
+    Try(new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8).split('\n').toList).toOption.collect {
+      case FormatVersion :: entries => parsePages(entries)
+    }
 
-  def capture(page: Page, node: Node, rendering: LinkRenderer.Rendering): LinkRenderer.Rendering = {
-    val fullUri         = URI.create(rendering.href)
-    val (uri, fragment) =
-      if (fullUri.getFragment == null) (fullUri, None)
-      else
-        (
-          new URI(fullUri.getScheme, fullUri.getAuthority, fullUri.getPath, fullUri.getQuery, null),
-          Some(fullUri.getFragment)
-        )
-    links = Link(page, nodeOverride.getOrElse(node), uri, fragment) :: links
-    rendering
+  def write(file: File, pages: Map[String, PageLinks]): Unit = {
+    val entries = pages.toSeq.sortBy(_._1).flatMap { case (path, page) =>
+      (("page" +: path +: page.anchors).mkString(Separator.toString)) +: page.links.map { link =>
+        Seq("link", link.file.getPath, link.index, link.javadoc, link.href).mkString(Separator.toString)
+      }
+    }
+    val text = (FormatVersion +: entries).mkString("", "\n", "\n")
+    Files.write(file.toPath, text.getBytes(StandardCharsets.UTF_8))
   }
+
+  private def parsePages(entries: List[String]): Map[String, PageLinks] =
+    entries
+      .map(_.split(Separator).toList)
+      .foldLeft(List.empty[(String, PageLinks)]) {
+        case (pages, "page" :: path :: anchors) => (path, PageLinks(anchors, Nil)) :: pages
+        case ((path, page) :: pages, "link" :: file :: index :: javadoc :: href) =>
+          val link = PageLink(path, new File(file), index.toInt, javadoc.toBoolean, href.mkString(Separator.toString))
+          (path, page.copy(links = link +: page.links)) :: pages
+        case (pages, _) => pages
+      }
+      .map { case (path, page) => path -> page.copy(links = page.links.reverse) }
+      .toMap
 }
 
 case class CapturedLink(link: URI, fragments: List[CapturedLinkFragment]) {
-  def allSources: List[(File, Node)] = fragments.flatMap(_.sources)
+  def allSources: List[(File, Int)] = fragments.flatMap(_.sources)
 
   def isInternal: Boolean = link.getAuthority == null && link.getPath != null
 
   def hasFragments: Boolean = fragments.size > 1 || fragments.headOption.flatMap(_.fragment).nonEmpty
 }
 
-case class CapturedLinkFragment(fragment: Option[String], sources: List[(File, Node)])
+/**
+ * Links to a fragment of a page, with the source files and indexes of the links.
+ */
+case class CapturedLinkFragment(fragment: Option[String], sources: List[(File, Int)])
 
 private class LinkCapturerRenderer(capturer: LinkCapturer, renderer: LinkRenderer, page: Page) extends LinkRenderer {
   private def capture(node: Node, rendering: LinkRenderer.Rendering) = capturer.capture(page, node, rendering)
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.util.concurrent.ConcurrentHashMap
+
+import com.lightbend.paradox.tree.Tree
+import com.lightbend.paradox.tree.Tree.Location
+import org.pegdown.ast._
+
+import com.lightbend.paradox.compat.Implicits._
+
+/**
+ * Site navigation, rendered once for each root page and shared by its pages. Only the links, which are relative to
+ * each page, and the active page differ between pages, so these are patched into the rendered navigation.
+ *
+ * Navigation that expands around the active page, or with labels that may render differently on each page, such as
+ * labels with links or directives, is rendered for each page.
+ */
+class NavigationCache(toc: TableOfContents, writer: Writer) {
+  import NavigationCache._
+
+  private val rendered = new ConcurrentHashMap[String, Option[String]]
+
+  /**
+   * Navigation from the root of a location, the same as rendering `toc.root(location)`.
+   */
+  def apply(location: Location[Page], context: Writer.Context): String = {
+    val root = location.root.tree
+    rendered.computeIfAbsent(root.label.path, _ => render(root, context)) match {
+      case Some(html) => patch(html, location, context)
+      case None       => writer.writeNavigation(toc.root(location), context)
+    }
+  }
+
+  private def render(root: Tree[Page], context: Writer.Context): Option[String] =
+    if (toc.expandsActive || !labels(root).forall(isPlain)) None
+    else Some(writer.writeNavigation(toc.markdown(BaseMarker, None, root), context)).filter(_.contains(BaseMarker))
+
+  private def patch(html: String, location: Location[Page], context: Writer.Context): String = {
+    val inactive = writer.writeNavigation(toc.pageLink(BaseMarker, location, active = false), context)
+    val index    = html.indexOf(inactive)
+    val patched  =
+      if (index < 0) html
+      else {
+        val active = writer.writeNavigation(toc.pageLink(BaseMarker, location, active = true), context)
+        html.substring(0, index) + active + html.substring(index + inactive.length)
+      }
+    patched.replace(BaseMarker, location.tree.label.base)
+  }
+
+  private def labels(tree: Tree[Page]): Iterator[Node] = {
+    def headerLabels(header: Tree[Header]): Iterator[Node] =
+      Iterator(header.label.label) ++ header.children.iterator.flatMap(headerLabels)
+    Iterator(tree.label.label) ++ tree.label.headers.iterator.flatMap(headerLabels) ++
+      tree.children.iterator.flatMap(labels)
+  }
+
+  private def isPlain(node: Node): Boolean = node match {
+    case _: DirectiveNode | _: ExpLinkNode | _: RefLinkNode | _: WikiLinkNode | _: ExpImageNode | _: RefImageNode =>
+      false
+    case _ => node.getChildren.asScala.forall(isPlain)
+  }
+
+}
+
+object NavigationCache {
+
+  // stands in for the relative path to the site root, which is the prefix of every link
+  private val BaseMarker = "\u0000base\u0000"
+
+}
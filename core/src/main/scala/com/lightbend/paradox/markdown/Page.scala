@@ -72,6 +72,22 @@ case class Page(
       }
     textNodes(label).mkString
   }
+
+  /**
+   * Paths of the headers and anchors on this page, such as `#title`. May contain duplicates.
+   */
+  lazy val anchorPaths: List[String] = {
+    def paths(forest: Forest[Header]): List[String] =
+      forest.flatMap(tree => tree.label.path :: paths(tree.children))
+    paths(headers) ++ (h1.path :: anchors.map(_.path))
+  }
+
+  private lazy val anchorSet: Set[String] = anchorPaths.toSet
+
+  /**
+   * Whether this page has a header or anchor with this path, such as `#title`.
+   */
+  def hasAnchor(path: String): Boolean = anchorSet(path)
 }
 
 object Page {
@@ -118,15 +134,8 @@ object Page {
   /**
    * All pages, by path
    */
-  def allPages(pages: Forest[Page]): Map[String, Page] = {
-    @tailrec
-    def collect(location: Option[Location[Page]], paths: List[(String, Page)] = Nil): List[(String, Page)] =
-      location match {
-        case Some(loc) => collect(loc.next, (loc.tree.label.path, loc.tree.label) :: paths)
-        case None      => paths
-      }
-    (pages flatMap { root => collect(Some(root.location)) }).toMap
-  }
+  def allPages(pages: Forest[Page]): Map[String, Page] =
+    PageGraph(pages).paths
 
   /**
    * Specific properties at page level for the current page
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import com.lightbend.paradox.tree.Tree.{Forest, Location}
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * The pages of a site, numbered in depth-first order, with the parent, children and location of each page in arrays
+ * indexed by page number, and an index of page numbers by path. Built once for a forest of pages, so that pages and
+ * their neighbours are found without navigating the trees, or hashing anything but paths.
+ *
+ * Each tree in the forest is separate, as for locations created with `Tree.location`: the first page of a tree has no
+ * previous page, and the last page no next page.
+ */
+final class PageGraph private (
+    locationArray: Array[Location[Page]],
+    parentArray: Array[Int],
+    childArray: Array[Array[Int]],
+    rootArray: Array[Int],
+    ids: Map[String, Int]
+) {
+
+  /**
+   * Number of pages.
+   */
+  def size: Int = locationArray.length
+
+  /**
+   * The page with this number.
+   */
+  def page(id: Int): Page = locationArray(id).tree.label
+
+  /**
+   * The location of the page with this number.
+   */
+  def location(id: Int): Location[Page] = locationArray(id)
+
+  /**
+   * Locations of all pages, in depth-first order.
+   */
+  lazy val locations: IndexedSeq[Location[Page]] = locationArray.toIndexedSeq
+
+  /**
+   * Number of the page with this path, or -1. If pages share a path, the first page in depth-first order.
+   */
+  def id(path: String): Int = ids.getOrElse(path, -1)
+
+  /**
+   * Number of the parent page, or -1 for the root of a tree.
+   */
+  def parent(id: Int): Int = parentArray(id)
+
+  /**
+   * Numbers of the child pages, in order.
+   */
+  def children(id: Int): IndexedSeq[Int] = childArray(id).toIndexedSeq
+
+  /**
+   * Number of the root page of the tree the page is in.
+   */
+  def root(id: Int): Int = rootArray(id)
+
+  /**
+   * Numbers of the roots of the trees, in order.
+   */
+  lazy val roots: IndexedSeq[Int] = (0 until size).filter(id => parentArray(id) < 0)
+
+  /**
+   * Locations of the pages in the tree with this root, in depth-first order.
+   */
+  def tree(root: Int): IndexedSeq[Location[Page]] = {
+    var end = root + 1
+    while (end < size && rootArray(end) == root) end += 1
+    locations.slice(root, end)
+  }
+
+  /**
+   * Number of the next page in depth-first order in the same tree, or -1.
+   */
+  def next(id: Int): Int = if (id + 1 < size && rootArray(id + 1) == rootArray(id)) id + 1 else -1
+
+  /**
+   * Number of the previous page in depth-first order in the same tree, or -1.
+   */
+  def prev(id: Int): Int = if (id > 0 && rootArray(id - 1) == rootArray(id)) id - 1 else -1
+
+  /**
+   * The next location in depth-first order, as [[Location.next]].
+   */
+  def next(location: Location[Page]): Option[Location[Page]] =
+    find(location).fold(location.next)(id => Option(next(id)).filter(_ >= 0).map(locationArray))
+
+  /**
+   * The previous location in depth-first order, as [[Location.prev]].
+   */
+  def prev(location: Location[Page]): Option[Location[Page]] =
+    find(location).fold(location.prev)(id => Option(prev(id)).filter(_ >= 0).map(locationArray))
+
+  /**
+   * All pages, by path, as [[Page.allPages]].
+   */
+  lazy val paths: Map[String, Page] = ids.map { case (path, id) => path -> page(id) }
+
+  // locations that aren't in this graph, such as those of included pages, are navigated as usual
+  private def find(location: Location[Page]): Option[Int] =
+    Some(id(location.tree.label.path)).filter(id => id >= 0 && (locationArray(id) eq location))
+}
+
+object PageGraph {
+
+  /**
+   * Number the pages of a forest in depth-first order.
+   */
+  def apply(roots: Forest[Page]): PageGraph = {
+    val locations = ArrayBuffer.empty[Location[Page]]
+    val parents   = ArrayBuffer.empty[Int]
+    val children  = ArrayBuffer.empty[Array[Int]]
+    val rootIds   = ArrayBuffer.empty[Int]
+
+    def add(location: Location[Page], parent: Int): Int = {
+      val id = locations.size
+      locations += location
+      parents += parent
+      children += Array.emptyIntArray
+      rootIds += (if (parent < 0) id else rootIds(parent))
+      val childIds = new Array[Int](location.tree.children.size)
+      var child    = location.leftmostChild
+      var index    = 0
+      while (child.isDefined) {
+        childIds(index) = add(child.get, id)
+        child = child.get.right
+        index += 1
+      }
+      children(id) = childIds
+      id
+    }
+
+    roots.foreach(root => add(root.location, -1))
+    val ids = locations.indices.reverseIterator.map(id => locations(id).tree.label.path -> id).toMap
+    new PageGraph(locations.toArray, parents.toArray, children.toArray, rootIds.toArray, ids)
+  }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import com.lightbend.paradox.Digest
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.{ArrayList => JArrayList, IdentityHashMap, List => JList}
+import org.pegdown.ast._
+
+import com.lightbend.paradox.compat.Implicits._
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+ * On-disk cache of parsed markdown, keyed by a digest of the text and the parser configuration.
+ *
+ * Parsed trees are stored in a compact binary form. Text that parses to nodes which can't be stored, such as nodes
+ * from parser plugins, is parsed every time. Trees that a build doesn't use, such as those of texts that have since
+ * changed, are removed with [[prune]]. The cache is safe to use from multiple threads.
+ */
+class ParseCache(directory: File, key: String) {
+  private val hitCount  = new AtomicInteger
+  private val missCount = new AtomicInteger
+  private val used      = ConcurrentHashMap.newKeySet[String]
+
+  private val Suffix = ".ast"
+
+  /**
+   * Number of texts read from the cache.
+   */
+  def hits: Int = hitCount.get
+
+  /**
+   * Number of texts that had to be parsed.
+   */
+  def misses: Int = missCount.get
+
+  /**
+   * Read the parsed tree for this text from the cache, otherwise parse it and store the result.
+   */
+  def read(text: String)(parse: => RootNode): RootNode = {
+    val file = new File(directory, Digest(key + "\u0000" + text) + Suffix)
+    used.add(file.getName)
+    load(file) match {
+      case Some(root) =>
+        hitCount.incrementAndGet()
+        root
+      case None =>
+        missCount.incrementAndGet()
+        val root = parse
+        store(file, root)
+        root
+    }
+  }
+
+  /**
+   * Delete the stored trees that haven't been read or stored through this cache, returning how many were deleted.
+   */
+  def prune(): Int = {
+    val unused = Option(directory.listFiles).toSeq.flatten.filter { file =>
+      file.getName.endsWith(Suffix) && !used.contains(file.getName)
+    }
+    unused.count(_.delete())
+  }
+
+  private def load(file: File): Option[RootNode] =
+    if (file.isFile) Try(ParseCache.decode(Files.readAllBytes(file.toPath))).toOption
+    else None
+
+  // the cache is best effort, failing to store a tree only means parsing it again next time
+  private def store(file: File, root: RootNode): Unit =
+    try {
+      val bytes = ParseCache.encode(root)
+      directory.mkdirs()
+      val temp = File.createTempFile(file.getName, ".tmp", directory)
+      try {
+        Files.write(temp.toPath, bytes)
+        Files.move(temp.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      } finally temp.delete()
+    } catch {
+      case NonFatal(_) =>
+    }
+}
+
+object ParseCache {
+
+  /**
+   * Thrown when encoding a tree that contains a node which the binary form doesn't support.
+   */
+  class UnsupportedNodeException(node: Node) extends RuntimeException(s"Unsupported node: ${node.getClass.getName}")
+
+  private val Version = 1
+
+  private val NullTag      = 0
+  private val BackrefTag   = 1
+  private val FirstNodeTag = 2
+
+  // Only these exact classes are encoded, subclasses (for example from parser plugins) are unsupported
+  private val nodeClasses: IndexedSeq[Class[?]] = IndexedSeq(
+    classOf[RootNode],
+    classOf[SuperNode],
+    classOf[ParaNode],
+    classOf[BlockQuoteNode],
+    classOf[BulletListNode],
+    classOf[OrderedListNode],
+    classOf[ListItemNode],
+    classOf[TaskListNode],
+    classOf[DefinitionListNode],
+    classOf[DefinitionNode],
+    classOf[DefinitionTermNode],
+    classOf[HeaderNode],
+    classOf[ExpLinkNode],
+    classOf[ExpImageNode],
+    classOf[RefLinkNode],
+    classOf[RefImageNode],
+    classOf[ReferenceNode],
+    classOf[AbbreviationNode],
+    classOf[QuotedNode],
+    classOf[StrongEmphSuperNode],
+    classOf[StrikeNode],
+    classOf[TableNode],
+    classOf[TableBodyNode],
+    classOf[TableCaptionNode],
+    classOf[TableCellNode],
+    classOf[TableColumnNode],
+    classOf[TableHeaderNode],
+    classOf[TableRowNode],
+    classOf[TextNode],
+    classOf[AutoLinkNode],
+    classOf[CodeNode],
+    classOf[HtmlBlockNode],
+    classOf[InlineHtmlNode],
+    classOf[MailLinkNode],
+    classOf[SpecialTextNode],
+    classOf[WikiLinkNode],
+    classOf[AnchorLinkNode],
+    classOf[VerbatimNode],
+    classOf[SimpleNode],
+    classOf[ValidEmphOrStrongCloseNode],
+    classOf[DirectiveNode],
+    classOf[AnchorLinkSuperNode]
+  )
+
+  private val nodeTags: Map[Class[?], Int] = nodeClasses.zipWithIndex.map { case (c, i) => c -> (i + FirstNodeTag) }.toMap
+
+  /**
+   * Encode a parsed tree to bytes. Shared nodes, such as references which are both children and listed on the root,
+   * are encoded once.
+   */
+  def encode(root: RootNode): Array[Byte] = {
+    val bytes = new ByteArrayOutputStream
+    val out   = new DataOutputStream(bytes)
+    out.writeInt(Version)
+    new Encoder(out).node(root)
+    out.flush()
+    bytes.toByteArray
+  }
+
+  /**
+   * Decode a tree encoded with [[encode]].
+   */
+  def decode(bytes: Array[Byte]): RootNode = {
+    val in = new DataInputStream(new ByteArrayInputStream(bytes))
+    if (in.readInt() != Version) throw new IOException("Unknown parse cache version")
+    new Decoder(in).node() match {
+      case root: RootNode => root
+      case _              => throw new IOException("Parse cache entry is not a root node")
+    }
+  }
+
+  private class Encoder(out: DataOutputStream) {
+    private val ids = new IdentityHashMap[Node, Integer]
+
+    def node(n: Node): Unit =
+      if (n == null) out.writeByte(NullTag)
+      else if (ids.containsKey(n)) {
+        out.writeByte(BackrefTag)
+        out.writeInt(ids.get(n))
+      } else {
+        val tag = nodeTags.getOrElse(n.getClass, throw new UnsupportedNodeException(n))
+        ids.put(n, ids.size)
+        out.writeByte(tag)
+        out.writeInt(n.getStartIndex)
+        out.writeInt(n.getEndIndex)
+        fields(n)
+      }
+
+    private def fields(n: Node): Unit = n match {
+      case root: RootNode =>
+        nodes(root.getChildren)
+        nodes(root.getReferences)
+        nodes(root.getAbbreviations)
+      case directive: DirectiveNode =>
+        string(directive.format.name)
+        string(directive.name)
+        string(directive.label)
+        string(directive.contents)
+        directive.source match {
+          case direct: DirectiveNode.Source.Direct =>
+            out.writeByte(1)
+            string(direct.value)
+          case ref: DirectiveNode.Source.Ref =>
+            out.writeByte(2)
+            string(ref.value)
+          case _ =>
+            out.writeByte(0)
+        }
+        directive.attributes match {
+          case attributes: DirectiveAttributes.AttributeMap =>
+            val keys = attributes.keys.asScala.toSeq
+            out.writeInt(keys.size)
+            keys.foreach { key =>
+              string(key)
+              strings(attributes.values(key))
+            }
+          case _ => throw new UnsupportedNodeException(directive)
+        }
+        node(directive.contentsNode)
+      case anchor: AnchorLinkSuperNode =>
+        node(anchor.contents)
+      case anchor: AnchorLinkNode =>
+        string(anchor.getName)
+        string(anchor.getText)
+      case verbatim: VerbatimNode =>
+        string(verbatim.getText)
+        string(verbatim.getType)
+      case text: TextNode =>
+        string(text.getText)
+      case simple: SimpleNode =>
+        string(simple.getType.name)
+      case _: ValidEmphOrStrongCloseNode =>
+      case header: HeaderNode =>
+        out.writeInt(header.getLevel)
+        out.writeBoolean(header.isSetext)
+        nodes(header.getChildren)
+      case task: TaskListNode =>
+        out.writeBoolean(task.isDone)
+        string(task.getTaskListMarker)
+        nodes(task.getChildren)
+      case link: ExpLinkNode =>
+        string(link.url)
+        string(link.title)
+        nodes(link.getChildren)
+      case image: ExpImageNode =>
+        string(image.url)
+        string(image.title)
+        nodes(image.getChildren)
+      case link: RefLinkNode =>
+        node(link.referenceKey)
+        string(link.separatorSpace)
+        nodes(link.getChildren)
+      case image: RefImageNode =>
+        node(image.referenceKey)
+        string(image.separatorSpace)
+        nodes(image.getChildren)
+      case reference: ReferenceNode =>
+        string(reference.getUrl)
+        string(reference.getTitle)
+        nodes(reference.getChildren)
+      case abbreviation: AbbreviationNode =>
+        node(abbreviation.getExpansion)
+        nodes(abbreviation.getChildren)
+      case quoted: QuotedNode =>
+        string(quoted.getType.name)
+        nodes(quoted.getChildren)
+      case emph: StrongEmphSuperNode =>
+        string(emph.getChars)
+        out.writeBoolean(emph.isStrong)
+        out.writeBoolean(emph.isClosed)
+        nodes(emph.getChildren)
+      case table: TableNode =>
+        nodes(table.getColumns)
+        nodes(table.getChildren)
+      case column: TableColumnNode =>
+        string(column.getAlignment.name)
+        nodes(column.getChildren)
+      case cell: TableCellNode =>
+        out.writeInt(cell.getColSpan)
+        nodes(cell.getChildren)
+      case superNode: SuperNode =>
+        nodes(superNode.getChildren)
+      case other =>
+        throw new UnsupportedNodeException(other)
+    }
+
+    private def nodes(list: JList[? <: Node]): Unit = {
+      out.writeInt(list.size)
+      list.asScala.foreach(node)
+    }
+
+    private def strings(list: JList[String]): Unit = {
+      out.writeInt(list.size)
+      list.asScala.foreach(string)
+    }
+
+    private def string(s: String): Unit =
+      if (s == null) out.writeInt(-1)
+      else {
+        val bytes = s.getBytes(StandardCharsets.UTF_8)
+        out.writeInt(bytes.length)
+        out.write(bytes)
+      }
+  }
+
+  private class Decoder(in: DataInputStream) {
+    private val decoded = ArrayBuffer.empty[Node]
+
+    def node(): Node = in.readByte() match {
+      case NullTag    => null
+      case BackrefTag => decoded(in.readInt())
+      case tag        =>
+        val id = decoded.size
+        decoded += null // reserve the id in encoding order, the node is created after its fields are read
+        val start = in.readInt()
+        val end   = in.readInt()
+        val n     = create(nodeClasses(tag - FirstNodeTag))
+        n.setStartIndex(start)
+        n.setEndIndex(end)
+        decoded(id) = n
+        n
+    }
+
+    private def create(nodeClass: Class[?]): AbstractNode = nodeClass match {
+      case c if c == classOf[RootNode] =>
+        val root = withChildren(new RootNode)
+        root.setReferences(nodes[ReferenceNode]())
+        root.setAbbreviations(nodes[AbbreviationNode]())
+        root
+      case c if c == classOf[DirectiveNode] =>
+        val format   = DirectiveNode.Format.valueOf(string())
+        val name     = string()
+        val label    = string()
+        val contents = string()
+        val source   = in.readByte() match {
+          case 1 => new DirectiveNode.Source.Direct(string())
+          case 2 => new DirectiveNode.Source.Ref(string())
+          case _ => DirectiveNode.Source.Empty
+        }
+        val attributes = new DirectiveAttributes.AttributeMap
+        (1 to in.readInt()).foreach { _ =>
+          val key = string()
+          strings().asScala.foreach(value => attributes.add(key, value))
+        }
+        new DirectiveNode(format, name, label, source, attributes, contents, node())
+      case c if c == classOf[AnchorLinkSuperNode] => new AnchorLinkSuperNode(node())
+      case c if c == classOf[AnchorLinkNode]      =>
+        val name = string()
+        new AnchorLinkNode(name, string())
+      case c if c == classOf[VerbatimNode] =>
+        val text = string()
+        new VerbatimNode(text, string())
+      case c if c == classOf[TextNode]                   => new TextNode(string())
+      case c if c == classOf[AutoLinkNode]               => new AutoLinkNode(string())
+      case c if c == classOf[CodeNode]                   => new CodeNode(string())
+      case c if c == classOf[HtmlBlockNode]              => new HtmlBlockNode(string())
+      case c if c == classOf[InlineHtmlNode]             => new InlineHtmlNode(string())
+      case c if c == classOf[MailLinkNode]               => new MailLinkNode(string())
+      case c if c == classOf[SpecialTextNode]            => new SpecialTextNode(string())
+      case c if c == classOf[WikiLinkNode]               => new WikiLinkNode(string())
+      case c if c == classOf[SimpleNode]                 => new SimpleNode(SimpleNode.Type.valueOf(string()))
+      case c if c == classOf[ValidEmphOrStrongCloseNode] => new ValidEmphOrStrongCloseNode
+      case c if c == classOf[HeaderNode]                 =>
+        val level  = in.readInt()
+        val setext = in.readBoolean()
+        withChildren(new HeaderNode(level, null, setext))
+      case c if c == classOf[TaskListNode] =>
+        val done   = in.readBoolean()
+        val marker = string()
+        withChildren(new TaskListNode(null, done, marker))
+      case c if c == classOf[ExpLinkNode] =>
+        val url   = string()
+        val title = string()
+        withChildren(new ExpLinkNode(title, url, null))
+      case c if c == classOf[ExpImageNode] =>
+        val url   = string()
+        val title = string()
+        withChildren(new ExpImageNode(title, url, null))
+      case c if c == classOf[RefLinkNode] =>
+        val key   = node().asInstanceOf[SuperNode]
+        val space = string()
+        withChildren(new RefLinkNode(key, space, null))
+      case c if c == classOf[RefImageNode] =>
+        val key   = node().asInstanceOf[SuperNode]
+        val space = string()
+        withChildren(new RefImageNode(key, space, null))
+      case c if c == classOf[ReferenceNode] =>
+        val url       = string()
+        val title     = string()
+        val reference = new ReferenceNode(null)
+        reference.setUrl(url)
+        reference.setTitle(title)
+        withChildren(reference)
+      case c if c == classOf[AbbreviationNode] =>
+        val abbreviation = new AbbreviationNode(null)
+        abbreviation.setExpansion(node())
+        withChildren(abbreviation)
+      case c if c == classOf[QuotedNode] =>
+        withChildren(new QuotedNode(QuotedNode.Type.valueOf(string())))
+      case c if c == classOf[StrongEmphSuperNode] || c == classOf[StrikeNode] =>
+        val chars  = string()
+        val strong = in.readBoolean()
+        val closed = in.readBoolean()
+        // pick the constructor that leads to the same state, the copy constructor doesn't copy the strong flag
+        val emph =
+          if (chars == null) new StrongEmphSuperNode(new JArrayList[Node])
+          else if (strong == (chars.length == 2)) new StrongEmphSuperNode(chars)
+          else new StrongEmphSuperNode(new StrongEmphSuperNode(chars))
+        emph.setClosed(closed)
+        val result =
+          if (c == classOf[StrikeNode]) {
+            if (chars == null) new StrikeNode(new JArrayList[Node]) else new StrikeNode(emph)
+          } else emph
+        result.setClosed(closed)
+        withChildren(result)
+      case c if c == classOf[TableNode] =>
+        val table = new TableNode
+        nodes[TableColumnNode]().asScala.foreach(table.addColumn)
+        withChildren(table)
+      case c if c == classOf[TableColumnNode] =>
+        val column = new TableColumnNode
+        string() match {
+          case "Left"   => column.markLeftAligned()
+          case "Right"  => column.markRightAligned()
+          case "Center" =>
+            column.markLeftAligned()
+            column.markRightAligned()
+          case _ =>
+        }
+        withChildren(column)
+      case c if c == classOf[TableCellNode] =>
+        val cell = new TableCellNode
+        cell.setColSpan(in.readInt())
+        withChildren(cell)
+      case c if c == classOf[SuperNode]          => withChildren(new SuperNode)
+      case c if c == classOf[ParaNode]           => withChildren(new ParaNode(new JArrayList[Node]))
+      case c if c == classOf[BlockQuoteNode]     => withChildren(new BlockQuoteNode(new JArrayList[Node]))
+      case c if c == classOf[BulletListNode]     => withChildren(new BulletListNode(null))
+      case c if c == classOf[OrderedListNode]    => withChildren(new OrderedListNode(null))
+      case c if c == classOf[ListItemNode]       => withChildren(new ListItemNode(null))
+      case c if c == classOf[DefinitionListNode] => withChildren(new DefinitionListNode)
+      case c if c == classOf[DefinitionNode]     => withChildren(new DefinitionNode(null))
+      case c if c == classOf[DefinitionTermNode] => withChildren(new DefinitionTermNode)
+      case c if c == classOf[TableBodyNode]      => withChildren(new TableBodyNode)
+      case c if c == classOf[TableCaptionNode]   => withChildren(new TableCaptionNode)
+      case c if c == classOf[TableHeaderNode]    => withChildren(new TableHeaderNode)
+      case c if c == classOf[TableRowNode]       => withChildren(new TableRowNode)
+      case c                                     => throw new IOException(s"Unknown node class ${c.getName}")
+    }
+
+    // constructors that take a child add it to the children, which are replaced with the decoded children
+    private def withChildren[N <: SuperNode](n: N): N = {
+      val children = nodes[Node]()
+      n.getChildren.clear()
+      n.getChildren.addAll(children)
+      n
+    }
+
+    private def nodes[N <: Node](): JList[N] = {
+      val size = in.readInt()
+      val list = new JArrayList[N](size)
+      (1 to size).foreach(_ => list.add(node().asInstanceOf[N]))
+      list
+    }
+
+    private def strings(): JList[String] = {
+      val size = in.readInt()
+      val list = new JArrayList[String](size)
+      (1 to size).foreach(_ => list.add(string()))
+      list
+    }
+
+    private def string(): String = in.readInt() match {
+      case -1     => null
+      case length =>
+        val bytes = new Array[Byte](length)
+        in.readFully(bytes)
+        new String(bytes, StandardCharsets.UTF_8)
+    }
+  }
+}
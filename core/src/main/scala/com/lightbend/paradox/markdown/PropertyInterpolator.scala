@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+/**
+ * Substitutes property values for references such as `$key$` in text, in a single scan of the text with a lookup for
+ * each reference, rather than a scan of the text for each property.
+ *
+ * References to undefined properties are left as they are. Substituted values are not scanned for references in turn,
+ * and where references overlap, the leftmost is substituted.
+ */
+class PropertyInterpolator(properties: Map[String, String], start: String = "$", stop: String = "$") {
+  require(start.nonEmpty && stop.nonEmpty, "Property delimiters must not be empty")
+
+  // references to longer keys are not looked up
+  private val maxKeyLength = properties.keysIterator.foldLeft(-1)((max, key) => math.max(max, key.length))
+
+  def apply(text: String): String = {
+    var from = if (maxKeyLength < 0) -1 else text.indexOf(start)
+    if (from < 0) text
+    else {
+      val result = new java.lang.StringBuilder(text.length)
+      var copied = 0
+      var end    = -1 // first stop delimiter after the last key start
+      while (from >= 0) {
+        val keyStart = from + start.length
+        if (end < keyStart) end = text.indexOf(stop, keyStart)
+        if (end < 0) from = -1
+        else {
+          val value = if (end - keyStart <= maxKeyLength) properties.get(text.substring(keyStart, end)) else None
+          value match {
+            case Some(v) =>
+              result.append(text, copied, from).append(v)
+              copied = end + stop.length
+              from = text.indexOf(start, copied)
+            case None =>
+              from = text.indexOf(start, from + 1)
+          }
+        }
+      }
+      if (copied == 0) text else result.append(text, copied, text.length).toString
+    }
+  }
+}
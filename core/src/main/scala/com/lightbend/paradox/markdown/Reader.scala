@@ -16,6 +16,7 @@
 
 package com.lightbend.paradox.markdown
 
+import com.lightbend.paradox.{Digest, ParadoxProcessor}
 import org.parboiled.Parboiled
 import org.pegdown.ast.RootNode
 import org.pegdown.plugins.PegDownPlugins
@@ -24,8 +25,16 @@ import scala.concurrent.duration._
 
 /**
  * A configured markdown parser.
+ *
+ * Parboiled parsers hold parsing state and can't be shared between threads. A configured reader creates a parser for
+ * each thread that reads with it, while a reader for a given parser instance serializes reads on that parser.
+ *
+ * The cache key identifies how text is parsed, for a [[ParseCache]], and is only known for configured readers. It
+ * includes the [[Reader.ParserVersion]], so that trees parsed by other versions of the parser aren't reused.
  */
-class Reader(parser: Parser) {
+class Reader private (newParser: () => Parser, perThread: Boolean, val cacheKey: Option[String]) {
+
+  def this(parser: Parser) = this(() => parser, perThread = false, cacheKey = None)
 
   def this(
       options: Int = Extensions.ALL ^ Extensions.HARDWRAPS /* disable hard wraps, see #31 */,
@@ -34,24 +43,51 @@ class Reader(parser: Parser) {
       plugins: PegDownPlugins = PegDownPlugins.NONE
   ) =
     this(
-      Parboiled.createParser[ParserWithDirectives, AnyRef](
-        classOf[ParserWithDirectives],
-        options: java.lang.Integer,
-        maxParsingTime.toMillis: java.lang.Long,
-        parseRunnerProvider,
-        plugins
-      )
+      () =>
+        Parboiled.createParser[ParserWithDirectives, AnyRef](
+          classOf[ParserWithDirectives],
+          options: java.lang.Integer,
+          maxParsingTime.toMillis: java.lang.Long,
+          parseRunnerProvider,
+          plugins
+        ),
+      perThread = true,
+      // parser plugins can produce any nodes, so only the options identify how text is parsed without them
+      cacheKey =
+        if (plugins eq PegDownPlugins.NONE) Some(s"options=$options,parser=${Reader.ParserVersion}") else None
     )
 
+  private val parsers = new ThreadLocal[Parser] {
+    override def initialValue(): Parser = newParser()
+  }
+
+  private lazy val sharedParser = newParser()
+
   /**
    * Parse markdown text into a pegdown AST.
    */
-  def read(text: String): RootNode = read(text.toArray)
+  def read(text: String): RootNode = {
+    // copied once, with room for the trailing newlines
+    val input = new Array[Char](text.length + 2)
+    text.getChars(0, text.length, input, 0)
+    input(text.length) = '\n'
+    input(text.length + 1) = '\n'
+    parse(input)
+  }
 
   /**
    * Parse markdown text into a pegdown AST.
    */
-  def read(text: Array[Char]): RootNode = parser.parse(prepare(text))
+  def read(text: Array[Char]): RootNode = parse(prepare(text))
+
+  /**
+   * Parse the body of a source file into a pegdown AST, from the buffer it was read into.
+   */
+  def read(source: SourceFile): RootNode = parse(source.parserInput)
+
+  private def parse(input: Array[Char]): RootNode =
+    if (perThread) parsers.get.parse(input)
+    else sharedParser.synchronized(sharedParser.parse(input))
 
   /**
    * Add two trailing newlines to the text.
@@ -59,3 +95,19 @@ class Reader(parser: Parser) {
   def prepare(text: Array[Char]): Array[Char] = text ++ Array('\n', '\n')
 
 }
+
+object Reader {
+
+  /**
+   * Identifies the code that parses markdown: the paradox version, and digests of the paradox and pegdown parsers,
+   * which also change between snapshot builds of the same version.
+   */
+  val ParserVersion: String =
+    Digest(
+      Seq(
+        ParadoxProcessor.Version,
+        Digest.classFile(classOf[ParserWithDirectives]),
+        Digest.classFile(classOf[Parser])
+      ).mkString(",")
+    )
+}
@@ -87,9 +87,8 @@ object SinglePageSupport {
     private def check(node: DirectiveNode, path: String): Option[String] =
       ctx.paths.get(Path.resolve(page.path, path)).map { target =>
         if (path.contains("#")) {
-          val anchor  = path.substring(path.lastIndexOf('#'))
-          val headers = (target.headers.flatMap(_.toSet) :+ target.h1).map(_.path) ++ target.anchors.map(_.path)
-          if (!headers.contains(anchor)) {
+          val anchor = path.substring(path.lastIndexOf('#'))
+          if (!target.hasAnchor(anchor)) {
             ctx.error(s"Unknown anchor [$path]", node)
           }
         }
@@ -16,39 +16,34 @@
 
 package com.lightbend.paradox.markdown
 
-import java.io.File
+import java.io.{BufferedReader, File, FileInputStream, InputStreamReader}
+import java.nio.charset.StandardCharsets
 
 import scala.annotation.tailrec
-import scala.io.Source
+import scala.collection.immutable.VectorBuilder
+import scala.collection.mutable
 
 object Snippet {
 
   class SnippetException(message: String) extends RuntimeException(message)
 
-  def apply(file: File, labels: Seq[String], filterLabelLines: Boolean): (String, String) = {
-    val source = Source.fromFile(file)(using "UTF-8")
-    try {
-      val lines = source.getLines().toSeq
-      (extract(file, lines, labels, filterLabelLines), language(file))
-    } finally source.close()
-  }
+  def apply(file: File, labels: Seq[String], filterLabelLines: Boolean): (String, String) =
+    apply(SnippetFile.read(file), labels, filterLabelLines)
+
+  def apply(source: SnippetFile, labels: Seq[String], filterLabelLines: Boolean): (String, String) =
+    (extract(source, labels, filterLabelLines), language(source.file))
 
   def extract(file: File, lines: Seq[String], labels: Seq[String], filterLabelLines: Boolean): String =
+    extract(new SnippetFile(file, lines.toIndexedSeq), labels, filterLabelLines)
+
+  def extract(source: SnippetFile, labels: Seq[String], filterLabelLines: Boolean): String =
     labels match {
       case Seq() =>
-        val addLine = addFilteredLine(filterLabelLines)
-        cutIndentation(
-          lines.zipWithIndex
-            .foldLeft(Seq.empty[(Int, String)]) { case (lines, (line, lineIndex)) =>
-              addLine(line, lines, lineIndex + 1)
-            }
-            .map(_._2)
-        )
+        cutIndentation(source.slice(0, source.lines.size, filterLabelLines).map(_._2))
       case _ =>
         labels
           .map { label =>
-            val extractionState = extractState(file, lines, label, filterLabelLines)
-            cutIndentation(extractionState.snippetLines)
+            cutIndentation(extractLines(source, label, filterLabelLines).map(_._2))
           }
           .mkString("\n")
     }
@@ -67,62 +62,37 @@ object Snippet {
     snippetLines.map(ln => dropIndent(minIndent, ln)).mkString("\n")
   }
 
-  def extractLabelRange(file: File, label: String, filterLabelLines: Boolean = true): Option[(Int, Int)] = {
-    val source = Source.fromFile(file)(using "UTF-8")
-    try {
-      val lines       = source.getLines().toSeq
-      val lineNumbers = extractState(file, lines, label, filterLabelLines).lines.map(_._1)
-      if (lineNumbers.isEmpty)
-        None
-      else
-        Some((lineNumbers.min, lineNumbers.max))
-    } finally source.close()
+  def extractLabelRange(file: File, label: String, filterLabelLines: Boolean = true): Option[(Int, Int)] =
+    extractLabelRange(SnippetFile.read(file), label, filterLabelLines)
+
+  def extractLabelRange(source: SnippetFile, label: String, filterLabelLines: Boolean): Option[(Int, Int)] = {
+    val lineNumbers = extractLines(source, label, filterLabelLines).map(_._1)
+    if (lineNumbers.isEmpty)
+      None
+    else
+      Some((lineNumbers.min, lineNumbers.max))
   }
 
   type Line = (Int, String)
 
-  private def extractState(
-      file: File,
-      lines: Seq[String],
-      label: String,
-      filterLabelLines: Boolean
-  ): ExtractionState = {
+  private def extractLines(source: SnippetFile, label: String, filterLabelLines: Boolean): Seq[Line] = {
     if (!verifyLabel(label))
       throw new SnippetException(
-        s"Label [$label] for [$file] contains illegal characters. " +
+        s"Label [$label] for [${source.file}] contains illegal characters. " +
           "Only [a-zA-Z0-9_-] are allowed."
       )
-    // A label can be followed by an end of line or one or more spaces followed by an
-    // optional single sequence of contiguous (no whitespace) non-word characters
-    // (anything not in the group [a-zA-Z0-9_])
-    val labelPattern    = ("""#\Q""" + label + """\E( +[^\w \t]*)?$""").r
-    val hasLabel        = (s: String) => labelPattern.findFirstIn(s).nonEmpty
-    val extractionState = extractFrom(lines, hasLabel, hasLabel, addFilteredLine(filterLabelLines))
-    if (extractionState.snippetLines.isEmpty)
-      throw new SnippetException(s"Label [$label] not found in [$file]")
-    extractionState.block match {
-      case InBlock => throw new SnippetException(s"Label [$label] block not closed in [$file]")
-      case _       =>
+    // lines with the label alternately start and end a block
+    val markers = source.labelLines(label)
+    val lines   = markers.grouped(2).toSeq.flatMap { block =>
+      source.slice(block.head + 1, block.lift(1).getOrElse(source.lines.size), filterLabelLines)
     }
-    extractionState
+    if (lines.isEmpty)
+      throw new SnippetException(s"Label [$label] not found in [${source.file}]")
+    if (markers.size % 2 == 1)
+      throw new SnippetException(s"Label [$label] block not closed in [${source.file}]")
+    lines
   }
 
-  private def extractFrom(
-      lines: Seq[String],
-      blockStart: (String) => Boolean,
-      blockEnd: (String) => Boolean,
-      addLine: (String, Seq[Line], Int) => Seq[Line]
-  ): ExtractionState =
-    lines.zipWithIndex.foldLeft(ExtractionState(block = NoBlock, lines = Seq.empty)) { case (es, (l, lineIndex)) =>
-      es.block match {
-        case NoBlock if blockStart(l) => es.withBlock(InBlock)
-        case NoBlock                  => es
-        case InBlock if blockEnd(l)   => es.withBlock(NoBlock)
-        case InBlock                  =>
-          es.copy(lines = addLine(l, es.lines, lineIndex + 1))
-      }
-    }
-
   // drop indent, but don't drop other characters than whitespace
   private def dropIndent(indent: Int, line: String): String = {
     @tailrec
@@ -135,30 +105,9 @@ object Snippet {
     line.substring(charsToDrop)
   }
 
-  private case class ExtractionState(block: Block, lines: Seq[Line]) {
-    def snippetLines: Seq[String]                = lines.map(_._2)
-    def withBlock(block: Block): ExtractionState = copy(block = block)
-  }
-
-  sealed private trait Block
-  private case object NoBlock extends Block
-  private case object InBlock extends Block
-
   private val anyLabelRegex = """#[a-zA-Z_0-9\-]+( +[^\w \t]*)?$""".r
 
-  private def containsLabel(line: String): Option[String] =
-    anyLabelRegex.findFirstIn(line)
-
-  private def addFilteredLine(filterLabels: Boolean): (String, Seq[Line], Int) => Seq[Line] =
-    if (filterLabels) addLineFilterLabels else addLineNonFiltered
-
-  private def addLineFilterLabels(line: String, lines: Seq[Line], lineNumber: Int): Seq[Line] =
-    containsLabel(line).map(_ => lines).getOrElse(lines :+ (lineNumber, line))
-
-  private def addLineNonFiltered(line: String, lines: Seq[Line], lineNumber: Int): Seq[Line] =
-    lines :+ (lineNumber, line)
-
-  private def verifyLabel(label: String): Boolean = containsLabel(s"#$label").nonEmpty
+  private def verifyLabel(label: String): Boolean = anyLabelRegex.findFirstIn(s"#$label").nonEmpty
 
   def language(file: File): String = {
     val name = file.getName
@@ -167,3 +116,65 @@ object Snippet {
   }
 
 }
+
+/**
+ * Lines of a snippet source file, with the lines that each label is on indexed in a single pass.
+ */
+class SnippetFile(val file: File, val lines: IndexedSeq[String]) {
+
+  private val labelled = new Array[Boolean](lines.size)
+
+  private val labelIndex: Map[String, IndexedSeq[Int]] = {
+    val index = mutable.HashMap.empty[String, VectorBuilder[Int]]
+    lines.indices.foreach { i =>
+      val labels = SnippetFile.labels(lines(i))
+      labelled(i) = labels.nonEmpty
+      labels.foreach(label => index.getOrElseUpdate(label, new VectorBuilder[Int]) += i)
+    }
+    index.map { case (label, builder) => label -> builder.result() }.toMap
+  }
+
+  /**
+   * Indexes of the lines that contain this label.
+   */
+  def labelLines(label: String): IndexedSeq[Int] = labelIndex.getOrElse(label, Vector.empty)
+
+  /**
+   * Lines in a range of indexes, with their line numbers, optionally leaving out lines that contain labels.
+   */
+  def slice(from: Int, until: Int, filterLabelLines: Boolean): Seq[(Int, String)] =
+    (from until until).collect {
+      case i if !(filterLabelLines && labelled(i)) => (i + 1, lines(i))
+    }
+}
+
+object SnippetFile {
+
+  // A label can be followed by an end of line or one or more spaces followed by an
+  // optional single sequence of contiguous (no whitespace) non-word characters
+  // (anything not in the group [a-zA-Z0-9_])
+  private val labelRegex = """#([a-zA-Z_0-9\-]+)(?=( +[^\w \t]*)?$)""".r
+
+  /**
+   * Labels on a line of source.
+   */
+  def labels(line: String): List[String] =
+    if (line.indexOf('#') < 0) Nil
+    else labelRegex.findAllMatchIn(line).map(_.group(1)).toList
+
+  /**
+   * Read a source file as UTF-8.
+   */
+  def read(file: File): SnippetFile = {
+    val reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))
+    try {
+      val lines = Vector.newBuilder[String]
+      var line  = reader.readLine()
+      while (line != null) {
+        lines += line
+        line = reader.readLine()
+      }
+      new SnippetFile(file, lines.result())
+    } finally reader.close()
+  }
+}
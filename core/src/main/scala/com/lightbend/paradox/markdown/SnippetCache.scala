@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Snippet source files that have been read, so that files snipped or included by many pages are only read and indexed
+ * once. A file is read again when its modification time or size has changed. Safe to use from multiple threads.
+ */
+class SnippetCache {
+
+  private case class Entry(modified: Long, length: Long, source: SnippetFile)
+
+  private val files = new ConcurrentHashMap[File, Entry]
+
+  def apply(file: File): SnippetFile = {
+    val key      = file.getAbsoluteFile
+    val modified = key.lastModified
+    val length   = key.length
+    Option(files.get(key)).filter(entry => entry.modified == modified && entry.length == length) match {
+      case Some(entry) => entry.source
+      case None        =>
+        val source = SnippetFile.read(file)
+        files.put(key, Entry(modified, length, source))
+        source
+    }
+  }
+}
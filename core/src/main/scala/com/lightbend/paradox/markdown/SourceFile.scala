@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.nio.{ByteBuffer, CharBuffer}
+import java.nio.charset.{CodingErrorAction, StandardCharsets}
+import java.nio.file.Files
+import java.util.Arrays
+
+/**
+ * The text of a markdown source file, read and decoded once into a buffer, with line endings normalized to `\n` and
+ * without the final line ending, which is the text that [[Frontin]] splits.
+ *
+ * The front matter is found by offset, and the buffer has room for the trailing newlines that the parser needs, so the
+ * body is handed to the parser without copying when it's the whole file. The same buffer locates lines for reporting
+ * errors.
+ */
+final class SourceFile private (
+    val file: File,
+    buffer: Array[Char],
+    val length: Int,
+    val bodyStart: Int,
+    headerText: Option[String]
+) {
+
+  /**
+   * Properties of the front matter.
+   */
+  lazy val header: Map[String, String] = Frontin.loadProperties(headerText)
+
+  /**
+   * The body, after the front matter.
+   */
+  lazy val body: String = new String(buffer, bodyStart, length - bodyStart)
+
+  def frontin: Frontin = Frontin(header, body)
+
+  /**
+   * The text of the file, without copying it.
+   */
+  def text: CharSequence = CharBuffer.wrap(buffer, 0, length).asReadOnlyBuffer
+
+  /**
+   * The body with two trailing newlines, for the parser, which is the buffer itself when the body fills it.
+   */
+  def parserInput: Array[Char] = {
+    val bodyLength = length - bodyStart
+    val input      =
+      if (bodyStart == 0 && buffer.length == length + 2) buffer
+      else Arrays.copyOfRange(buffer, bodyStart, length + 2)
+    input(bodyLength) = '\n'
+    input(bodyLength + 1) = '\n'
+    input
+  }
+
+  /**
+   * The line with a character index of the text, or None if the index is past the end of the text. An index at the end
+   * of a line is on that line.
+   */
+  def lineAt(index: Int): Option[SourceFile.Line] = {
+    val count  = lineCount
+    var start  = 0
+    var number = 1
+    var line   = Option.empty[SourceFile.Line]
+    while (line.isEmpty && number <= count) {
+      val end = lineEnd(start)
+      if (index <= end) line = Some(SourceFile.Line(number, start, new String(buffer, start, end - start)))
+      else {
+        start = end + 1
+        number += 1
+      }
+    }
+    line
+  }
+
+  /**
+   * The number of lines of the text.
+   */
+  def lineCount: Int = {
+    var count = if (length > 0) 1 else 0
+    var i     = 0
+    while (i < length) {
+      if (buffer(i) == '\n') count += 1
+      i += 1
+    }
+    count
+  }
+
+  private def lineEnd(start: Int): Int = {
+    var i = start
+    while (i < length && buffer(i) != '\n') i += 1
+    i
+  }
+}
+
+object SourceFile {
+
+  /**
+   * A line of the text, numbered from 1, and the index of its first character.
+   */
+  case class Line(number: Int, start: Int, text: String)
+
+  /**
+   * Read a UTF-8 source file.
+   */
+  def read(file: File): SourceFile = {
+    val bytes = Files.readAllBytes(file.toPath)
+    // sized for the decoded text of well-formed UTF-8, with the final newline replaced by the parser's newlines
+    val endsWithNewline = bytes.nonEmpty && bytes(bytes.length - 1) == '\n'
+    val expected        = decodedLength(bytes) + (if (endsWithNewline) 1 else 2)
+    val decoded         = decode(bytes, expected).getOrElse(decode(bytes, bytes.length + 2).get)
+    val buffer          = decoded.array
+    var length          = normalize(buffer, decoded.position)
+    if (length > 0 && buffer(length - 1) == '\n') length -= 1
+    Frontin.split(CharBuffer.wrap(buffer, 0, length)) match {
+      case Some((header, bodyStart)) => new SourceFile(file, buffer, length, bodyStart, Some(header))
+      case None                      => new SourceFile(file, buffer, length, 0, None)
+    }
+  }
+
+  // the number of chars of well-formed UTF-8, counting the bytes that start a character and the surrogate pairs
+  private def decodedLength(bytes: Array[Byte]): Int = {
+    var count = 0
+    var i     = 0
+    while (i < bytes.length) {
+      val b = bytes(i) & 0xff
+      if ((b & 0xc0) != 0x80) count += 1
+      if ((b & 0xf8) == 0xf0) count += 1
+      i += 1
+    }
+    count
+  }
+
+  // decoded text in a buffer of a capacity, or None if it doesn't fit, which malformed input can cause
+  private def decode(bytes: Array[Byte], capacity: Int): Option[CharBuffer] = {
+    val out     = CharBuffer.allocate(capacity)
+    val decoder = StandardCharsets.UTF_8.newDecoder
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    val result = decoder.decode(ByteBuffer.wrap(bytes), out, true)
+    if (result.isOverflow || decoder.flush(out).isOverflow) None else Some(out)
+  }
+
+  // replace `\r\n` and `\r` line endings with `\n` in place, returning the new length
+  private def normalize(buffer: Array[Char], length: Int): Int = {
+    var i, j = 0
+    while (i < length) {
+      val c = buffer(i)
+      if (c == '\r') {
+        buffer(j) = '\n'
+        if (i + 1 < length && buffer(i + 1) == '\n') i += 1
+      } else buffer(j) = c
+      i += 1
+      j += 1
+    }
+    j
+  }
+}
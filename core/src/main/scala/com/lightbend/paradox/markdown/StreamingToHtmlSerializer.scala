@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.{Writer => JWriter}
+import java.util.{List => JList, Map => JMap}
+
+import org.pegdown.{LinkRenderer, Printer, ToHtmlSerializer, VerbatimSerializer}
+import org.pegdown.ast.{RootNode, SuperNode}
+import org.pegdown.plugins.ToHtmlSerializerPlugin
+
+import com.lightbend.paradox.compat.Implicits._
+
+/**
+ * HTML serializer that can also write to an output as it goes, rather than building the whole document as a string.
+ * The serialized HTML is written out after each top-level block, so only one block is held in memory at a time.
+ */
+class StreamingToHtmlSerializer(
+    linkRenderer: LinkRenderer,
+    verbatimSerializers: JMap[String, VerbatimSerializer],
+    plugins: JList[ToHtmlSerializerPlugin]
+) extends ToHtmlSerializer(linkRenderer, verbatimSerializers, plugins) {
+
+  private var output: JWriter        = null
+  private var outputPrinter: Printer = null
+
+  /**
+   * Serialize markdown to HTML, writing it to the output.
+   */
+  def toHtml(root: RootNode, out: JWriter): Unit = {
+    output = out
+    outputPrinter = printer
+    try {
+      root.accept(this)
+      out.append(printer.sb)
+      printer.clear()
+    } finally {
+      output = null
+      outputPrinter = null
+    }
+  }
+
+  override protected def visitChildren(node: SuperNode): Unit = node match {
+    case _: RootNode if output != null =>
+      node.getChildren.asScala.foreach { child =>
+        child.accept(this)
+        flush()
+      }
+    case _ => super.visitChildren(node)
+  }
+
+  // Children are sometimes serialized to a separate printer, which is only written to the output by its caller.
+  // The trailing spaces and the character before them are kept, as the printer checks them to start new lines.
+  private def flush(): Unit =
+    if (printer eq outputPrinter) {
+      val sb   = printer.sb
+      var keep = sb.length
+      while (keep > 0 && sb.charAt(keep - 1) == ' ') keep -= 1
+      val end = math.max(keep - 1, 0)
+      if (end > 0) {
+        output.append(sb, 0, end)
+        sb.delete(0, end)
+      }
+    }
+}
@@ -42,10 +42,7 @@ abstract class StyledVerbatimSerializer extends VerbatimSerializer {
 
     printer.print("<pre")
     if (!StringUtils.isEmpty(node.getType)) {
-      node match {
-        case vgn: VerbatimGroupNode => printPreAttributes(printer, vgn.getGroup, vgn.getClasses.asScala)
-        case _: VerbatimNode        => printPreAttributes(printer)
-      }
+      printPreAttributes(printer, node)
     }
     printer.print(">")
 
@@ -72,11 +69,18 @@ abstract class StyledVerbatimSerializer extends VerbatimSerializer {
     text.takeWhile(_ == '\n').foreach { _ =>
       printer.print("<br/>")
     }
-    printer.printEncoded(text.dropWhile(_ == '\n'))
+    printText(printer, node.getType, text.dropWhile(_ == '\n'))
 
     printer.print("</code></pre>")
   }
 
+  def printPreAttributes(printer: Printer, node: VerbatimNode): Unit = node match {
+    case vgn: VerbatimGroupNode => printPreAttributes(printer, vgn.getGroup, vgn.getClasses.asScala)
+    case _: VerbatimNode        => printPreAttributes(printer)
+  }
+
+  def printText(printer: Printer, nodeType: String, text: String): Unit = printer.printEncoded(text)
+
   def printClass(printer: Printer, value: String): Unit = printAttribute(printer, "class", value)
 
   def printAttribute(printer: Printer, name: String, value: String): Unit =
@@ -102,6 +106,34 @@ object PrettifyVerbatimSerializer extends StyledVerbatimSerializer {
   }
 }
 
+/**
+ * Highlight verbatim blocks while rendering, with the markup of prettify. Blocks in languages that aren't supported are
+ * left for prettify to highlight in the browser.
+ */
+class HighlightingVerbatimSerializer(highlights: HighlightCache = new HighlightCache) extends StyledVerbatimSerializer {
+  override def printPreAttributes(printer: Printer, nodeGroup: String, classes: mutable.Buffer[String]): Unit =
+    PrettifyVerbatimSerializer.printPreAttributes(printer, nodeGroup, classes)
+
+  // highlighted blocks are marked as done, so that prettify skips them
+  override def printPreAttributes(printer: Printer, node: VerbatimNode): Unit =
+    if (!Highlighter.supports(node.getType)) super.printPreAttributes(printer, node)
+    else
+      node match {
+        case vgn: VerbatimGroupNode =>
+          printPreAttributes(printer, vgn.getGroup, vgn.getClasses.asScala :+ "prettyprinted")
+        case _: VerbatimNode => printPreAttributes(printer, "", mutable.Buffer("prettyprinted"))
+      }
+
+  override def printCodeAttributes(printer: Printer, nodeType: String): Unit =
+    PrettifyVerbatimSerializer.printCodeAttributes(printer, nodeType)
+
+  override def printText(printer: Printer, nodeType: String, text: String): Unit =
+    highlights(nodeType, text) match {
+      case Some(html) => printer.print(html)
+      case None       => super.printText(printer, nodeType, text)
+    }
+}
+
 object RawVerbatimSerializer extends VerbatimSerializer {
 
   val tag: String = "raw"
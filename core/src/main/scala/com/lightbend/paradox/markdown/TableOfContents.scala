@@ -63,6 +63,17 @@ class TableOfContents(
   def root(location: Location[Page]): Node =
     markdown(location.tree.label.base, Some(location), location.root.tree)
 
+  /**
+   * Create the link to a page, as it appears in a TOC when the page is active or not.
+   */
+  def pageLink(base: String, location: Location[Page], active: Boolean): Node =
+    link(base, location.tree.label, if (active) Some(location) else None)
+
+  /**
+   * Whether the pages and headers shown depend on the active page.
+   */
+  def expandsActive: Boolean = maxExpandDepth.isDefined
+
   /**
    * Create a TOC bullet list for the headers of a Page only, including the top-level header.
    */
@@ -170,7 +181,7 @@ class TableOfContents(
   ): Option[Int] =
     maxExpandDepth flatMap { max =>
       expandDepth.filter(_ < max) orElse // currently expanding and still below max
-        (if (active.exists(_.path.drop(1).exists(_.tree.label == linkable))) Some(max)
+        (if (active.exists(_.parents.exists(_.label == linkable))) Some(max)
          else None) orElse // expand ancestors of the active page
         (if ((max > 0) && active.exists(_.tree.label == linkable)) Some(0) else None) // expand from the active page
     }
@@ -16,7 +16,7 @@
 
 package com.lightbend.paradox.markdown
 
-import com.lightbend.paradox.{ErrorContext, ParadoxLogger}
+import com.lightbend.paradox.{BuildReport, Digest, ErrorContext, ParadoxLogger}
 import com.lightbend.paradox.tree.Tree.Location
 import org.parboiled.common.StringUtils
 import org.pegdown.FastEncoder.encode
@@ -26,31 +26,47 @@ import org.pegdown.{LinkRenderer, ToHtmlSerializer, VerbatimSerializer}
 
 import java.util.regex.Pattern
 import com.lightbend.paradox.compat.Implicits._
+import scala.util.Try
 import scala.util.matching.Regex
 
 /**
  * A configured markdown to HTML serializer.
+ *
+ * The fingerprint identifies how the serializer is configured and the code that it runs, so that output written with
+ * another configuration or another build of its code isn't reused by an incremental build.
  */
-class Writer(serializer: Writer.Context => ToHtmlSerializer) {
+class Writer(serializer: Writer.Context => ToHtmlSerializer, val fingerprint: String) {
+
+  def this(serializer: Writer.Context => ToHtmlSerializer) = this(serializer, Writer.fingerprint(serializer))
 
   def this(
       linkRenderer: Writer.Context => LinkRenderer = Writer.defaultLinks,
       verbatimSerializers: Map[String, VerbatimSerializer] = Writer.defaultVerbatims,
       serializerPlugins: Seq[Writer.Context => ToHtmlSerializerPlugin] = Writer.defaultPlugins(Writer.defaultDirectives)
   ) =
-    this((context: Writer.Context) =>
-      new ToHtmlSerializer(
-        linkRenderer(context),
-        verbatimSerializers.asJava,
-        serializerPlugins.map(p => p(context)).asJava
-      )
+    this(
+      (context: Writer.Context) =>
+        new StreamingToHtmlSerializer(
+          context.links.fold(linkRenderer(context))(_.renderer(linkRenderer(context), context.page)),
+          verbatimSerializers.asJava,
+          serializerPlugins.map(p => p(context)).asJava
+        ),
+      (Writer.fingerprint(linkRenderer) +:
+        verbatimSerializers.toSeq.sortBy(_._1).map { case (name, v) => name + "=" + Writer.fingerprint(v) } ++:
+        serializerPlugins.map(Writer.fingerprint)).mkString(",")
     )
 
   /**
    * Write main content.
    */
   def writeContent(node: Node, context: Writer.Context): String =
-    writeFragment(node, context)
+    write(fragmentRoot(node), context)
+
+  /**
+   * Write main content to an output.
+   */
+  def writeContent(node: Node, context: Writer.Context, out: java.io.Writer): Unit =
+    write(fragmentRoot(node), context, out)
 
   /**
    * Write breadcrumbs fragment.
@@ -83,12 +99,34 @@ class Writer(serializer: Writer.Context => ToHtmlSerializer) {
     serializer(context).toHtml(markdown)
 
   /**
-   * Write a markdown fragment to HTML, in the context of a page.
+   * Write a markdown fragment to HTML, in the context of a page. Only links in the main content are captured.
    */
-  def writeFragment(node: Node, context: Writer.Context): String = {
+  def writeFragment(node: Node, context: Writer.Context): String =
+    write(fragmentRoot(node), withoutLinks(context))
+
+  /**
+   * Write markdown to HTML on an output, in the context of a page. Serializers that support it write the HTML as it is
+   * serialized, others write it once complete.
+   */
+  def write(markdown: RootNode, context: Writer.Context, out: java.io.Writer): Unit =
+    serializer(context) match {
+      case streaming: StreamingToHtmlSerializer => streaming.toHtml(markdown, out)
+      case other                                => out.write(other.toHtml(markdown))
+    }
+
+  /**
+   * Write a markdown fragment to HTML on an output, in the context of a page.
+   */
+  def writeFragment(node: Node, context: Writer.Context, out: java.io.Writer): Unit =
+    write(fragmentRoot(node), withoutLinks(context), out)
+
+  private def withoutLinks(context: Writer.Context): Writer.Context =
+    if (context.links.isEmpty) context else context.copy(links = None)
+
+  private def fragmentRoot(node: Node): RootNode = {
     val rootNode = new RootNode
     rootNode.getChildren.add(node)
-    write(rootNode, context)
+    rootNode
   }
 
 }
@@ -118,10 +156,17 @@ object Writer {
       linkFailPath: Regex = DefaultIllegalLinkPath,
       groups: Map[String, Seq[String]] = Map.empty,
       properties: Map[String, String] = Map.empty,
-      includeIndexes: List[Int] = Nil
+      includeIndexes: List[Int] = Nil,
+      snippets: SnippetCache = new SnippetCache,
+      report: BuildReport = BuildReport.Disabled,
+      links: Option[LinkCapturer] = None
   ) {
-    val IllegalLinkPathPattern: Pattern = linkFailPath.pattern
-    def page: Page                      = location.tree.label
+    val IllegalLinkPathPattern: Pattern        = linkFailPath.pattern
+    def page: Page                             = location.tree.label
+    lazy val interpolator: PropertyInterpolator = new PropertyInterpolator(properties)
+
+    def interpolatorFor(start: String, stop: String): PropertyInterpolator =
+      if (start == "$" && stop == "$") interpolator else new PropertyInterpolator(properties, start, stop)
   }
 
   def defaultLinks(context: Context): LinkRenderer =
@@ -133,13 +178,48 @@ object Writer {
       RawVerbatimSerializer.tag -> RawVerbatimSerializer
     )
 
+  /**
+   * Verbatim serializers that highlight code while rendering, rather than in the browser with prettify.
+   */
+  def highlightingVerbatims(highlights: HighlightCache = new HighlightCache): Map[String, VerbatimSerializer] =
+    defaultVerbatims + (VerbatimSerializer.DEFAULT -> new HighlightingVerbatimSerializer(highlights))
+
   def defaultPlugins(directives: Seq[Context => Directive]): Seq[Context => ToHtmlSerializerPlugin] = Seq(
     _ => new ClassyLinkSerializer,
     _ => new AnchorLinkSerializer,
-    context => new DirectiveSerializer(directives.map(d => d(context))),
+    new DirectivesPlugin(directives),
     context => new IncludeNodeSerializer(context)
   )
 
+  // a named plugin, so that the directives are part of the writer's fingerprint
+  private class DirectivesPlugin(val directives: Seq[Context => Directive])
+      extends (Context => ToHtmlSerializerPlugin) {
+    def apply(context: Context): ToHtmlSerializerPlugin =
+      new DirectiveSerializer(
+        directives.map(d => d(context)).map(d => context.links.fold(d)(_.directive(d))),
+        context.report
+      )
+  }
+
+  /**
+   * Identifies a part of a writer's configuration by its class and the version of its code. Lambdas are identified by
+   * the class that defines them, as their generated names differ between runs, and the version of that class's code,
+   * which includes the lambda bodies.
+   */
+  private[paradox] def fingerprint(value: AnyRef): String = value match {
+    case plugin: DirectivesPlugin => plugin.directives.map(fingerprint).mkString("directives(", ",", ")")
+    case other                    =>
+      val cls = other.getClass
+      LambdaName.findFirstMatchIn(cls.getName).map(_.before.toString) match {
+        case Some(outer) =>
+          val defining = Try[Class[?]](Class.forName(outer, false, cls.getClassLoader)).getOrElse(cls)
+          outer + "$$Lambda@" + Digest.code(defining)
+        case None => cls.getName + "@" + Digest.code(cls)
+      }
+  }
+
+  private val LambdaName: Regex = """\$\$Lambda.*""".r
+
   def defaultDirectives: Seq[Context => Directive] = Seq(
     RefDirective.apply,
     LinkDirective.apply,
@@ -180,7 +260,7 @@ object Writer {
 
     override def render(node: ExpLinkNode, text: String): LinkRenderer.Rendering = {
       val title = node.title
-      val url   = substituteVarsInString(node.url, context.properties)
+      val url   = context.interpolator(node.url)
       if (context.IllegalLinkPathPattern.matcher(url).matches)
         context.error(
           s"Illegal URL '$url' with text '$text' (see `paradoxIllegalLinkPath` setting)",
@@ -207,15 +287,13 @@ object Writer {
     }
 
     override def render(node: RefLinkNode, url: String, title: String, text: String): LinkRenderer.Rendering =
-      super.render(node, substituteVarsInString(url, context.properties), title, text)
+      super.render(node, context.interpolator(url), title, text)
 
     private def interpolatedUrl(url: String): Option[String] =
       if (url.startsWith(".../")) Some(imgBase + url.drop(3)) else None
   }
 
   def substituteVarsInString(text: String, variables: Map[String, String]): String =
-    variables.foldLeft(text) { case (str, (key, value)) =>
-      str.replace("$" + key + "$", value)
-    }
+    new PropertyInterpolator(variables)(text)
 
 }
@@ -16,32 +16,51 @@
 
 package com.lightbend.paradox.template
 
-import java.io.{File, FileOutputStream, OutputStreamWriter}
+import java.io.{BufferedWriter, File, FileOutputStream, OutputStreamWriter, StringWriter, Writer}
 import java.nio.charset.StandardCharsets
 import java.util.{Map => JMap}
 
+import com.lightbend.paradox.Parallel
+
 import org.stringtemplate.v4.misc.STMessage
 import org.stringtemplate.v4.{NoIndentWriter, ST, STErrorListener, STRawGroupDir}
 
+import scala.collection.mutable
+
 /**
  * Page template writer.
  */
 class PageTemplate(
-    directory: File,
+    val directory: File,
     val defaultName: String = "page",
     val defaultSingleName: String = "single",
     val defaultPrintName: String = "print",
     startDelimiter: Char = '$',
     stopDelimiter: Char = '$'
 ) {
-  private val templates = new STRawGroupDir(directory.getAbsolutePath, startDelimiter, stopDelimiter)
+  // template groups load and compile templates lazily, which is not thread-safe, so each thread gets its own group
+  private val templates = new ThreadLocal[STRawGroupDir] {
+    override def initialValue(): STRawGroupDir =
+      new STRawGroupDir(directory.getAbsolutePath, startDelimiter, stopDelimiter)
+  }
 
   /**
    * Write a templated page to the target file.
    */
   def write(name: String, contents: PageTemplate.Contents, target: File): File = {
+    val template = pageInstance(name, contents, target.toString)
+    writeFile(target)(write(template, _, Seq(contents), Parallel.Sequential))
+  }
+
+  /**
+   * Write a templated page to a writer, which is not closed.
+   */
+  def write(name: String, contents: PageTemplate.Contents, out: Writer): Unit =
+    write(pageInstance(name, contents, contents.getPath), out, Seq(contents), Parallel.Sequential)
+
+  private def pageInstance(name: String, contents: PageTemplate.Contents, target: String): ST = {
     import com.lightbend.paradox.compat.Implicits._
-    write(name, target) { t =>
+    instance(name, target) { t =>
       // TODO, only load page properties, not global ones
       for (content <- contents.getProperties.asScala.filterNot(_._1.contains("."))) t.add(content._1, content._2)
       t.add("page", contents)
@@ -49,28 +68,92 @@ class PageTemplate(
   }
 
   /**
-   * Write all the templated pages to the target file.
+   * Write all the templated pages to the target file. Streamed page contents are written in place as the template
+   * iterates the pages, and with a `parallel` of more than one thread, the following pages are rendered ahead on its
+   * worker threads.
    */
   def writeSingle(
       name: String,
       firstPage: PageTemplate.Contents,
       contents: Seq[PageTemplate.Contents],
-      target: File
+      target: File,
+      parallel: Parallel = Parallel.Sequential
   ): File = {
     import com.lightbend.paradox.compat.Implicits._
-    write(name, target) { t =>
+    write(name, target, firstPage +: contents, parallel) { t =>
+      t.add("page", firstPage)
+      t.add("pages", contents.asJava)
+    }
+  }
+
+  /**
+   * Write all the templated pages to a writer, which is not closed.
+   */
+  def writeSingle(
+      name: String,
+      firstPage: PageTemplate.Contents,
+      contents: Seq[PageTemplate.Contents],
+      out: Writer,
+      parallel: Parallel
+  ): Unit = {
+    import com.lightbend.paradox.compat.Implicits._
+    write(name, firstPage.getPath, out, firstPage +: contents, parallel) { t =>
       t.add("page", firstPage)
       t.add("pages", contents.asJava)
     }
   }
 
   def writePrintCover(name: String, page: PageTemplate.Contents, target: File): File =
-    write(name, target) { t =>
+    write(name, target, Seq(page), Parallel.Sequential) { t =>
       t.add("page", page)
     }
 
-  private def write(name: String, target: File)(addVars: ST => ST): File = {
-    val template = Option(templates.getInstanceOf(name)) match {
+  /**
+   * Write the print cover to a writer, which is not closed.
+   */
+  def writePrintCover(name: String, page: PageTemplate.Contents, out: Writer): Unit =
+    write(name, page.getPath, out, Seq(page), Parallel.Sequential) { t =>
+      t.add("page", page)
+    }
+
+  private def write(name: String, target: File, contents: Seq[PageTemplate.Contents], parallel: Parallel)(
+      addVars: ST => ST
+  ): File = {
+    val template = instance(name, target.toString)(addVars)
+    writeFile(target)(write(template, _, contents, parallel))
+  }
+
+  private def write(
+      name: String,
+      target: String,
+      out: Writer,
+      contents: Seq[PageTemplate.Contents],
+      parallel: Parallel
+  )(addVars: ST => ST): Unit =
+    write(instance(name, target)(addVars), out, contents, parallel)
+
+  private def write(template: ST, out: Writer, contents: Seq[PageTemplate.Contents], parallel: Parallel): Unit = {
+    val streamed = contents.collect {
+      case streamed: PageTemplate.StreamedContents if streamed.isContentStreamed => streamed
+    }
+    if (streamed.isEmpty) template.write(new NoIndentWriter(out))
+    else {
+      val writer = new PageTemplate.ContentWriter(out, streamed.toIndexedSeq, parallel)
+      try template.write(writer)
+      finally writer.close()
+    }
+  }
+
+  // only opened once the template is found, so that a missing template leaves the target as it is
+  private def writeFile(target: File)(write: Writer => Unit): File = {
+    val out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8))
+    try write(out)
+    finally out.close()
+    target
+  }
+
+  private def instance(name: String, target: String)(addVars: ST => ST): ST =
+    Option(templates.get.getInstanceOf(name)) match {
       case Some(t) =>
         addVars(t)
       case None =>
@@ -78,14 +161,6 @@ class PageTemplate(
           s"StringTemplate '$name' was not found for '$target'. Create a template or set a theme that contains one."
         )
     }
-    var osWriter: OutputStreamWriter = null
-    try {
-      osWriter = new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8)
-      val noIndentWriter = new NoIndentWriter(osWriter)
-      template.write(noIndentWriter)
-    } finally osWriter.close()
-    target
-  }
 }
 
 object PageTemplate {
@@ -109,6 +184,83 @@ object PageTemplate {
     def getPath: String
   }
 
+  /**
+   * Page information where the main content can be written directly to the page output, rather than created as a
+   * string. When the content is streamed, `getContent` returns the `contentPlaceholder`, and the content is written in
+   * its place.
+   */
+  trait StreamedContents extends Contents {
+    def isContentStreamed: Boolean
+    def writeContent(out: Writer): Unit
+    def contentPlaceholder: String = ContentPlaceholder
+  }
+
+  private val PlaceholderStart = "\u0000paradox-content"
+
+  /**
+   * Stands in for the content of streamed pages. Templates must insert the content as is, without formatting it.
+   */
+  val ContentPlaceholder: String = PlaceholderStart + "\u0000"
+
+  /**
+   * Stands in for the content of one of several streamed pages in the same output, such as a page path.
+   */
+  def contentPlaceholder(key: String): String = PlaceholderStart + ":" + key + "\u0000"
+
+  /**
+   * Template output that writes the streamed contents wherever their placeholders are written. With a `parallel` of
+   * more than one thread, the contents following the one being written are rendered ahead on its worker threads, a
+   * bounded number at a time, so that rendering keeps ahead of the output without holding all the contents in memory.
+   */
+  private class ContentWriter(out: Writer, contents: IndexedSeq[StreamedContents], parallel: Parallel)
+      extends NoIndentWriter(out) {
+    private val indices = contents.map(_.contentPlaceholder).zipWithIndex.toMap
+    private val ahead   = mutable.Map.empty[Int, Parallel.Task[String]]
+    private var next    = 0
+
+    override def write(str: String): Int = {
+      val start = str.indexOf(PlaceholderStart)
+      val end   = if (start < 0) -1 else str.indexOf('\u0000', start + 1)
+      if (end < 0) super.write(str)
+      else {
+        super.write(str.substring(0, start))
+        val placeholder = str.substring(start, end + 1)
+        indices.get(placeholder) match {
+          case Some(index) => writeContent(index)
+          case None        => super.write(placeholder)
+        }
+        write(str.substring(end + 1))
+        str.length
+      }
+    }
+
+    def close(): Unit = {
+      ahead.values.foreach(_.cancel())
+      ahead.clear()
+    }
+
+    private def writeContent(index: Int): Unit =
+      if (parallel.parallelism <= 1) contents(index).writeContent(out)
+      else {
+        // contents before this one that were rendered ahead but not inserted are dropped, to keep memory bounded
+        ahead.keys.filter(_ < index).toList.foreach(i => ahead.remove(i).foreach(_.cancel()))
+        next = math.max(next, index)
+        while (next < math.min(index + 2 * parallel.parallelism, contents.size)) {
+          val render = contents(next)
+          ahead(next) = parallel.submit {
+            val rendered = new StringWriter
+            render.writeContent(rendered)
+            rendered.toString
+          }
+          next += 1
+        }
+        ahead.remove(index) match {
+          case Some(task) => out.write(task.result())
+          case None       => contents(index).writeContent(out)
+        }
+      }
+  }
+
   /**
    * Page link. Can be rendered as just the href or full HTML.
    */
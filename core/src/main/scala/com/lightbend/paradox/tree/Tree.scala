@@ -92,9 +92,16 @@ object Tree {
 
   /**
    * Zipper navigation and modification for Tree.
+   *
+   * Locations remember their parent location: moving down or across passes it on, and otherwise it's rebuilt once, so
+   * that moving back up, as when traversing in depth-first order or following the path to the root, doesn't rebuild
+   * the parent trees again.
    */
   final case class Location[A](tree: Tree[A], lefts: Forest[A], rights: Forest[A], parents: List[Parent[A]]) {
 
+    // null until known
+    private var parentLocation: Option[Location[A]] = null
+
     /**
      * Move to the root.
      */
@@ -107,9 +114,20 @@ object Tree {
     /**
      * Move to the parent.
      */
-    def parent: Option[Location[A]] = parents match {
-      case p :: ps => Some(Location(Tree(p.label, forest), p.lefts, p.rights, ps))
-      case Nil     => None
+    def parent: Option[Location[A]] = {
+      if (parentLocation eq null) parentLocation = parents match {
+        case p :: ps => Some(Location(Tree(p.label, forest), p.lefts, p.rights, ps))
+        case Nil     => None
+      }
+      parentLocation
+    }
+
+    /**
+     * Set the known parent location, of a location moved to from here.
+     */
+    private def withParent(parent: Option[Location[A]]): Location[A] = {
+      parentLocation = parent
+      this
     }
 
     /**
@@ -122,7 +140,7 @@ object Tree {
      * Move to the left sibling.
      */
     def left: Option[Location[A]] = lefts match {
-      case l :: ls => Some(Location(l, ls, tree :: rights, parents))
+      case l :: ls => Some(Location(l, ls, tree :: rights, parents).withParent(parentLocation))
       case Nil     => None
     }
 
@@ -130,7 +148,7 @@ object Tree {
      * Move to the right sibling.
      */
     def right: Option[Location[A]] = rights match {
-      case r :: rs => Some(Location(r, tree :: lefts, rs, parents))
+      case r :: rs => Some(Location(r, tree :: lefts, rs, parents).withParent(parentLocation))
       case Nil     => None
     }
 
@@ -138,7 +156,7 @@ object Tree {
      * Move to the leftmost child.
      */
     def leftmostChild: Option[Location[A]] = tree.children match {
-      case t :: ts => Some(Location(t, Nil, ts, descend))
+      case t :: ts => Some(Location(t, Nil, ts, descend).withParent(Some(this)))
       case Nil     => None
     }
 
@@ -146,7 +164,7 @@ object Tree {
      * Move to the rightmost child.
      */
     def rightmostChild: Option[Location[A]] = tree.children.reverse match {
-      case t :: ts => Some(Location(t, ts, Nil, descend))
+      case t :: ts => Some(Location(t, ts, Nil, descend).withParent(Some(this)))
       case Nil     => None
     }
 
@@ -154,7 +172,7 @@ object Tree {
      * Move to the nth child.
      */
     def child(n: Int): Option[Location[A]] = tree.children.splitAt(n) match {
-      case (ls, t :: rs) => Some(Location(t, ls.reverse, rs, descend))
+      case (ls, t :: rs) => Some(Location(t, ls.reverse, rs, descend).withParent(Some(this)))
       case _             => None
     }
 
@@ -206,7 +224,14 @@ object Tree {
     /**
      * Path from here up to the root.
      */
-    def path: List[Location[A]] = this :: parent.toList.flatMap(_.path)
+    def path: List[Location[A]] = {
+      @tailrec def ancestors(location: Location[A], path: List[Location[A]]): List[Location[A]] =
+        location.parent match {
+          case Some(parent) => ancestors(parent, parent :: path)
+          case None         => path.reverse
+        }
+      ancestors(this, List(this))
+    }
 
     /**
      * Depth of location from the root.
@@ -216,7 +241,7 @@ object Tree {
     /**
      * Is this the root node?
      */
-    def isRoot: Boolean = parent.isEmpty
+    def isRoot: Boolean = parents.isEmpty
 
     /**
      * Is this a child node?
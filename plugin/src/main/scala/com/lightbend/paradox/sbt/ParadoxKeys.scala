@@ -21,7 +21,7 @@ import com.lightbend.paradox.ParadoxProcessor
 import com.lightbend.paradox.markdown.{Directive, Writer}
 import com.lightbend.paradox.template.PageTemplate
 
-import scala.concurrent.duration.Duration
+import scala.concurrent.duration.{Duration, FiniteDuration}
 import scala.util.matching.Regex
 
 trait ParadoxKeys {
@@ -31,6 +31,21 @@ trait ParadoxKeys {
   val paradoxNavigationExpandDepth =
     settingKey[Option[Int]]("Depth of auto-expanding navigation below the active page.")
   val paradoxNavigationIncludeHeaders = settingKey[Boolean]("Whether to include headers in the navigation.")
+  val paradoxParallelism              =
+    settingKey[Int]("Number of threads used to parse and render pages. Defaults to 1, processing pages in sequence.")
+  val paradoxIncremental              =
+    settingKey[Boolean]("Whether to keep the previous site and only re-render pages whose inputs have changed.")
+  val paradoxStreamOutput = settingKey[Boolean](
+    "Whether to write page content directly to the output files, rather than creating it in memory first. Templates must insert $page.content$ without formatting it."
+  )
+  val paradoxLowMemory = settingKey[Boolean](
+    "Whether to keep only the outline of each page in memory during a build, and parse each page again when rendering it."
+  )
+  val paradoxBuildReport =
+    settingKey[Boolean]("Whether to write a report of the time spent in each phase of the build, for each page.")
+  val paradoxCaptureLinks = settingKey[Boolean](
+    "Whether to record the links of each page while rendering the site, so that validating links doesn't parse and render the pages again."
+  )
   @deprecated("Enumerate the roots in `paradoxRoots`", since = "0.6.1")
   val paradoxExpectedNumberOfRoots = settingKey[Int]("How many ToC roots to expect.")
   val paradoxRoots                 = settingKey[List[String]]("Which ToC roots (pages without parent) to expect.")
@@ -43,6 +58,17 @@ trait ParadoxKeys {
   val paradoxParsingTimeout = settingKey[Duration](
     "Per-page pegdown parsing timeout. Parsing will fail if it takes longer than this (safe-guard for parser non-termination)."
   )
+  val paradoxParseCacheDirectory =
+    settingKey[Option[File]]("Directory to cache parsed markdown in, or None to parse all markdown on every build.")
+  val paradoxHighlighting = settingKey[Boolean](
+    "Whether to highlight code blocks while building the site, rather than with prettify in the browser."
+  )
+  val paradoxHighlightCacheDirectory =
+    settingKey[Option[File]]("Directory to cache highlighted code in, or None to highlight all code on every build.")
+  val paradoxFingerprintAssets = settingKey[Boolean](
+    "Whether to rename theme assets with a digest of their content, and rewrite references to them, so that they can be cached indefinitely."
+  )
+  val paradoxPrecompress = settingKey[Boolean]("Whether to add gzip compressed variants of text files to the site.")
   val paradoxProperties   = taskKey[Map[String, String]]("Property map passed to paradox.")
   val paradoxSourceSuffix = settingKey[String]("Source file suffix for markdown files [default = \".md\"].")
   val paradoxTargetSuffix = settingKey[String]("Target file suffix for HTML files [default = \".html\"].")
@@ -54,6 +80,9 @@ trait ParadoxKeys {
   val paradoxVersion             = settingKey[String]("Paradox plugin version.")
   val paradoxGroups              = settingKey[Map[String, Seq[String]]]("Paradox groups.")
   val paradoxBrowse              = taskKey[Unit]("Open the docs in the default browser")
+  val paradoxPreview             =
+    taskKey[Unit]("Serve the docs locally, rendering pages when requested and reloading them when sources change.")
+  val paradoxPreviewPort = settingKey[Int]("Port of the local server for previewing the docs.")
   val paradoxValidateInternalLinks   = taskKey[Unit]("Validate internal, non ref paradox links.")
   val paradoxValidateLinks           = taskKey[Unit]("Validate all non ref paradox links.")
   val paradoxValidateLinksRetryCount = taskKey[Int]("Number of retries for validate links task.")
@@ -62,6 +91,16 @@ trait ParadoxKeys {
   val paradoxValidationSiteBasePath = settingKey[Option[String]](
     "The base path that the documentation is deployed to, allows validating links on the docs site that are outside of the documentation root tree"
   )
+  val paradoxValidateLinksParallelism =
+    settingKey[Int]("Maximum number of external links to validate at once.")
+  val paradoxValidateLinksConnectionsPerHost = settingKey[Int](
+    "Maximum number of external links to the same host to validate at once."
+  )
+  val paradoxValidateLinksCacheFile = settingKey[Option[File]](
+    "File to remember valid external links in, or None to validate all external links every time."
+  )
+  val paradoxValidateLinksCacheTtl =
+    settingKey[FiniteDuration]("How long a valid external link is remembered without validating it again.")
   val paradoxSingle               = taskKey[File]("Build the single page HTML Paradox site")
   val paradoxSingleMarkdownToHtml = taskKey[Seq[(File, String)]]("Convert markdown files to single page HTML")
   val paradoxPdf                  = taskKey[File]("Build the paradox PDF")
@@ -72,4 +111,6 @@ trait ParadoxKeys {
     "XSL template to use for generating the table of contents, relative to the theme directory."
   )
   val paradoxPdfMarkdownToHtml = taskKey[Seq[(File, String)]]("Convert markdown files to single page HTML")
+  val paradoxAll               =
+    taskKey[Seq[File]]("Build the site, the single page site and the PDF site, parsing the markdown files once.")
 }
@@ -21,8 +21,8 @@ import sbt._
 import sbt.Keys._
 import sbt.internal.io.Source
 import sbt.Defaults.generate
-import com.lightbend.paradox.{ParadoxLogger, ParadoxProcessor}
-import com.lightbend.paradox.markdown.{GitHubResolver, SnipDirective, Writer}
+import com.lightbend.paradox.{OutputFiles, Parallel, ParadoxLogger, ParadoxProcessor, PreviewServer, SiteAssets}
+import com.lightbend.paradox.markdown.{GitHubResolver, HighlightCache, SnipDirective, Writer}
 import com.lightbend.paradox.template.PageTemplate
 import com.typesafe.sbt.web.Import.{Assets, WebKeys}
 import com.typesafe.sbt.web.SbtWeb
@@ -58,9 +58,21 @@ object ParadoxPlugin extends AutoPlugin {
     paradoxTargetSuffix             := Writer.DefaultTargetSuffix,
     paradoxIllegalLinkPath          := Writer.DefaultIllegalLinkPath,
     paradoxNavigationDepth          := 2,
+    paradoxParallelism              := 1,
+    paradoxIncremental              := false,
+    paradoxStreamOutput             := false,
+    paradoxLowMemory                := false,
+    paradoxBuildReport              := false,
+    paradoxCaptureLinks             := true,
+    paradoxPreviewPort              := 8000,
     paradoxNavigationExpandDepth    := None,
     paradoxNavigationIncludeHeaders := false,
     paradoxParsingTimeout           := 2.seconds,
+    paradoxParseCacheDirectory      := Some(target.value / "paradox" / "parse-cache"),
+    paradoxHighlighting             := false,
+    paradoxHighlightCacheDirectory  := Some(target.value / "paradox" / "highlight-cache"),
+    paradoxFingerprintAssets        := false,
+    paradoxPrecompress              := false,
     paradoxExpectedNumberOfRoots    := 1,
     paradoxRoots                    := List("index.html"),
     paradoxDirectives               := Def.uncached(Writer.defaultDirectives),
@@ -70,9 +82,13 @@ object ParadoxPlugin extends AutoPlugin {
     paradoxLeadingBreadcrumbs       := Nil,
     paradoxGroups                   := Map.empty,
     libraryDependencies ++= paradoxTheme.value.toSeq.map(_ % ParadoxTheme),
-    paradoxValidateLinksRetryCount := 0,
-    paradoxValidationIgnorePaths   := List("http://localhost.*".r),
-    paradoxValidationSiteBasePath  := None
+    paradoxValidateLinksRetryCount         := 0,
+    paradoxValidateLinksParallelism        := 16,
+    paradoxValidateLinksConnectionsPerHost := 2,
+    paradoxValidateLinksCacheFile          := Some(target.value / "paradox" / "link-validation-cache"),
+    paradoxValidateLinksCacheTtl           := 24.hours,
+    paradoxValidationIgnorePaths           := List("http://localhost.*".r),
+    paradoxValidationSiteBasePath          := None
   )
 
   def paradoxSettings(config: Configuration): Seq[Setting[?]] = paradoxGlobalSettings ++
@@ -87,16 +103,27 @@ object ParadoxPlugin extends AutoPlugin {
       implicit val conv: xsbti.FileConverter = fileConverter.value
       classLoader((ParadoxTheme / dependencyClasspath).value)
     },
-    paradoxProcessor := Def.uncached(
+    paradoxProcessor := Def.uncached {
+      val highlighting   = paradoxHighlighting.value
+      val highlightCache = paradoxHighlightCacheDirectory.value
       new ParadoxProcessor(
         reader = new Reader(maxParsingTime = paradoxParsingTimeout.value),
         writer = new Writer(
           linkRenderer = Writer.defaultLinks,
-          verbatimSerializers = Writer.defaultVerbatims,
+          verbatimSerializers =
+            if (highlighting) Writer.highlightingVerbatims(new HighlightCache(highlightCache))
+            else Writer.defaultVerbatims,
           serializerPlugins = Writer.defaultPlugins(paradoxDirectives.value)
-        )
+        ),
+        parallelism = paradoxParallelism.value,
+        // each configuration has its own cache, as trees that a build doesn't use are removed from it
+        parseCacheDirectory = paradoxParseCacheDirectory.value.map(_ / configTarget(configuration.value)),
+        streamOutput = paradoxStreamOutput.value,
+        buildReport = paradoxBuildReport.value,
+        captureLinks = paradoxCaptureLinks.value,
+        lowMemory = paradoxLowMemory.value
       )
-    ),
+    },
     sourceDirectory := {
       val config = configuration.value
       if (config.name != Compile.name)
@@ -239,7 +266,7 @@ object ParadoxPlugin extends AutoPlugin {
       .value,
     paradoxMarkdownToHtml := Def.uncached {
       val strms = streams.value
-      IO.delete((paradoxMarkdownToHtml / target).value)
+      if (!paradoxIncremental.value) OutputFiles.clean((paradoxMarkdownToHtml / target).value)
       implicit val conv: xsbti.FileConverter = fileConverter.value
       paradoxProcessor.value.process(
         Compat.mappingsToFiles((paradoxMarkdownToHtml / mappings).value),
@@ -255,7 +282,8 @@ object ParadoxPlugin extends AutoPlugin {
         paradoxNavigationIncludeHeaders.value,
         paradoxRoots.value,
         paradoxTemplate.value,
-        new SbtParadoxLogger(strms.log)
+        new SbtParadoxLogger(strms.log),
+        paradoxIncremental.value
       ) match {
         case Left(error) =>
           strms.log.error(error)
@@ -265,7 +293,7 @@ object ParadoxPlugin extends AutoPlugin {
     },
     paradoxSingleMarkdownToHtml := Def.uncached {
       val strms = streams.value
-      IO.delete((paradoxSingleMarkdownToHtml / target).value)
+      OutputFiles.clean((paradoxSingleMarkdownToHtml / target).value)
       implicit val conv: xsbti.FileConverter = fileConverter.value
       paradoxProcessor.value.processSinglePage(
         Compat.mappingsToFiles((paradoxSingleMarkdownToHtml / mappings).value),
@@ -290,7 +318,7 @@ object ParadoxPlugin extends AutoPlugin {
     },
     paradoxPdfMarkdownToHtml := Def.uncached {
       val strms = streams.value
-      IO.delete((paradoxPdfMarkdownToHtml / target).value)
+      OutputFiles.clean((paradoxPdfMarkdownToHtml / target).value)
       implicit val conv: xsbti.FileConverter = fileConverter.value
       paradoxProcessor.value.processSinglePage(
         Compat.mappingsToFiles((paradoxPdfMarkdownToHtml / mappings).value),
@@ -324,6 +352,36 @@ object ParadoxPlugin extends AutoPlugin {
       (paradox / sourceDirectories).value.map(d => new Source(d, AllPassFilter, NothingFilter))
     ),
     paradoxBrowse                           := openInBrowser(paradox.value / "index.html", streams.value.log),
+    paradoxPreview                          := Def.uncached {
+      val log      = streams.value.log
+      val template = paradoxTemplate.value
+      implicit val conv: xsbti.FileConverter = fileConverter.value
+      val site = paradoxProcessor.value.preview(
+        Compat.mappingsToFiles((paradoxMarkdownToHtml / mappings).value),
+        (paradox / unmanagedSourceDirectories).value,
+        paradoxLeadingBreadcrumbs.value,
+        paradoxSourceSuffix.value,
+        paradoxTargetSuffix.value,
+        paradoxIllegalLinkPath.value,
+        paradoxGroups.value,
+        paradoxProperties.value,
+        paradoxNavigationDepth.value,
+        paradoxNavigationExpandDepth.value,
+        paradoxNavigationIncludeHeaders.value,
+        template,
+        new SbtParadoxLogger(log)
+      )
+      val server = new PreviewServer(
+        site,
+        (paradox / sourceDirectories).value,
+        (paradox / sourceDirectories).value :+ template.directory,
+        paradoxPreviewPort.value,
+        new SbtParadoxLogger(log)
+      ).start()
+      log.info(s"Previewing the docs at ${server.url}, press ENTER to stop")
+      try scala.io.StdIn.readLine()
+      finally server.stop()
+    },
     paradoxValidateInternalLinks / mappings := {
       val paradoxMappings = (paradox / mappings).value
       paradoxValidationSiteBasePath.value match {
@@ -404,6 +462,75 @@ object ParadoxPlugin extends AutoPlugin {
           throw new AlreadyHandledException(new RuntimeException("wkhtmltopdf had non zero return code: " + other))
       }
     }
+  ) ++ siteSourceMappings(paradoxAll) ++ Seq(
+    paradoxAll := Def.uncached {
+      val strms                              = streams.value
+      val siteMappings                       = (paradoxAll / mappings).value
+      val themeAssets                        = (paradoxTemplate / mappings).value.map(_._2).toSet
+      val processor                          = paradoxProcessor.value
+      val syncSite                           = siteSync(paradox, "site").value
+      val syncSingle                         = siteSync(paradoxSingle, "site-single").value
+      val syncPdf                            = siteSync(paradoxPdf, "site-pdf").value
+      implicit val conv: xsbti.FileConverter = fileConverter.value
+      if (!paradoxIncremental.value) OutputFiles.clean((paradoxMarkdownToHtml / target).value)
+      OutputFiles.clean((paradoxSingleMarkdownToHtml / target).value)
+      OutputFiles.clean((paradoxPdfMarkdownToHtml / target).value)
+      val results = processor.processAll(
+        Compat.mappingsToFiles((paradoxMarkdownToHtml / mappings).value),
+        Some(
+          ParadoxProcessor.SiteOutput(
+            paradoxLeadingBreadcrumbs.value,
+            (paradoxMarkdownToHtml / target).value,
+            paradoxSourceSuffix.value,
+            paradoxTargetSuffix.value,
+            paradoxIllegalLinkPath.value,
+            paradoxGroups.value,
+            paradoxProperties.value,
+            paradoxNavigationDepth.value,
+            paradoxNavigationExpandDepth.value,
+            paradoxNavigationIncludeHeaders.value,
+            paradoxRoots.value,
+            paradoxTemplate.value,
+            paradoxIncremental.value
+          )
+        ),
+        Some(
+          ParadoxProcessor.SinglePageOutput(
+            (paradoxSingleMarkdownToHtml / target).value,
+            (paradoxSingle / paradoxSourceSuffix).value,
+            (paradoxSingle / paradoxTargetSuffix).value,
+            (paradoxSingle / paradoxIllegalLinkPath).value,
+            (paradoxSingle / paradoxGroups).value,
+            (paradoxSingle / paradoxProperties).value,
+            (paradoxSingle / paradoxNavigationDepth).value,
+            (paradoxSingle / paradoxNavigationExpandDepth).value,
+            (paradoxSingle / paradoxRoots).value,
+            (paradoxSingle / paradoxTemplate).value
+          )
+        ),
+        Some(
+          ParadoxProcessor.SinglePageOutput(
+            (paradoxPdfMarkdownToHtml / target).value,
+            (paradoxPdf / paradoxSourceSuffix).value,
+            (paradoxPdf / paradoxTargetSuffix).value,
+            (paradoxPdf / paradoxIllegalLinkPath).value,
+            (paradoxPdf / paradoxGroups).value,
+            (paradoxPdf / paradoxProperties).value,
+            (paradoxPdf / paradoxNavigationDepth).value,
+            (paradoxPdf / paradoxNavigationExpandDepth).value,
+            (paradoxPdf / paradoxRoots).value,
+            (paradoxPdf / paradoxTemplate).value
+          )
+        ),
+        new SbtParadoxLogger(strms.log)
+      )
+      val outputs = Seq(syncSite -> results.site, syncSingle -> results.single, syncPdf -> results.print)
+      outputs.collect { case (_, Some(Left(error))) => error }.foreach(strms.log.error(_))
+      if (outputs.exists(_._2.exists(_.isLeft))) throw new ParadoxException
+      outputs.collect { case (sync, Some(Right(files))) =>
+        sync(Compat.mappingsToFiles(siteMappings ++ toFileRefsMapping(files)), themeAssets, processor.parallel)
+      }
+    }
   ) ++ defineSiteMappings(paradox, paradox, paradoxMarkdownToHtml, "site") ++
     defineSiteMappings(paradoxSingle, paradoxSingle, paradoxSingleMarkdownToHtml, "site-single") ++
     defineSiteMappings(paradoxPdf, paradoxPdfSite, paradoxPdfMarkdownToHtml, "site-pdf")
@@ -425,10 +552,22 @@ object ParadoxPlugin extends AutoPlugin {
       siteTask: TaskKey[File],
       markdownToHtmlTask: TaskKey[Seq[(File, String)]],
       siteDir: String
-  ) = Seq(
+  ) = siteSourceMappings(scopeTask) ++ Seq(
+    scopeTask / mappings ++= toFileRefsMapping(markdownToHtmlTask.value)(using fileConverter.value),
+    scopeTask / target := baseDirectory.value / "target" / "paradox" / siteDir / configTarget(configuration.value),
+    siteTask := Def.uncached {
+      implicit val conv: xsbti.FileConverter = fileConverter.value
+      val siteMappings                       = (scopeTask / mappings).value
+      val themeAssets                        = (paradoxTemplate / mappings).value.map(_._2).toSet
+      val sync                               = siteSync(scopeTask, siteDir).value
+      sync(Compat.mappingsToFiles(siteMappings), themeAssets, paradoxProcessor.value.parallel)
+    }
+  )
+
+  // the site files other than the generated pages: the sources, the theme, and the webjar assets
+  private def siteSourceMappings(scopeTask: TaskKey[?]) = Seq(
     scopeTask / mappings := Defaults.relativeMappings(paradox / sources, paradox / sourceDirectories).value,
     scopeTask / mappings ++= (paradoxTemplate / mappings).value,
-    scopeTask / mappings ++= toFileRefsMapping(markdownToHtmlTask.value)(using fileConverter.value),
     scopeTask / mappings ++= {
       // include webjar assets, but not the assets from the theme
       val themeFilter =
@@ -436,18 +575,25 @@ object ParadoxPlugin extends AutoPlugin {
       (Assets / mappings).value filterNot { case (file, path) =>
         themeFilter.accept(toFile(file)(using fileConverter.value))
       }
-    },
-    scopeTask / target := baseDirectory.value / "target" / "paradox" / siteDir / configTarget(configuration.value),
-    siteTask           := Def.uncached(
-      SbtWeb.syncMappings(
-        streams.value.cacheStoreFactory.make("paradox-" + siteDir),
-        (scopeTask / mappings).value,
-        (scopeTask / target).value,
-        fileConverter.value
-      )
-    )
+    }
   )
 
+  // synchronises the site target of a scope with its site mappings, given the paths of the theme assets. Site files are
+  // hard links to the generated and asset files where the file system allows it, with fingerprinted and compressed
+  // files written to a separate directory first
+  private def siteSync(scopeTask: TaskKey[?], siteDir: String) = Def.setting {
+    val fingerprint  = (scopeTask / paradoxFingerprintAssets).value
+    val precompress  = (scopeTask / paradoxPrecompress).value
+    val siteTarget   = (scopeTask / target).value
+    val assetsTarget =
+      baseDirectory.value / "target" / "paradox" / "assets" / siteDir / configTarget(configuration.value)
+    (siteMappings: Seq[(File, String)], themeAssets: Set[String], parallel: Parallel) =>
+      OutputFiles.sync(
+        SiteAssets.process(siteMappings, themeAssets, fingerprint, precompress, assetsTarget, parallel),
+        siteTarget
+      )
+  }
+
   private def validateLinksTask(validateAbsolute: Boolean) = Def.task {
     implicit val conv: xsbti.FileConverter = fileConverter.value
     val strms                              = streams.value
@@ -455,17 +601,42 @@ object ParadoxPlugin extends AutoPlugin {
       case withSlash if withSlash.endsWith("/") => withSlash
       case withoutSlash                         => withoutSlash + "/"
     }
-    val errors = paradoxProcessor.value.validate(
-      Compat.mappingsToFiles((paradoxMarkdownToHtml / mappings).value).map { case (file, path) =>
-        file -> (basePathPrefix + path)
-      },
-      Compat.mappingsToFiles((paradoxValidateInternalLinks / mappings).value),
-      paradoxGroups.value,
-      paradoxProperties.value,
+    val processor = paradoxProcessor.value
+    val sources   = Compat.mappingsToFiles((paradoxMarkdownToHtml / mappings).value)
+    val siteFiles = Compat.mappingsToFiles((paradoxValidateInternalLinks / mappings).value)
+    val output    = (paradoxMarkdownToHtml / target).value
+    val logger    = new SbtParadoxLogger(strms.log)
+    // links captured while rendering the site are validated without parsing the pages again
+    val captured = processor.validateCaptured(
+      output,
+      basePathPrefix,
+      siteFiles,
       paradoxValidationIgnorePaths.value,
       paradoxValidateLinksRetryCount.value,
       validateAbsolute,
-      new SbtParadoxLogger(strms.log)
+      logger,
+      paradoxValidateLinksParallelism.value,
+      paradoxValidateLinksConnectionsPerHost.value,
+      paradoxValidateLinksCacheFile.value,
+      paradoxValidateLinksCacheTtl.value
+    )
+    val errors = captured.getOrElse(
+      processor.validate(
+        sources.map { case (file, path) => file -> (basePathPrefix + path) },
+        siteFiles,
+        paradoxGroups.value,
+        paradoxProperties.value,
+        paradoxValidationIgnorePaths.value,
+        paradoxValidateLinksRetryCount.value,
+        validateAbsolute,
+        logger,
+        paradoxValidateLinksParallelism.value,
+        paradoxValidateLinksConnectionsPerHost.value,
+        paradoxValidateLinksCacheFile.value,
+        paradoxValidateLinksCacheTtl.value,
+        paradoxSourceSuffix.value,
+        paradoxTargetSuffix.value
+      )
     )
     if (errors > 0) {
       strms.log.error(s"Paradox validation found $errors errors")
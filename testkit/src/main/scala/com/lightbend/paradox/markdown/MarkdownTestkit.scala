@@ -18,13 +18,16 @@ package com.lightbend.paradox.markdown
 
 import com.lightbend.paradox.tree.Tree.{Forest, Location}
 import java.io.{File, PrintWriter}
+import java.nio.charset.StandardCharsets
 
 import com.lightbend.paradox.template.PageTemplate
 import java.nio.file._
 
 import com.lightbend.paradox.markdown.{Path => ParadoxPath}
 
-import com.lightbend.paradox.{NullLogger, ParadoxProcessor, ThrowingErrorContext}
+import com.lightbend.paradox.{NullLogger, OutputFiles, ParadoxLogger, ParadoxProcessor, ThrowingErrorContext}
+
+import scala.collection.mutable.ListBuffer
 
 abstract class MarkdownTestkit {
 
@@ -90,6 +93,118 @@ abstract class MarkdownTestkit {
     }
   }
 
+  /**
+   * Source, template and output directories for processing a site on disk, with the default settings of the tests.
+   */
+  class SiteFixture {
+    private val directories = ListBuffer.empty[File]
+
+    val sourceDir: File   = temporaryDirectory("source")
+    val templateDir: File = temporaryDirectory("templates")
+    val outputDir: File   = temporaryDirectory("output")
+
+    val properties: Map[String, String] = Map("project.name" -> "test", "project.version" -> "1.0")
+
+    /**
+     * Another directory, which is deleted with the site.
+     */
+    def temporaryDirectory(prefix: String = "output"): File = {
+      val directory = Files.createTempDirectory(prefix).toFile
+      directories += directory
+      directory
+    }
+
+    def source(path: String, text: String): File = writeFile(new File(sourceDir, path), text)
+
+    def template(name: String, text: String): File = writeFile(new File(templateDir, name + ".st"), text)
+
+    def mappings(paths: String*): Seq[(File, String)] = paths.map(path => new File(sourceDir, path) -> path)
+
+    def pageTemplate: PageTemplate = new PageTemplate(templateDir)
+
+    def process(
+        processor: ParadoxProcessor,
+        mappings: Seq[(File, String)],
+        logger: ParadoxLogger = NullLogger,
+        expectedRoots: List[String] = List("index.html"),
+        incremental: Boolean = false,
+        output: File = outputDir
+    ): Either[String, Seq[(File, String)]] =
+      processor.process(
+        mappings,
+        Nil,
+        output,
+        Writer.DefaultSourceSuffix,
+        Writer.DefaultTargetSuffix,
+        Writer.DefaultIllegalLinkPath,
+        Map.empty,
+        properties,
+        2,
+        None,
+        false,
+        expectedRoots,
+        pageTemplate,
+        logger,
+        incremental
+      )
+
+    def processSinglePage(
+        processor: ParadoxProcessor,
+        mappings: Seq[(File, String)],
+        logger: ParadoxLogger = NullLogger,
+        print: Boolean = false,
+        output: File = outputDir
+    ): Either[String, Seq[(File, String)]] =
+      processor.processSinglePage(
+        mappings,
+        output,
+        Writer.DefaultSourceSuffix,
+        Writer.DefaultTargetSuffix,
+        Writer.DefaultIllegalLinkPath,
+        Map.empty,
+        properties,
+        2,
+        None,
+        List("index.html"),
+        pageTemplate,
+        print,
+        logger
+      )
+
+    /**
+     * Contents of the files written to an output directory, by name.
+     */
+    def outputs(output: File = outputDir): Map[String, String] =
+      output.listFiles.toList.filter(_.isFile).filterNot(_.getName == OutputFiles.Filename).map { file =>
+        file.getName -> readFile(file)
+      }.toMap
+
+    def delete(): Unit = directories.foreach(deleteRecursively)
+  }
+
+  /**
+   * Run a test with a site fixture, deleting its directories afterwards.
+   */
+  def withSite[S <: SiteFixture, T](site: => S)(test: S => T): T = {
+    val fixture = site
+    try test(fixture)
+    finally fixture.delete()
+  }
+
+  def writeFile(file: File, content: String): File = {
+    file.getParentFile.mkdirs()
+    Files.write(file.toPath, content.getBytes(StandardCharsets.UTF_8))
+    file
+  }
+
+  def readFile(file: File): String = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+
+  def deleteRecursively(file: File): Unit = {
+    if (file.isDirectory && !Files.isSymbolicLink(file.toPath))
+      Option(file.listFiles).toSeq.flatten.foreach(deleteRecursively)
+    file.delete()
+  }
+
   def writerContextWithProperties(properties: (String, String)*): Location[Page] => Writer.Context = { location =>
     writerContext(location).copy(properties = globalProperties ++ properties.toMap)
   }
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.{File, StringReader}
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import org.jsoup.Jsoup
+
+import com.lightbend.paradox.{AnchorIndex, ExternalLinkValidator, NullLogger, Parallel, ParadoxProcessor}
+
+class AnchorIndexSpec extends MarkdownBaseSpec {
+
+  def anchors(html: String): Set[String] = AnchorIndex.anchors(new StringReader(html))
+
+  "Anchor index" should "find the same anchors as parsing the document" in {
+    val html = markdown("""
+      |# Title
+      |
+      |## Section
+      |
+      |Text with an <a name="named">anchor</a> and a <span id='single'>span</span>.
+      |
+      |### Another section
+      |
+      |```scala
+      |val x = "<a id=\"not-an-anchor\">"
+      |```
+      |""")
+    anchors(html) shouldEqual ExternalLinkValidator.anchors(Jsoup.parse(html))
+    anchors(html) should contain allOf ("title", "section", "named", "single", "another-section")
+  }
+
+  it should "handle attribute syntax" in {
+    anchors("""<div id=unquoted><p ID="upper" class=x/><input disabled id = 'spaced'><br/></div>""") shouldEqual
+      Set("unquoted", "upper", "spaced")
+    anchors("""<p id="a&amp;b">""") shouldEqual Set("a&b")
+  }
+
+  it should "only use names of links" in {
+    anchors("""<a name="link"></a><input name="input"><A NAME="upper">""") shouldEqual Set("link", "upper")
+  }
+
+  it should "ignore comments and text contents" in {
+    anchors("""<!-- <p id="comment"> --><!----><p id="after">""") shouldEqual Set("after")
+    anchors("""<script>var s = '<p id="script">';</script><p id="after">""") shouldEqual Set("after")
+    anchors("""<!DOCTYPE html><?xml version="1.0"?></p id="end"><p id="after">""") shouldEqual Set("after")
+    anchors("""a < b <3 <p id="after">""") shouldEqual Set("after")
+  }
+
+  it should "index pages by path" in {
+    val dir   = Files.createTempDirectory("anchors").toFile
+    val pages = (1 to 5).map { n =>
+      val file = new File(dir, s"page$n.html")
+      Files.write(file.toPath, s"""<h1 id="page-$n">Page $n</h1>""".getBytes(StandardCharsets.UTF_8))
+      s"/page$n.html" -> file
+    }
+    AnchorIndex(pages, new Parallel(4)) shouldEqual (1 to 5).map(n => s"/page$n.html" -> Set(s"page-$n")).toMap
+  }
+
+  it should "validate fragments of internal links" in {
+    val dir    = Files.createTempDirectory("validate").toFile
+    val source = new File(dir, "index.md")
+    val target = new File(dir, "other.html")
+    Files.write(source.toPath, "# Index\n\n[a](other.html#a) [b](other.html#b)\n".getBytes(StandardCharsets.UTF_8))
+    Files.write(target.toPath, """<h1 id="a">Other</h1>""".getBytes(StandardCharsets.UTF_8))
+    val errors = new ParadoxProcessor().validate(
+      Seq(source -> "index.md"),
+      Seq(target -> "other.html"),
+      Map.empty,
+      Map.empty,
+      Nil,
+      0,
+      false,
+      NullLogger
+    )
+    errors shouldEqual 1
+  }
+
+  it should "use the headers and anchors of pages without reading their HTML" in {
+    val dir    = Files.createTempDirectory("validate").toFile
+    val index  = new File(dir, "index.md")
+    val other  = new File(dir, "other.md")
+    val unread = new File(dir, "missing.html")
+    Files.write(
+      index.toPath,
+      "# Index\n\n[a](other.html#section) [b](other.html#other)\n".getBytes(StandardCharsets.UTF_8)
+    )
+    Files.write(other.toPath, "# Other\n\n## Section\n".getBytes(StandardCharsets.UTF_8))
+    val errors = new ParadoxProcessor().validate(
+      Seq(index -> "index.md", other -> "other.md"),
+      Seq(unread -> "other.html"),
+      Map.empty,
+      Map.empty,
+      Nil,
+      0,
+      false,
+      NullLogger
+    )
+    errors shouldEqual 0
+  }
+
+  it should "find pages by their target paths with other suffixes and out paths" in {
+    val dir     = Files.createTempDirectory("validate").toFile
+    val index   = new File(dir, "index.markdown")
+    val other   = new File(dir, "other.markdown")
+    val renamed = new File(dir, "renamed.markdown")
+    val unread  = new File(dir, "missing.html")
+    Files.write(
+      index.toPath,
+      "# Index\n\n[a](other.htm#section) [b](page.html#part)\n".getBytes(StandardCharsets.UTF_8)
+    )
+    Files.write(other.toPath, "# Other\n\n## Section\n".getBytes(StandardCharsets.UTF_8))
+    Files.write(renamed.toPath, "---\nout: page.html\n---\n# Renamed\n\n## Part\n".getBytes(StandardCharsets.UTF_8))
+    val errors = new ParadoxProcessor().validate(
+      Seq(index -> "index.markdown", other -> "other.markdown", renamed -> "renamed.markdown"),
+      Seq(unread -> "other.htm", unread -> "page.html"),
+      Map.empty,
+      Map.empty,
+      Nil,
+      0,
+      false,
+      NullLogger,
+      sourceSuffix = ".markdown",
+      targetSuffix = ".htm"
+    )
+    errors shouldEqual 0
+  }
+
+  "Page anchors" should "include headers, the title and anchors, with duplicates" in {
+    val page = pages(
+      "page.md" -> """
+        |# Title
+        |## A
+        |### B
+        |## A
+        |""".stripMargin
+    ).head.location.tree.label
+    page.anchorPaths shouldEqual List("#a", "#b", "#a", "#title")
+    page.hasAnchor("#b") shouldBe true
+    page.hasAnchor("#c") shouldBe false
+  }
+
+}
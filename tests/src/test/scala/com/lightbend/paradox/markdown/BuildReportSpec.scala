@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+
+import com.lightbend.paradox.{BuildReport, ParadoxProcessor}
+
+class BuildReportSpec extends MarkdownBaseSpec {
+
+  "Build report" should "not include nested phases in the time of a phase" in {
+    val report = new BuildReport
+    report.phase("outer") {
+      Thread.sleep(20)
+      report.phase("inner")(Thread.sleep(50))
+    }
+    val phases = report.phases
+    phases("outer").count shouldEqual 1
+    phases("inner").nanos should be >= 50000000L
+    phases("outer").nanos should be < phases("inner").nanos
+  }
+
+  it should "record phases and directives for each page" in {
+    val report = new BuildReport
+    report.page(new File("a.md")) {
+      report.phase("render")(report.directive("ref")(()))
+      report.directive("ref")(())
+    }
+    report.phase("render")(())
+    report.pages.keySet shouldEqual Set("a.md")
+    report.pages("a.md").phases("render").count shouldEqual 1
+    report.pages("a.md").directives("ref").count shouldEqual 2
+    report.phases("render").count shouldEqual 2
+  }
+
+  it should "not record anything when disabled" in {
+    BuildReport.Disabled.phase("render")(42) shouldEqual 42
+    BuildReport.Disabled.phases shouldBe empty
+  }
+
+  it should "be written as JSON" in {
+    val report = new BuildReport
+    report.page(new File("a \"quoted\".md"))(report.phase("parse")(()))
+    val json = report.toJson(1000)
+    json should include("\"wallTimeNanos\" : 1000")
+    json should include("{ \"phase\" : \"parse\", \"count\" : 1")
+    json should include("\"page\" : \"a \\\"quoted\\\".md\"")
+  }
+
+  "Processing with a build report" should "write the report for each page" in withSite(new SiteFixture) { site =>
+    val index =
+      site.source("index.md", "# Index\n\n@@@ index\n\n* [Other](other.md)\n\n@@@\n\nVersion $project.version$\n")
+    val other = site.source("other.md", "# Other\n\n@ref[Index](index.md)\n")
+    site.template("page", "$page.navigation$$page.content$")
+    val result = site.process(new ParadoxProcessor(buildReport = true), site.mappings("index.md", "other.md"))
+    result.isRight shouldBe true
+    val json = readFile(new File(site.outputDir, BuildReport.Filename))
+    for (phase <- Seq("front-matter", "parse", "includes", "index", "serialize", "navigation", "template"))
+      json should include(s"""{ "phase" : "$phase"""")
+    json should include(s""""page" : "${index.getPath}"""")
+    json should include(s""""page" : "${other.getPath}"""")
+    json should include("""{ "directive" : "ref"""")
+    result.toOption.get.map(_._2) should not contain BuildReport.Filename
+  }
+
+  it should "remove the report of a previous build without a build report" in withSite(new SiteFixture) { site =>
+    site.source("index.md", "# Index\n")
+    site.template("page", "$page.content$")
+    site.process(new ParadoxProcessor(buildReport = true), site.mappings("index.md")).isRight shouldBe true
+    new File(site.outputDir, BuildReport.Filename).exists shouldBe true
+    site.process(new ParadoxProcessor, site.mappings("index.md")).isRight shouldBe true
+    new File(site.outputDir, BuildReport.Filename).exists shouldBe false
+  }
+
+}
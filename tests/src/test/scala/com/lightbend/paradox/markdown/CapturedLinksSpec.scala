@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+
+import com.lightbend.paradox.{NullLogger, ParadoxProcessor}
+
+class CapturedLinksSpec extends MarkdownBaseSpec {
+
+  class Site extends SiteFixture {
+    val index = source(
+      "index.md",
+      "# Index\n\n@@@ index\n\n* [Other](other.md)\n\n@@@\n\n[valid](other.html#other) [missing](missing.html)\n"
+    )
+    source("other.md", "# Other\n\n@ref[Index](index.md) [anchor](index.html#nope) [external](https://example.com/)\n")
+    template("page", "$page.navigation$$page.prev.html$$page.content$")
+    val pages = mappings("index.md", "other.md")
+
+    def build(processor: ParadoxProcessor, incremental: Boolean = false): Seq[(File, String)] =
+      process(processor, pages, incremental = incremental).toOption.get
+
+    def captured: Map[String, LinkCapturer.PageLinks] =
+      LinkCapturer.read(new File(outputDir, LinkCapturer.Filename)).get
+  }
+
+  "Processing with link capture" should "record the links in the content of each page" in withSite(new Site) { site =>
+    site.build(new ParadoxProcessor(captureLinks = true))
+    val captured = site.captured
+    captured.keySet shouldEqual Set("index.html", "other.html")
+    captured("index.html").links.map(_.href) shouldEqual Seq("other.html#other", "missing.html")
+    captured("other.html").links.map(_.href) shouldEqual Seq("index.html#nope", "https://example.com/")
+    captured("other.html").links.map(_.index) shouldEqual Seq(31, 57)
+    captured("other.html").anchors should contain("#other")
+  }
+
+  it should "record the included file as the source of links in included markdown" in withSite(new Site) { site =>
+    val fragment = site.source("fragment.md", "Some [included](included.html) link\n")
+    writeFile(site.index, "# Index\n\n@@@ index\n\n* [Other](other.md)\n\n@@@\n\n@@include(fragment.md)\n")
+    site.build(new ParadoxProcessor(captureLinks = true))
+    site.captured("index.html").links.map(link => (link.href, link.file)) shouldEqual Seq("included.html" -> fragment)
+  }
+
+  it should "not record links without link capture" in withSite(new Site) { site =>
+    site.build(new ParadoxProcessor)
+    new File(site.outputDir, LinkCapturer.Filename).exists shouldBe false
+  }
+
+  it should "keep the links of pages that are up to date in incremental builds" in withSite(new Site) { site =>
+    site.build(new ParadoxProcessor(captureLinks = true), incremental = true)
+    val before = site.captured
+    writeFile(site.index, "# Index\n\n@@@ index\n\n* [Other](other.md)\n\n@@@\n\n[changed](changed.html)\n")
+    site.build(new ParadoxProcessor(captureLinks = true), incremental = true)
+    site.captured("index.html").links.map(_.href) shouldEqual Seq("changed.html")
+    site.captured("other.html") shouldEqual before("other.html")
+  }
+
+  "Validating captured links" should "report the same errors as parsing the pages again" in withSite(new Site) { site =>
+    val processor = new ParadoxProcessor(captureLinks = true)
+    val pages     = site.build(processor)
+    processor.validateCaptured(site.outputDir, "", pages, Nil, 0, false, NullLogger) shouldEqual Some(2)
+    processor.validate(site.pages, pages, Map.empty, Map.empty, Nil, 0, false, NullLogger) shouldEqual 2
+  }
+
+  it should "validate links at the site base path" in withSite(new Site) { site =>
+    val processor = new ParadoxProcessor(captureLinks = true)
+    val pages     = site.build(processor).map { case (file, path) => file -> ("/docs/" + path) }
+    processor.validateCaptured(site.outputDir, "/docs/", pages, Nil, 0, false, NullLogger) shouldEqual Some(2)
+    val ignored   = List("/docs/missing.html".r)
+    processor.validateCaptured(site.outputDir, "/docs/", pages, ignored, 0, false, NullLogger) shouldEqual Some(1)
+  }
+
+  it should "not validate anything when no links were captured" in withSite(new Site) { site =>
+    val processor = new ParadoxProcessor
+    val pages     = site.build(processor)
+    processor.validateCaptured(site.outputDir, "", pages, Nil, 0, false, NullLogger) shouldBe None
+  }
+
+}
@@ -622,4 +622,23 @@ class DependencyDirectiveSpec extends MarkdownBaseSpec {
       |</dl>""")
   }
 
+  it should "substitute properties with other delimiters" in {
+    markdown("""
+      |@@dependency [sbt] {
+      |  start-delimiter="${"
+      |  stop-delimiter="}"
+      |  group=com.typesafe
+      |  artifact=config
+      |  version="${project.version}"
+      |}""") shouldEqual html("""
+      |<dl class="dependency">
+      |<dt>sbt</dt>
+      |<dd>
+      |<pre class="prettyprint">
+      |<code class="language-scala">
+      |libraryDependencies += "com.typesafe" % "config" % "10.0.10"</code></pre>
+      |</dd>
+      |</dl>""")
+  }
+
 }
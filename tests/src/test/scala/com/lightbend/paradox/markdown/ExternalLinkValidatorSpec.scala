@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import com.sun.net.httpserver.{HttpExchange, HttpServer}
+import java.io.File
+import java.net.{InetSocketAddress, URI}
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.concurrent.{ConcurrentHashMap, Executors}
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.lightbend.paradox.{ExternalLinkValidator, NullLogger, ParadoxProcessor}
+import com.lightbend.paradox.ExternalLinkValidator._
+import scala.concurrent.duration._
+
+class ExternalLinkValidatorSpec extends MarkdownBaseSpec {
+
+  /**
+   * Local HTTP server that responds to `/status/<code>`, `/slow/<n>`, `/flaky/<failures>/<n>` and `/anchors`, counting
+   * requests by path and the maximum number of requests handled at once. Requests are numbered in the order they
+   * arrive, with a sequence that may be shared between servers.
+   */
+  class StubServer(sequence: AtomicInteger = new AtomicInteger) {
+    val requests       = new ConcurrentHashMap[String, AtomicInteger]
+    val arrivals       = new ConcurrentHashMap[String, Integer]
+    val active         = new AtomicInteger
+    val maxActive      = new AtomicInteger
+    private val server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+    server.setExecutor(Executors.newCachedThreadPool())
+    server.createContext("/", (exchange: HttpExchange) => handle(exchange))
+    server.start()
+
+    def url(path: String): String = s"http://127.0.0.1:${server.getAddress.getPort}$path"
+
+    def count(path: String): Int = Option(requests.get(path)).fold(0)(_.get)
+
+    def stop(): Unit = server.stop(0)
+
+    private def handle(exchange: HttpExchange): Unit = {
+      val path = exchange.getRequestURI.getPath
+      val n    = requests.computeIfAbsent(path, _ => new AtomicInteger).incrementAndGet()
+      arrivals.putIfAbsent(path, sequence.getAndIncrement())
+      maxActive.accumulateAndGet(active.incrementAndGet(), math.max)
+      // no longer active once the response is sent, as the client may then send another request
+      val (status, body) =
+        try path.split('/').toList match {
+          case "" :: "status" :: code :: Nil => (code.toInt, "")
+          case "" :: "slow" :: _ :: Nil      =>
+            Thread.sleep(50)
+            (200, "")
+          case "" :: "flaky" :: failures :: _ :: Nil => (if (n > failures.toInt) 200 else 503, "")
+          case "" :: "anchors" :: Nil                =>
+            (200, """<html><body><h1 id="header">Header</h1><a name="named"></a></body></html>""")
+          case _ => (404, "")
+        }
+        finally active.decrementAndGet()
+      respond(exchange, status, body)
+    }
+
+    private def respond(exchange: HttpExchange, status: Int, body: String): Unit = {
+      val bytes = body.getBytes(StandardCharsets.UTF_8)
+      exchange.getResponseHeaders.add("Content-Type", "text/html")
+      exchange.sendResponseHeaders(status, if (bytes.isEmpty) -1 else bytes.length.toLong)
+      if (bytes.nonEmpty) exchange.getResponseBody.write(bytes)
+      exchange.close()
+    }
+  }
+
+  def withServer(test: StubServer => Any): Unit = {
+    val server = new StubServer
+    try test(server)
+    finally server.stop()
+  }
+
+  def link(url: String, fragments: String*): CapturedLink =
+    CapturedLink(
+      URI.create(url),
+      if (fragments.isEmpty) List(CapturedLinkFragment(None, Nil))
+      else fragments.toList.map(f => CapturedLinkFragment(Some(f), Nil))
+    )
+
+  def validator(
+      retryCount: Int = 0,
+      parallelism: Int = 4,
+      connectionsPerHost: Int = 4,
+      cache: Option[Cache] = None
+  ): ExternalLinkValidator =
+    new ExternalLinkValidator(retryCount, parallelism, connectionsPerHost, cache, NullLogger, backoff = 1.milli)
+
+  "External link validation" should "report the status of links" in withServer { server =>
+    val results = validator().check(Seq(link(server.url("/status/200")), link(server.url("/status/404"))))
+    results.head shouldEqual Valid(None)
+    results(1) should matchPattern { case Invalid(404, _) => }
+  }
+
+  it should "limit the number of connections to a host" in withServer { server =>
+    val links   = (1 to 20).map(n => link(server.url(s"/slow/$n")))
+    val results = validator(parallelism = 8, connectionsPerHost = 2).check(links)
+    results.foreach(_ shouldEqual Valid(None))
+    server.maxActive.get should be <= 2
+  }
+
+  it should "limit the total number of connections" in withServer { server =>
+    val links   = (1 to 20).map(n => link(server.url(s"/slow/$n")))
+    val results = validator(parallelism = 3, connectionsPerHost = 10).check(links)
+    results.foreach(_ shouldEqual Valid(None))
+    server.maxActive.get should be <= 3
+  }
+
+  it should "not hold up other hosts while waiting for a busy host" in {
+    val sequence = new AtomicInteger
+    val busy     = new StubServer(sequence)
+    val other    = new StubServer(sequence)
+    try {
+      val links = (1 to 10).map(n => link(busy.url(s"/slow/$n"))) :+ link(other.url("/slow/other"))
+      validator(parallelism = 2, connectionsPerHost = 1).check(links).foreach(_ shouldEqual Valid(None))
+      busy.maxActive.get shouldEqual 1
+      other.arrivals.get("/slow/other").intValue should be < 2
+    } finally {
+      busy.stop()
+      other.stop()
+    }
+  }
+
+  it should "retry retryable statuses" in withServer { server =>
+    validator(retryCount = 2).check(link(server.url("/flaky/2/a"))) shouldEqual Valid(None)
+    server.count("/flaky/2/a") shouldEqual 3
+    validator(retryCount = 1).check(link(server.url("/flaky/2/b"))) should matchPattern { case Invalid(503, _) => }
+    server.count("/flaky/2/b") shouldEqual 2
+    validator(retryCount = 3).check(link(server.url("/status/404")))
+    server.count("/status/404") shouldEqual 1
+  }
+
+  it should "collect anchors for links with fragments" in withServer { server =>
+    validator().check(link(server.url("/anchors"), "header")) shouldEqual Valid(Some(Set("header", "named")))
+  }
+
+  it should "only request links again when the cached result has expired" in withServer { server =>
+    val file  = new File(Files.createTempDirectory("link-cache").toFile, "cache")
+    var now   = 0L
+    def cache = new Cache(file, 1.hour, () => now)
+
+    val first = cache
+    validator(cache = Some(first)).check(Seq(link(server.url("/anchors")), link(server.url("/status/404"))))
+    first.save()
+
+    now = 30.minutes.toMillis
+    val second = validator(cache = Some(cache))
+    second.check(link(server.url("/anchors"))) shouldEqual Valid(None)
+    second.check(link(server.url("/status/404"))) should matchPattern { case Invalid(404, _) => }
+    server.count("/anchors") shouldEqual 1
+    server.count("/status/404") shouldEqual 2
+
+    // anchors weren't collected the first time, so the page is requested again
+    second.check(link(server.url("/anchors"), "header")) shouldEqual Valid(Some(Set("header", "named")))
+    server.count("/anchors") shouldEqual 2
+
+    now = 2.hours.toMillis
+    validator(cache = Some(cache)).check(link(server.url("/anchors")))
+    server.count("/anchors") shouldEqual 3
+  }
+
+  it should "report errors on the pages that link to them" in withServer { server =>
+    val source = Files.createTempDirectory("source").toFile
+    val page   = new File(source, "index.md")
+    Files.write(
+      page.toPath,
+      Seq(
+        "# Index",
+        s"[valid](${server.url("/anchors")}#header)",
+        s"[missing anchor](${server.url("/anchors")}#missing)",
+        s"[missing](${server.url("/status/404")})",
+        s"[redirect](${server.url("/status/301")})"
+      ).mkString("", "\n\n", "\n").getBytes(StandardCharsets.UTF_8)
+    )
+    val errors = new ParadoxProcessor().validate(
+      Seq(page -> "index.md"),
+      Nil,
+      Map.empty,
+      Map.empty,
+      Nil,
+      0,
+      true,
+      NullLogger,
+      linkParallelism = 4,
+      connectionsPerHost = 2
+    )
+    errors shouldEqual 3
+  }
+
+}
@@ -102,6 +102,48 @@ class FrontinSpec extends MarkdownBaseSpec {
     f4.delete()
   }
 
+  def sourceFile(content: String): SourceFile = {
+    val file = File.createTempFile("source", ".md")
+    java.nio.file.Files.write(file.toPath, content.getBytes("UTF-8"))
+    try SourceFile.read(file)
+    finally file.delete()
+  }
+
+  "SourceFile.read()" should "split the text with normalized line endings, without the final line ending" in {
+    val crlf = sourceFile("---\r\nout: index.html\r\n---\r\nfirst\r\rsecond\r\n")
+    crlf.header shouldEqual Map("out" -> "index.html")
+    crlf.body shouldEqual "first\n\nsecond"
+    crlf.text.toString shouldEqual "---\nout: index.html\n---\nfirst\n\nsecond"
+
+    val unclosed = sourceFile("---\nout: index.html\nfirst\n")
+    unclosed.header shouldEqual Map("out" -> "index.html", "first" -> "")
+    unclosed.body shouldEqual ""
+
+    val plain = sourceFile("héllo 𝄞\n\n")
+    plain.header shouldEqual Map.empty[String, String]
+    plain.body shouldEqual "héllo 𝄞\n"
+    Frontin("héllo 𝄞\n") shouldEqual plain.frontin
+  }
+
+  it should "hand the parser the body with two trailing newlines" in {
+    val whole = sourceFile("first\nsecond\n")
+    whole.parserInput.mkString shouldEqual "first\nsecond\n\n"
+    // a body that fills the buffer isn't copied
+    whole.parserInput shouldBe theSameInstanceAs(whole.parserInput)
+    sourceFile("first\r\nsecond").parserInput.mkString shouldEqual "first\nsecond\n\n"
+    sourceFile("---\nout: index.html\n---\nbody\n").parserInput.mkString shouldEqual "body\n\n"
+  }
+
+  it should "locate lines by index for reporting errors" in {
+    val source = sourceFile("first\n\tsecond\n\n")
+    source.lineAt(0) shouldEqual Some(SourceFile.Line(1, 0, "first"))
+    source.lineAt(5) shouldEqual Some(SourceFile.Line(1, 0, "first"))
+    source.lineAt(8) shouldEqual Some(SourceFile.Line(2, 6, "\tsecond"))
+    source.lineAt(14) shouldEqual Some(SourceFile.Line(3, 14, ""))
+    source.lineAt(15) shouldEqual None
+    source.lineCount shouldEqual 3
+  }
+
   def writeInFile(file: java.io.File, content: String) = {
     val pw = new PrintWriter(file)
     pw.write(prepare(content))
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.nio.file.Files
+
+import org.pegdown.Printer
+import org.pegdown.ast.VerbatimNode
+
+class HighlighterSpec extends MarkdownBaseSpec {
+
+  def serialize(text: String, language: String, highlights: HighlightCache = new HighlightCache): String = {
+    val printer = new Printer
+    new HighlightingVerbatimSerializer(highlights).serialize(new VerbatimNode(text, language), printer)
+    printer.getString
+  }
+
+  "Highlighting" should "mark up code with the classes of prettify" in {
+    val code = """// say "hi"
+                 |@tailrec def greet(name: String = "<you>"): Unit = println('a' + 42)""".stripMargin
+    Highlighter("scala", code) shouldEqual Some(
+      """<span class="com">// say &quot;hi&quot;</span>
+        |<span class="lit">@tailrec</span> <span class="kwd">def</span> greet""".stripMargin +
+        """<span class="pun">(</span>name<span class="pun">:</span> <span class="typ">String</span> """ +
+        """<span class="pun">=</span> <span class="str">&quot;&lt;you&gt;&quot;</span><span class="pun">):</span> """ +
+        """<span class="typ">Unit</span> """ +
+        """<span class="pun">=</span> println<span class="pun">(</span><span class="str">&#39;a&#39;</span> """ +
+        """<span class="pun">+</span> <span class="lit">42</span><span class="pun">)</span>"""
+    )
+  }
+
+  it should "handle strings and comments that span lines" in {
+    Highlighter("java", "/* a\n * b */ String s = \"\"\"\n  text\n  \"\"\";") shouldEqual Some(
+      "<span class=\"com\">/* a\n * b */</span> <span class=\"typ\">String</span> s <span class=\"pun\">=</span> " +
+      "<span class=\"str\">&quot;&quot;&quot;\n  text\n  &quot;&quot;&quot;</span><span class=\"pun\">;</span>"
+    )
+    Highlighter("scala", "'sym") shouldEqual Some("<span class=\"pun\">&#39;</span>sym")
+    Highlighter("sql", "SELECT * FROM t -- all") shouldEqual Some(
+      "<span class=\"kwd\">SELECT</span> <span class=\"pun\">*</span> <span class=\"kwd\">FROM</span> t " +
+      "<span class=\"com\">-- all</span>"
+    )
+  }
+
+  it should "mark up tags and attributes" in {
+    Highlighter("xml", """<!-- c --><dep id="x" flag>a &amp; b</dep>""") shouldEqual Some(
+      """<span class="com">&lt;!-- c --&gt;</span><span class="tag">&lt;dep</span> <span class="atn">id</span>""" +
+      """<span class="pun">=</span><span class="atv">&quot;x&quot;</span> <span class="atn">flag</span>""" +
+      """<span class="tag">&gt;</span>a &amp;amp; b<span class="tag">&lt;/dep&gt;</span>"""
+    )
+  }
+
+  it should "leave other languages for prettify" in {
+    Highlighter("text", "a b") shouldBe None
+    Highlighter("markdown", "# a") shouldBe None
+    serialize("a < b", "text") shouldEqual "<pre class=\"prettyprint\"><code class=\"nocode\">a &lt; b</code></pre>"
+    serialize("\nval a", "scala") shouldEqual
+      "<pre class=\"prettyprint prettyprinted\"><code class=\"language-scala\">" +
+      "<br/><span class=\"kwd\">val</span> a</code></pre>"
+  }
+
+  it should "cache highlighted code across builds" in {
+    val dir = Files.createTempDirectory("highlight").toFile
+    new HighlightCache(Some(dir))("scala", "val a = 1") shouldBe Highlighter("scala", "val a = 1")
+    val Array(file) = dir.listFiles
+    Files.write(file.toPath, "cached".getBytes)
+    new HighlightCache(Some(dir))("scala", "val a = 1") shouldBe Some("cached")
+    new HighlightCache(Some(dir))("text", "val a = 1") shouldBe None
+    dir.listFiles.map(_.getName).toSeq shouldEqual Seq(file.getName)
+  }
+
+}
@@ -16,7 +16,14 @@
 
 package com.lightbend.paradox.markdown
 
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.lightbend.paradox.{ErrorCollector, ParadoxProcessor}
 import com.lightbend.paradox.tree.Tree.Location
+import org.pegdown.ast.RootNode
 
 class IncludeDirectiveSpec extends MarkdownBaseSpec {
 
@@ -103,4 +110,46 @@ class IncludeDirectiveSpec extends MarkdownBaseSpec {
            |</div>"""))
   }
 
+  it should "parse included fragments once for all pages that include them" in {
+    val reads  = new AtomicInteger
+    val reader = new Reader {
+      override def read(text: String): RootNode = {
+        reads.incrementAndGet()
+        super.read(text)
+      }
+      override def read(source: SourceFile): RootNode = {
+        reads.incrementAndGet()
+        super.read(source)
+      }
+    }
+    val dir = Files.createTempDirectory("include").toFile
+    def write(name: String, content: String): File = {
+      val file = new File(dir, name)
+      Files.write(file.toPath, content.getBytes(StandardCharsets.UTF_8))
+      file
+    }
+    write("shared.md", "Shared\n\n<!--- #part --->\nPart\n<!--- #part --->\n\n@@include(code.scala)\n")
+    write("code.scala", "object Code\n")
+    val mappings = Seq(
+      write("a.md", "# A\n\n@@include(shared.md)\n") -> "a.md",
+      write("b.md", "# B\n\n@@include(shared.md)\n\n@@include(shared.md) { #part }\n") -> "b.md",
+      write("c.md", "# C\n\n@@include(shared.md) { #part }\n") -> "c.md"
+    )
+    val errors = new AtomicInteger
+    val parsed = new ParadoxProcessor(reader = reader).parseMarkdown(
+      mappings,
+      Map.empty,
+      new ErrorCollector {
+        override def apply(msg: String, file: File, index: Int): Unit = errors.incrementAndGet()
+      }
+    )
+    reads.get shouldEqual mappings.size + 2
+    errors.get shouldEqual 2 // for each include of the whole fragment
+    def included(root: RootNode, n: Int) = root.getChildren.get(n).asInstanceOf[IncludeNode]
+    val (a, b, c) = (parsed(0)._3, parsed(1)._3, parsed(2)._3)
+    included(b, 1).included should be theSameInstanceAs included(a, 1).included
+    included(c, 1).included should be theSameInstanceAs included(b, 2).included
+    included(b, 2).getStartIndex should not equal included(c, 1).getStartIndex
+  }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+
+import com.lightbend.paradox.{Digest, ParadoxProcessor}
+
+class IncrementalBuildSpec extends MarkdownBaseSpec {
+
+  class Site extends SiteFixture {
+    template("page", "<nav>$page.navigation$</nav><main>$page.content$</main>")
+    source("index.md", "# Index\n\n@@@ index\n* [A](a.md)\n* [B](b.md)\n@@@\n")
+    source("a.md", "# A\n\nFirst version.\n")
+    source("b.md", "# B\n\n@@snip [example](example.txt)\n")
+    source("example.txt", "val x = 1\n")
+
+    var pages     = Seq("index.md", "a.md", "b.md")
+    var processor = new ParadoxProcessor()
+
+    def build(): Map[String, String] = {
+      process(processor, mappings(pages*), incremental = true).isRight shouldBe true
+      outputs().filter(_._1.endsWith(".html"))
+    }
+
+    // replace the rendered output, to detect whether a page is rendered again
+    def mark(path: String): Unit = writeFile(new File(outputDir, path), "marked")
+  }
+
+  "Incremental builds" should "only render pages whose source has changed" in withSite(new Site) { site =>
+    site.build()
+    Seq("index.html", "a.html", "b.html").foreach(site.mark)
+    site.source("a.md", "# A\n\nSecond version.\n")
+    val html = site.build()
+    html("a.html") should include("Second version.")
+    html("index.html") shouldEqual "marked"
+    html("b.html") shouldEqual "marked"
+  }
+
+  it should "render pages whose snippets have changed" in withSite(new Site) { site =>
+    site.build()
+    Seq("index.html", "a.html", "b.html").foreach(site.mark)
+    site.source("example.txt", "val y = 2\n")
+    val html = site.build()
+    html("b.html") should include("val y = 2")
+    html("a.html") shouldEqual "marked"
+  }
+
+  it should "render all pages when the site structure changes" in withSite(new Site) { site =>
+    site.build()
+    Seq("index.html", "a.html", "b.html").foreach(site.mark)
+    site.source("a.md", "# Renamed\n\nFirst version.\n")
+    val html = site.build()
+    html.values.foreach(_ should include("Renamed"))
+  }
+
+  it should "remove pages that are no longer part of the site" in withSite(new Site) { site =>
+    site.build()
+    site.source("index.md", "# Index\n\n@@@ index\n* [A](a.md)\n@@@\n")
+    site.pages = Seq("index.md", "a.md")
+    site.build().keySet shouldEqual Set("index.html", "a.html")
+  }
+
+  it should "render all pages when the writer changes" in withSite(new Site) { site =>
+    site.build()
+    Seq("index.html", "a.html", "b.html").foreach(site.mark)
+    site.processor = new ParadoxProcessor(writer =
+      new Writer(verbatimSerializers = Writer.highlightingVerbatims(new HighlightCache(None)))
+    )
+    val html = site.build()
+    html.values.foreach(_ should not equal "marked")
+  }
+
+  "Writer fingerprints" should "identify the serializers and directives" in {
+    new Writer().fingerprint shouldEqual new Writer().fingerprint
+    new Writer().fingerprint should not equal new Writer(
+      verbatimSerializers = Writer.highlightingVerbatims(new HighlightCache(None))
+    ).fingerprint
+    new Writer().fingerprint should not equal new Writer(
+      serializerPlugins = Writer.defaultPlugins(Writer.defaultDirectives.tail)
+    ).fingerprint
+  }
+
+  they should "change with the code that defines the directives" in {
+    val directive: Writer.Context => Directive = context => VarDirective(context.properties)
+    val fingerprint = new Writer(serializerPlugins = Writer.defaultPlugins(Seq(directive))).fingerprint
+    fingerprint should include(Digest.code(classOf[IncrementalBuildSpec]))
+    fingerprint should include(Digest.code(Writer.getClass))
+  }
+
+}
@@ -140,5 +140,18 @@ class LayoutSpec extends MarkdownBaseSpec {
         "page.st" -> defaultTemplate
       )
     } should have message "StringTemplate 'noTemplate' was not found for 'newIndex.html'. Create a template or set a theme that contains one."
+    new File("newIndex.html").exists shouldBe false
   }
+
+  "Single-page and print cover templates" should "not create the target file if the template doesn't exist" in
+    withSite(new SiteFixture) { site =>
+      val template = new PageTemplate(site.templateDir)
+      val page     = PartialPageContent(Map.empty, "content")
+      val single   = new File(site.outputDir, "single.html")
+      val cover    = new File(site.outputDir, "print-cover.html")
+      a[RuntimeException] should be thrownBy template.writeSingle("missing", page, Seq(page), single)
+      a[RuntimeException] should be thrownBy template.writePrintCover("missing", page, cover)
+      single.exists shouldBe false
+      cover.exists shouldBe false
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+
+import com.lightbend.paradox.{BuildManifest, ParadoxLogger, ParadoxProcessor}
+import org.pegdown.ast.{HeaderNode, Node, ParaNode}
+
+import scala.collection.mutable.ListBuffer
+
+class LowMemorySpec extends MarkdownBaseSpec {
+
+  val sources: Seq[(String, String)] = Seq(
+    "index.md" ->
+      """# Index
+        |
+        |See the [second page][second] and @ref[the anchor](b.md#anchor).
+        |
+        |@@toc
+        |
+        |@@@ index
+        |* [A](a.md)
+        |* [B](b.md)
+        |@@@
+        |
+        |[second]: b.md
+        |""".stripMargin,
+    "a.md" ->
+      """# A
+        |
+        |@@include(fragment.md)
+        |
+        |@@@ div { .group-scala }
+        |## In a group
+        |@@@
+        |
+        |* @@snip [example.scala](example.scala)
+        |""".stripMargin,
+    "b.md" ->
+      """# B
+        |
+        |Some text with @ref[a header](a.md#included-header) and @ref[a missing one](a.md#missing).
+        |
+        |<a id="anchor"></a>
+        |""".stripMargin,
+    "fragment.md"   -> "## Included header\n\nIncluded text.\n",
+    "example.scala" -> "object Example\n"
+  )
+
+  val layout = "<nav>$page.navigation$</nav><main>$page.content$</main><a href=\"$page.next.href$\">next</a>"
+
+  class CollectingLogger extends ParadoxLogger {
+    val errors                               = ListBuffer.empty[String]
+    override def debug(msg: => String): Unit = ()
+    override def info(msg: => String): Unit  = ()
+    override def warn(msg: => String): Unit  = ()
+    override def error(msg: => String): Unit = synchronized(errors += msg)
+  }
+
+  class Site extends SiteFixture {
+    sources.foreach { case (path, text) => source(path, text) }
+    template("page", layout)
+
+    def render(lowMemory: Boolean): (Map[String, String], List[String]) = {
+      val output = temporaryDirectory()
+      val logger = new CollectingLogger
+      process(
+        new ParadoxProcessor(lowMemory = lowMemory),
+        mappings("index.md", "a.md", "b.md"),
+        logger,
+        incremental = true,
+        output = output
+      )
+      (outputs(output), logger.errors.toList)
+    }
+  }
+
+  "Low-memory builds" should "produce the same pages and errors as keeping all pages in memory" in withSite(new Site) {
+    site =>
+      val (html, errors)                   = site.render(lowMemory = false)
+      val (lowMemoryHtml, lowMemoryErrors) = site.render(lowMemory = true)
+
+      html.keySet should contain allOf ("index.html", "a.html", "b.html")
+      html("a.html") should include("Included text.")
+      html("index.html") should include("In a group")
+      lowMemoryHtml shouldEqual html
+      errors.head should include("Unknown anchor [a.html#missing]")
+      lowMemoryErrors shouldEqual errors
+  }
+
+  it should "fail if a page changes between parsing and rendering it" in withSite(new Site) { site =>
+    // changes the markdown that a.md includes while the index, which is rendered first, is rendered
+    val writer = new Writer() {
+      override def writeContent(node: Node, context: Writer.Context): String = {
+        if (context.location.tree.label.path == "index.html") site.source("fragment.md", "## Changed header\n")
+        super.writeContent(node, context)
+      }
+    }
+    val logger = new CollectingLogger
+    val processor = new ParadoxProcessor(writer = writer, lowMemory = true)
+    site.process(processor, site.mappings("index.md", "a.md", "b.md"), logger)
+    logger.errors.filter(_.contains("changed while building")) should have size 1
+    logger.errors.find(_.contains("changed while building")).get should include("a.md")
+  }
+
+  "Page outlines" should "keep what indexing and build manifests use" in withSite(new Site) { site =>
+    val root    = markdownReader.read("# A\n\nText.\n\n## B\n\n* @@snip [example.scala](example.scala)\n")
+    val outline = Index.outline(root)
+    outline.getChildren.size shouldEqual 3
+    outline.getChildren.get(0) shouldBe a[HeaderNode]
+    outline.getChildren.get(1) shouldBe a[HeaderNode]
+    root.getChildren.get(1) shouldBe a[ParaNode]
+    Index.headers(outline) shouldEqual Index.headers(root)
+    BuildManifest.dependencies(new File(site.sourceDir, "a.md"), outline, Map.empty) shouldEqual
+      BuildManifest.dependencies(new File(site.sourceDir, "a.md"), root, Map.empty)
+  }
+
+}
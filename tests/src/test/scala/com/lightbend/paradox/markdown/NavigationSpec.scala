@@ -17,6 +17,7 @@
 package com.lightbend.paradox.markdown
 
 import com.lightbend.paradox.tree.Tree.{Forest, Location}
+import org.pegdown.ast.{ClassyLinkNode, Node}
 
 class NavigationSpec extends MarkdownBaseSpec {
 
@@ -289,6 +290,53 @@ class NavigationSpec extends MarkdownBaseSpec {
     """)
   }
 
+  "Cached navigation" should "be the same as rendering the navigation for each page" in {
+    for {
+      headers  <- Seq(true, false)
+      maxDepth <- Seq(1, 2, 6)
+    } {
+      val toc   = new TableOfContents(pages = true, headers = headers, ordered = false, maxDepth = maxDepth)
+      var lists  = 0
+      val writer = new Writer() {
+        override def writeNavigation(node: Node, context: Writer.Context): String = {
+          if (!node.isInstanceOf[ClassyLinkNode]) lists += 1
+          super.writeNavigation(node, context)
+        }
+      }
+      val cache = new NavigationCache(toc, writer)
+      allLocations(site).foreach { loc =>
+        normalize(cache(loc, writerContext(loc))) shouldEqual navigation(toc, Some(loc))
+      }
+      lists shouldEqual 1
+    }
+  }
+
+  it should "render navigation that expands around the active page for each page" in {
+    val toc   = new TableOfContents(pages = true, headers = false, ordered = false, maxDepth = 1, maxExpandDepth = Some(1))
+    val cache = new NavigationCache(toc, markdownWriter)
+    allLocations(site).foreach { loc =>
+      normalize(cache(loc, writerContext(loc))) shouldEqual navigation(toc, Some(loc))
+    }
+  }
+
+  it should "render labels with links for each page" in {
+    val linked = Location.forest(
+      pages(
+        "index.md" -> "@@@ index\n* [a](a.md)\n* [b](sub/b.md)\n@@@",
+        "a.md"     -> "# A\n## See [B](sub/b.html)",
+        "sub/b.md" -> "# B\n## See [A](../a.html)"
+      )
+    )
+    val toc   = new TableOfContents(pages = true, headers = true, ordered = false, maxDepth = 6)
+    val cache = new NavigationCache(toc, markdownWriter)
+    allLocations(linked).foreach { loc =>
+      normalize(cache(loc, writerContext(loc))) shouldEqual navigation(toc, Some(loc))
+    }
+  }
+
+  def allLocations(location: Option[Location[Page]]): List[Location[Page]] =
+    location.toList.flatMap(loc => loc :: allLocations(loc.next))
+
   def navigation(toc: TableOfContents, location: Option[Location[Page]])(implicit
       context: Location[Page] => Writer.Context = writerContext
   ): String =
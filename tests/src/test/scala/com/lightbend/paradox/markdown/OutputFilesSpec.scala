@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.attribute.{BasicFileAttributes, PosixFilePermission, PosixFilePermissions}
+
+import com.lightbend.paradox.OutputFiles
+import com.lightbend.paradox.compat.Implicits._
+
+class OutputFilesSpec extends MarkdownBaseSpec {
+
+  def fileKey(file: File): AnyRef = Files.readAttributes(file.toPath, classOf[BasicFileAttributes]).fileKey
+
+  def content(file: File): String = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+
+  def build(dir: File, files: (String, String)*): Seq[File] = {
+    val outputs = new OutputFiles(dir)
+    val written = files.map { case (path, text) => outputs.write(new File(dir, path))(_.write(text)) }
+    outputs.finish()
+    written
+  }
+
+  "Output files" should "only be replaced when their content changes" in {
+    val dir                 = Files.createTempDirectory("output").toFile
+    val Seq(same, other)    = build(dir, "same.html" -> "same", "sub/other.html" -> "before")
+    val (sameKey, otherKey) = (fileKey(same), fileKey(other))
+    build(dir, "same.html" -> "same", "sub/other.html" -> "after")
+    fileKey(same) shouldEqual sameKey
+    fileKey(other) should not equal otherKey
+    content(other) shouldEqual "after"
+    dir.list.toSet shouldEqual Set("same.html", "sub", OutputFiles.Filename)
+    new File(dir, "sub").list.toSet shouldEqual Set("other.html")
+  }
+
+  it should "be replaced when changed since they were written" in {
+    val dir          = Files.createTempDirectory("output").toFile
+    val Seq(changed) = build(dir, "changed.html" -> "built")
+    Files.write(changed.toPath, "edited".getBytes(StandardCharsets.UTF_8))
+    build(dir, "changed.html" -> "built")
+    content(changed) shouldEqual "built"
+  }
+
+  it should "be readable by group and others" in {
+    val dir   = Files.createTempDirectory("output").toFile
+    val plain = new File(dir, "plain.txt")
+    Files.write(plain.toPath, "plain".getBytes(StandardCharsets.UTF_8))
+    val readable = Set(PosixFilePermission.GROUP_READ, PosixFilePermission.OTHERS_READ)
+    assume(Files.getPosixFilePermissions(plain.toPath).containsAll(readable.asJava), "umask hides files from others")
+    val Seq(page) = build(dir, "page.html" -> "page")
+    Files.getPosixFilePermissions(page.toPath).containsAll(readable.asJava) shouldBe true
+  }
+
+  it should "keep the permissions of the files they replace" in {
+    val dir       = Files.createTempDirectory("output").toFile
+    val Seq(page) = build(dir, "page.html" -> "before")
+    Files.setPosixFilePermissions(page.toPath, PosixFilePermissions.fromString("rw-rw-r--"))
+    build(dir, "page.html" -> "after")
+    PosixFilePermissions.toString(Files.getPosixFilePermissions(page.toPath)) shouldEqual "rw-rw-r--"
+  }
+
+  it should "remove files of the previous build that weren't written or kept" in {
+    val dir                = Files.createTempDirectory("output").toFile
+    val Seq(kept, removed) = build(dir, "kept.html" -> "kept", "removed.html" -> "removed")
+    val other              = new File(dir, "other.txt")
+    Files.write(other.toPath, "other".getBytes(StandardCharsets.UTF_8))
+    val outputs = new OutputFiles(dir)
+    outputs.keep(kept)
+    outputs.finish()
+    kept.exists shouldBe true
+    removed.exists shouldBe false
+    other.exists shouldBe true
+  }
+
+  it should "only clean output directories without a record of their files" in {
+    val recorded = Files.createTempDirectory("output").toFile
+    build(recorded, "page.html" -> "page")
+    OutputFiles.clean(recorded)
+    new File(recorded, "page.html").exists shouldBe true
+    val unrecorded = Files.createTempDirectory("output").toFile
+    Files.write(new File(unrecorded, "page.html").toPath, "page".getBytes(StandardCharsets.UTF_8))
+    OutputFiles.clean(unrecorded)
+    unrecorded.exists shouldBe false
+  }
+
+  "Syncing output files" should "link the files and remove unmapped files" in {
+    val source           = Files.createTempDirectory("source").toFile
+    val target           = Files.createTempDirectory("site").toFile
+    val Seq(page, asset) = build(source, "page.html" -> "page", "css/site.css" -> "css")
+    Files.write(new File(target, "stale.html").toPath, "stale".getBytes(StandardCharsets.UTF_8))
+    OutputFiles.sync(Seq(page -> "page.html", asset -> "css/site.css"), target)
+    Files.isSameFile(page.toPath, new File(target, "page.html").toPath) shouldBe true
+    Files.isSameFile(asset.toPath, new File(target, "css/site.css").toPath) shouldBe true
+    new File(target, "stale.html").exists shouldBe false
+
+    build(source, "page.html" -> "changed", "css/site.css" -> "css")
+    OutputFiles.sync(Seq(page -> "page.html"), target)
+    content(new File(target, "page.html")) shouldEqual "changed"
+    target.list.toSet shouldEqual Set("page.html")
+  }
+
+}
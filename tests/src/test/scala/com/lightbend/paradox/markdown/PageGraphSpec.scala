@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import com.lightbend.paradox.tree.Tree.Location
+
+class PageGraphSpec extends MarkdownBaseSpec {
+
+  val site = pages(
+    "index.md"  -> "@@@ index\n* [a](a.md)\n    - [a/i](a/i.md)\n    - [a/ii](a/ii.md)\n* [b](b.md)\n@@@\n",
+    "a.md"      -> "# a\n",
+    "a/i.md"    -> "# a/i\n",
+    "a/ii.md"   -> "# a/ii\n",
+    "b.md"      -> "# b\n",
+    "other.md"  -> "@@@ index\n* [c](c.md)\n@@@\n",
+    "c.md"      -> "# c\n",
+    "single.md" -> "# single\n"
+  )
+
+  def depthFirst(location: Option[Location[Page]]): List[Location[Page]] =
+    location.toList.flatMap(loc => loc :: depthFirst(loc.next))
+
+  "Linking pages" should "keep the roots in the order of the pages" in {
+    site.map(_.label.path) shouldEqual List("index.html", "other.html", "single.html")
+  }
+
+  it should "report cycles" in {
+    val cycle = the[RuntimeException] thrownBy {
+      pages("a.md" -> "@@@ index\n* [b](b.md)\n@@@\n", "b.md" -> "@@@ index\n* [a](a.md)\n@@@\n")
+    }
+    cycle.getMessage should startWith("Cycle found at: Page(a.md,a.md,")
+  }
+
+  "The page graph" should "number pages in depth-first order" in {
+    val graph = PageGraph(site)
+    graph.size shouldEqual 8
+    graph.locations shouldEqual site.flatMap(root => depthFirst(Some(root.location)))
+    (0 until graph.size).map(graph.page(_).path) shouldEqual
+      Seq("index.html", "a.html", "a/i.html", "a/ii.html", "b.html", "other.html", "c.html", "single.html")
+    graph.roots shouldEqual Seq(0, 5, 7)
+    graph.tree(5).map(_.tree.label.path) shouldEqual Seq("other.html", "c.html")
+  }
+
+  it should "link pages to their parents and children" in {
+    val graph = PageGraph(site)
+    graph.children(0) shouldEqual Seq(1, 4)
+    graph.children(1) shouldEqual Seq(2, 3)
+    graph.children(7) shouldBe empty
+    graph.parent(3) shouldEqual 1
+    graph.parent(5) shouldEqual -1
+    graph.root(3) shouldEqual 0
+    graph.root(6) shouldEqual 5
+  }
+
+  it should "find the same previous and next pages as locations" in {
+    val graph = PageGraph(site)
+    graph.locations.foreach { loc =>
+      graph.next(loc) shouldEqual loc.next
+      graph.prev(loc) shouldEqual loc.prev
+    }
+    graph.next(4) shouldEqual -1
+    graph.prev(5) shouldEqual -1
+  }
+
+  it should "index pages by path" in {
+    val graph = PageGraph(site)
+    graph.id("a/ii.html") shouldEqual 3
+    graph.id("missing.html") shouldEqual -1
+    graph.paths.keySet shouldEqual site.flatMap(_.toSet).map(_.path).toSet
+    Page.allPages(site) shouldEqual graph.paths
+  }
+
+}
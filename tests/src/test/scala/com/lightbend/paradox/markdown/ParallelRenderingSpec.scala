@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.util.concurrent.ConcurrentHashMap
+
+import com.lightbend.paradox.{Parallel, ParadoxLogger, ParadoxProcessor}
+
+import scala.collection.mutable.ListBuffer
+
+class ParallelRenderingSpec extends MarkdownBaseSpec {
+
+  val pageCount = 40
+
+  val index: String =
+    (1 to pageCount).map(i => s"* [Page $i](page$i.md)").mkString("# Index\n\n@@@ index\n", "\n", "\n@@@\n")
+
+  val sources: Seq[(String, String)] = ("index.md" -> index) +: (1 to pageCount).map { i =>
+    val next = i % pageCount + 1
+    s"page$i.md" -> (s"# Page $i\n\n## Section $i\n\nSee @ref[next](page$next.md) and @ref[missing](missing$i.md).\n" +
+      s"\n@@include(include$i.txt)\n")
+  }
+
+  val template = "<nav>$page.navigation$</nav><main>$page.content$</main><a href=\"$page.next.href$\">next</a>"
+
+  class CollectingLogger extends ParadoxLogger {
+    val errors                               = ListBuffer.empty[String]
+    override def debug(msg: => String): Unit = ()
+    override def info(msg: => String): Unit  = ()
+    override def warn(msg: => String): Unit  = ()
+    override def error(msg: => String): Unit = synchronized(errors += msg)
+  }
+
+  def renderSite(parallelism: Int): (Map[String, String], List[String]) = withSite(new SiteFixture) { site =>
+    sources.foreach { case (path, text) => site.source(path, text) }
+    (1 to pageCount).foreach(i => site.source(s"include$i.txt", "not markdown"))
+    site.template("page", template)
+    val logger    = new CollectingLogger
+    val processor = new ParadoxProcessor(parallelism = parallelism)
+    val result    = site.process(processor, site.mappings(sources.map(_._1)*), logger)
+    result.isLeft shouldBe true
+    (site.outputs(), logger.errors.toList.map(_.replace(site.sourceDir.getAbsolutePath, "")))
+  }
+
+  "Parallel parsing and rendering" should "produce the same pages and errors as sequential processing" in {
+    val (sequentialHtml, sequentialErrors) = renderSite(parallelism = 1)
+    val (parallelHtml, parallelErrors)     = renderSite(parallelism = 8)
+
+    sequentialHtml.size shouldEqual pageCount + 2
+    parallelHtml shouldEqual sequentialHtml
+    sequentialErrors should not be empty
+    parallelErrors shouldEqual sequentialErrors
+  }
+
+  "Reader" should "parse on multiple threads at once" in {
+    val texts = (1 to pageCount).map(i => s"# Page $i\n\nSome *text* with `code` and [a link](https://example.com/$i).\n")
+    new Parallel(8).map(texts)(text => markdown(text)) shouldEqual texts.map(text => markdown(text))
+  }
+
+  "Parallel" should "run nested calls on the same worker threads" in {
+    val parallel = new Parallel(3)
+    val threads  = ConcurrentHashMap.newKeySet[String]
+    val results  = parallel.map(1 to 4) { i =>
+      parallel.map(1 to 4) { j =>
+        threads.add(Thread.currentThread.getName)
+        i * j
+      }.sum
+    }
+    results shouldEqual (1 to 4).map(_ * 10)
+    parallel.map(1 to 20)(_ => threads.add(Thread.currentThread.getName))
+    threads.size should be <= 3
+  }
+
+}
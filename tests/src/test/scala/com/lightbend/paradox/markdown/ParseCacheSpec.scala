@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.nio.file.Files
+
+import org.pegdown.ast.{Node, RootNode, TextNode}
+
+import com.lightbend.paradox.{ErrorCollector, PagedErrorContext}
+import com.lightbend.paradox.compat.Implicits._
+
+class ParseCacheSpec extends MarkdownBaseSpec {
+
+  val text = prepare("""
+    |Title
+    |=====
+    |
+    |## Header with `code` and *emphasis* { #custom }
+    |
+    |Some **strong**, _emphasised_, ~~struck~~ and "quoted" text -- with 'smart' quotes... and a [link](https://example.com "title").
+    |A [reference link][ref], an ![image](image.png), <https://example.com/auto> and [[Wiki Link]].
+    |Inline <span>html</span>, a &copy; entity and HTML abbreviation.
+    |
+    |[ref]: https://example.com/ref "Reference"
+    |*[HTML]: Hyper Text Markup Language
+    |
+    |> a block quote
+    |> over two lines
+    |
+    | * bullet one
+    | * bullet two
+    |     1. ordered one
+    |     2. ordered two
+    |
+    | - [ ] open task
+    | - [x] done task
+    |
+    |Term
+    |:   Definition
+    |
+    || Left | Center | Right |
+    ||:-----|:------:|------:|
+    || a    | b      | c     |
+    || spanning cells        ||
+    |[Caption]
+    |
+    |```scala
+    |val x = 1
+    |```
+    |
+    |    indented code
+    |
+    |<div class="block">html block</div>
+    |
+    |See @ref[other page](other.md#anchor) and @var[project.name].
+    |
+    |@@snip [example](example.scala) { #example filterLabels=false }
+    |
+    |@@@ note { title="Note" .callout }
+    |Contents with a [link](https://example.com).
+    |@@@
+    |
+    |---
+    |Line
+    |break
+    """)
+
+  def dump(node: Node, depth: Int = 0): String = {
+    val text = node match {
+      case t: TextNode => s" '${t.getText}'"
+      case _           => ""
+    }
+    val root = node match {
+      case r: RootNode =>
+        s" references=${r.getReferences.asScala.map(dump(_)).mkString}" +
+          s" abbreviations=${r.getAbbreviations.asScala.map(dump(_)).mkString}"
+      case _ => ""
+    }
+    val children = node.getChildren.asScala.map(child => dump(child, depth + 1)).mkString
+    ("  " * depth) + node.toString + text + root + "\n" + children
+  }
+
+  // references and snippets in the text don't resolve, so collect errors instead of throwing
+  def render(root: RootNode): String = {
+    val location = pages("test.md" -> "# Test").head.location
+    val context  = writerContext(location).copy(error = new PagedErrorContext(new ErrorCollector, location.tree.label))
+    markdownWriter.write(root, context)
+  }
+
+  "Parse cache encoding" should "decode to an equivalent tree" in {
+    val root    = markdownReader.read(text)
+    val decoded = ParseCache.decode(ParseCache.encode(root))
+    dump(decoded) shouldEqual dump(root)
+  }
+
+  it should "render the same as the parsed tree" in {
+    val root    = markdownReader.read(text)
+    val decoded = ParseCache.decode(ParseCache.encode(root))
+    render(decoded) shouldEqual render(root)
+  }
+
+  "Parse cache" should "only parse text that hasn't been seen before" in {
+    val directory = Files.createTempDirectory("parse-cache").toFile
+    var parsed    = 0
+    def read(cache: ParseCache, text: String): RootNode = cache.read(text) {
+      parsed += 1
+      markdownReader.read(text)
+    }
+
+    val first = new ParseCache(directory, "options")
+    read(first, text)
+    read(first, "Other text")
+    parsed shouldEqual 2
+
+    val second = new ParseCache(directory, "options")
+    dump(read(second, text)) shouldEqual dump(markdownReader.read(text))
+    parsed shouldEqual 2
+    second.hits shouldEqual 1
+    second.misses shouldEqual 0
+
+    val otherOptions = new ParseCache(directory, "other options")
+    read(otherOptions, text)
+    parsed shouldEqual 3
+    otherOptions.misses shouldEqual 1
+  }
+
+  it should "remove the trees that weren't used" in {
+    val directory = Files.createTempDirectory("parse-cache").toFile
+    val first     = new ParseCache(directory, "options")
+    first.read(text)(markdownReader.read(text))
+    first.read("Old text")(markdownReader.read("Old text"))
+
+    val second = new ParseCache(directory, "options")
+    second.read(text)(markdownReader.read(text))
+    second.read("New text")(markdownReader.read("New text"))
+    second.prune() shouldEqual 1
+    directory.listFiles.length shouldEqual 2
+    second.read(text)(fail("expected a cached tree"))
+  }
+
+  it should "be keyed by the version of the parser" in {
+    new Reader().cacheKey.get should include(Reader.ParserVersion)
+  }
+
+}
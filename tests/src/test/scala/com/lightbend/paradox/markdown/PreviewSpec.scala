@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.net.{HttpURLConnection, URL}
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import com.lightbend.paradox.{NullLogger, ParadoxProcessor, PreviewServer, PreviewSite}
+import com.lightbend.paradox.template.PageTemplate
+
+class PreviewSpec extends MarkdownBaseSpec {
+
+  def write(file: File, content: String): File = {
+    file.getParentFile.mkdirs()
+    Files.write(file.toPath, content.getBytes(StandardCharsets.UTF_8))
+    file
+  }
+
+  class Fixture {
+    val sourceDir   = Files.createTempDirectory("source").toFile
+    val templateDir = Files.createTempDirectory("templates").toFile
+    val includeDir  = Files.createTempDirectory("includes").toFile
+    val index       = write(new File(sourceDir, "index.md"), "# Index\n\n@@@ index\n\n* [A](a.md)\n* [B](b.md)\n\n@@@\n")
+    val a           = write(new File(sourceDir, "a.md"), s"# A\n\n@@include(../${includeDir.getName}/included.md)\n")
+    val b           = write(new File(sourceDir, "b.md"), "# B\n\nText of B\n")
+    val included    = write(new File(includeDir, "included.md"), "Included text\n")
+    write(new File(templateDir, "page.st"), "<html><body>$page.navigation$$page.content$</body></html>")
+
+    val site: PreviewSite = new ParadoxProcessor().preview(
+      Seq(index -> "index.md", a -> "a.md", b -> "b.md"),
+      Seq(sourceDir),
+      Nil,
+      Writer.DefaultSourceSuffix,
+      Writer.DefaultTargetSuffix,
+      Writer.DefaultIllegalLinkPath,
+      Map.empty,
+      Map.empty,
+      2,
+      None,
+      false,
+      new PageTemplate(templateDir),
+      NullLogger
+    )
+  }
+
+  "Preview site" should "render pages when they are requested" in new Fixture {
+    site.paths shouldEqual Seq("a.html", "b.html", "index.html")
+    val page = site.page("a.html").get
+    page should include("Included text")
+    site.page("a.html").get should be theSameInstanceAs page
+    site.page("missing.html") shouldBe None
+  }
+
+  it should "only render changed pages again" in new Fixture {
+    val before = site.page("b.html").get
+    write(b, "# B\n\nNew text of B\n")
+    site.update(Set(b)) shouldEqual Set("b.html")
+    site.page("b.html").get should include("New text of B")
+    site.page("b.html").get should not be theSameInstanceAs(before)
+  }
+
+  it should "render pages that include a changed file again" in new Fixture {
+    write(included, "Changed include\n")
+    site.update(Set(included)) shouldEqual Set("a.html")
+    site.page("a.html").get should include("Changed include")
+  }
+
+  it should "render all pages again when the structure of the site changes" in new Fixture {
+    write(b, "# Renamed B\n")
+    site.update(Set(b)) shouldEqual Set("a.html", "b.html", "index.html")
+    site.page("index.html").get should include("Renamed B")
+  }
+
+  it should "add new sources and remove deleted ones" in new Fixture {
+    val c = write(new File(sourceDir, "c.md"), "# C\n")
+    write(index, "# Index\n\n@@@ index\n\n* [A](a.md)\n* [C](c.md)\n\n@@@\n")
+    b.delete()
+    site.update(Set(index, b, c))
+    site.paths shouldEqual Seq("a.html", "c.html", "index.html")
+  }
+
+  "Preview server" should "serve pages with a reload script, and assets" in new Fixture {
+    write(new File(sourceDir, "css/site.css"), "body {}")
+    val server = new PreviewServer(site, Nil, Seq(sourceDir), 0, NullLogger).start()
+    try {
+      def get(path: String): (Int, String) = {
+        val connection = new URL(server.url + path).openConnection.asInstanceOf[HttpURLConnection]
+        val status     = connection.getResponseCode
+        val stream     = if (status < 400) connection.getInputStream else connection.getErrorStream
+        try status -> scala.io.Source.fromInputStream(stream, "UTF-8").mkString
+        finally stream.close()
+      }
+      val (status, page) = get("")
+      status shouldEqual 200
+      page should include("Index")
+      page should include(PreviewServer.EventsPath)
+      page should endWith("</body></html>")
+      get("css/site.css") shouldEqual ((200, "body {}"))
+      get("../" + templateDir.getName + "/page.st")._1 shouldEqual 404
+      get("missing.html")._1 shouldEqual 404
+    } finally server.stop()
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.lightbend.paradox.{NullLogger, ParadoxProcessor}
+import org.pegdown.ast.RootNode
+
+class ProcessAllSpec extends MarkdownBaseSpec {
+
+  class CountingReader extends Reader {
+    val reads                                 = new AtomicInteger
+    override def read(text: String): RootNode = {
+      reads.incrementAndGet()
+      super.read(text)
+    }
+    override def read(source: SourceFile): RootNode = {
+      reads.incrementAndGet()
+      super.read(source)
+    }
+  }
+
+  class Site extends SiteFixture {
+    source("index.md", "# Index\n\nVersion $project.version$\n\n@@@ index\n\n* [Other](other.md)\n\n@@@\n")
+    source("other.md", "# Other\n\n@ref[Index](index.md)\n")
+    template("page", "<title>$page.title$</title>$page.navigation$$page.content$")
+    template("single", "<h1>$page.title$</h1>$page.content$$pages:{p | $p.content$}$")
+    template("print", "<h1>$page.title$</h1>$page.content$$pages:{p | $p.content$}$")
+    template("print-cover", "<h1>$page.title$</h1>")
+    val pages = mappings("index.md", "other.md")
+
+    def site(outputDirectory: File, properties: Map[String, String] = properties) =
+      ParadoxProcessor.SiteOutput(
+        Nil,
+        outputDirectory,
+        Writer.DefaultSourceSuffix,
+        Writer.DefaultTargetSuffix,
+        Writer.DefaultIllegalLinkPath,
+        Map.empty,
+        properties,
+        2,
+        None,
+        false,
+        List("index.html"),
+        pageTemplate
+      )
+
+    def single(outputDirectory: File, properties: Map[String, String] = properties) =
+      ParadoxProcessor.SinglePageOutput(
+        outputDirectory,
+        Writer.DefaultSourceSuffix,
+        Writer.DefaultTargetSuffix,
+        Writer.DefaultIllegalLinkPath,
+        Map.empty,
+        properties,
+        2,
+        None,
+        List("index.html"),
+        pageTemplate
+      )
+
+    def separately(siteDir: File, singleDir: File, printDir: File): Unit = {
+      val processor = new ParadoxProcessor
+      process(processor, pages, output = siteDir) shouldBe a[Right[?, ?]]
+      processSinglePage(processor, pages, output = singleDir) shouldBe a[Right[?, ?]]
+      processSinglePage(processor, pages, print = true, output = printDir) shouldBe a[Right[?, ?]]
+    }
+  }
+
+  "Processing all outputs" should "write the same outputs as processing them separately" in withSite(new Site) {
+    site =>
+      val expected = Seq.fill(3)(site.temporaryDirectory())
+      site.separately(expected(0), expected(1), expected(2))
+      for (parallelism <- Seq(1, 4)) {
+        val actual  = Seq.fill(3)(site.temporaryDirectory())
+        val results = new ParadoxProcessor(parallelism = parallelism).processAll(
+          site.pages,
+          Some(site.site(actual(0))),
+          Some(site.single(actual(1))),
+          Some(site.single(actual(2))),
+          NullLogger
+        )
+        results.site.map(_.map(_.map(_._2).toSet)) shouldEqual
+          Some(Right(Set("paradox.json", "index.html", "other.html")))
+        results.single.map(_.map(_.map(_._2))) shouldEqual Some(Right(Seq("index.html")))
+        results.print.map(_.map(_.map(_._2))) shouldEqual Some(Right(Seq("print-cover.html", "index.html")))
+        actual.map(site.outputs) shouldEqual expected.map(site.outputs)
+      }
+  }
+
+  it should "parse the pages once for outputs with the same properties" in withSite(new Site) { site =>
+    val reader = new CountingReader
+    new ParadoxProcessor(reader = reader).processAll(
+      site.pages,
+      Some(site.site(site.temporaryDirectory())),
+      Some(site.single(site.temporaryDirectory())),
+      Some(site.single(site.temporaryDirectory())),
+      NullLogger
+    )
+    reader.reads.get shouldEqual site.pages.size
+  }
+
+  it should "apply the properties of each output" in withSite(new Site) { site =>
+    val reader    = new CountingReader
+    val singleDir = site.temporaryDirectory()
+    val results   = new ParadoxProcessor(reader = reader).processAll(
+      site.pages,
+      Some(site.site(site.temporaryDirectory())),
+      Some(site.single(singleDir, site.properties + ("project.version" -> "2.0"))),
+      None,
+      NullLogger
+    )
+    results.print shouldBe None
+    reader.reads.get shouldEqual 2 * site.pages.size
+    site.outputs(singleDir)("index.html") should include("Version 2.0")
+  }
+
+}
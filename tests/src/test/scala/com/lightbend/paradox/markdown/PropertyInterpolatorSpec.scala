@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+class PropertyInterpolatorSpec extends MarkdownBaseSpec {
+
+  val properties = Map("version" -> "1.2.3", "scala.binary" -> "2.13", "a" -> "A", "empty" -> "", "dollar" -> "$a$")
+
+  def replaceEach(text: String, start: String = "$", stop: String = "$"): String =
+    properties.foldLeft(text) { case (str, (key, value)) => str.replace(start + key + stop, value) }
+
+  val texts = Seq(
+    "",
+    "no references",
+    "$version$",
+    "lib_$scala.binary$-$version$.jar",
+    "$a$$a$ $a$a$ $$a$",
+    "$undefined$ and $a$, $unclosed",
+    "$empty$-$",
+    "$a long text between dollars that is not a key$a$"
+  )
+
+  "Property interpolation" should "substitute the same values as replacing each property" in {
+    val interpolator = new PropertyInterpolator(properties)
+    texts.foreach(text => interpolator(text) shouldEqual replaceEach(text))
+  }
+
+  it should "support other delimiters" in {
+    val interpolator = new PropertyInterpolator(properties, "${", "}")
+    interpolator("v${version} ${a}${a} ${b} $a$") shouldEqual "v1.2.3 AA ${b} $a$"
+  }
+
+  it should "not substitute references in substituted values" in {
+    new PropertyInterpolator(properties)("$dollar$") shouldEqual "$a$"
+  }
+
+  it should "return the text when there is nothing to substitute" in {
+    val text = "no $references$ here"
+    new PropertyInterpolator(properties)(text) should be theSameInstanceAs text
+    new PropertyInterpolator(Map.empty)("$a$") shouldEqual "$a$"
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.{ByteArrayOutputStream, File}
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.zip.GZIPInputStream
+
+import com.lightbend.paradox.SiteAssets
+
+class SiteAssetsSpec extends MarkdownBaseSpec {
+
+  def content(file: File): String = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+
+  def gunzip(file: File): String = {
+    val in  = new GZIPInputStream(Files.newInputStream(file.toPath))
+    val out = new ByteArrayOutputStream
+    try {
+      val buffer = new Array[Byte](4096)
+      Iterator.continually(in.read(buffer)).takeWhile(_ != -1).foreach(out.write(buffer, 0, _))
+    } finally in.close()
+    new String(out.toByteArray, StandardCharsets.UTF_8)
+  }
+
+  def site(files: (String, String)*): Seq[(File, String)] = {
+    val dir = Files.createTempDirectory("site").toFile
+    files.map { case (path, text) =>
+      val file = new File(dir, path)
+      file.getParentFile.mkdirs()
+      Files.write(file.toPath, text.getBytes(StandardCharsets.UTF_8))
+      file -> path
+    }
+  }
+
+  "Site assets" should "be fingerprinted before their extension" in {
+    SiteAssets.fingerprinted("css/page.css", "abc") shouldEqual "css/page.abc.css"
+    SiteAssets.fingerprinted("lib/jquery/jquery.min.js", "abc") shouldEqual "lib/jquery/jquery.min.abc.js"
+    SiteAssets.fingerprinted("v1.0/LICENSE", "abc") shouldEqual "v1.0/LICENSE.abc"
+  }
+
+  it should "have relative references to them rewritten" in {
+    val renamed = Map("css/page.css" -> "css/page.abc.css", "fonts/a.woff" -> "fonts/a.abc.woff")
+    SiteAssets.rewrite(
+      """<link href="../css/page.css?v=1"><img src='/css/page.css'><a href="http://x.org/css/page.css">""",
+      "docs/index.html",
+      renamed
+    ) shouldEqual
+      """<link href="../css/page.abc.css?v=1"><img src='/css/page.css'><a href="http://x.org/css/page.css">"""
+    SiteAssets.rewrite(
+      """@font-face { src: url(../fonts/a.woff#a), url("../fonts/b.woff") }""",
+      "css/page.css",
+      renamed
+    ) shouldEqual """@font-face { src: url(../fonts/a.abc.woff#a), url("../fonts/b.woff") }"""
+  }
+
+  it should "be renamed in the site mappings along with a manifest" in {
+    val mappings  = site(
+      "index.html"   -> """<link href="css/page.css"><script src="js/page.js"></script>""",
+      "other.html"   -> "<p>no assets</p>",
+      "css/page.css" -> "body { background: url(../img/bg.png) }",
+      "img/bg.png"   -> "png",
+      "js/page.js"   -> "page()"
+    )
+    val out       = Files.createTempDirectory("assets").toFile
+    val processed = SiteAssets.process(mappings, Set("css/page.css", "img/bg.png", "js/page.js"), true, false, out)
+    val paths     = processed.map(_._2)
+    val css       = paths.find(_.startsWith("css/")).get
+    val png       = paths.find(_.startsWith("img/")).get
+    val js        = paths.find(_.startsWith("js/")).get
+    css should fullyMatch regex """css/page\.[0-9a-f]{12}\.css"""
+    png should fullyMatch regex """img/bg\.[0-9a-f]{12}\.png"""
+    js should fullyMatch regex """js/page\.[0-9a-f]{12}\.js"""
+    paths.toSet shouldEqual Set("index.html", "other.html", css, png, js, SiteAssets.ManifestFilename)
+
+    val files = processed.map(_.swap).toMap
+    content(files("index.html")) shouldEqual s"""<link href="$css"><script src="$js"></script>"""
+    content(files(css)) shouldEqual s"body { background: url(../$png) }"
+    files("other.html") shouldEqual mappings(1)._1
+    content(files(SiteAssets.ManifestFilename)) should include(s""""css/page.css" : "$css"""")
+  }
+
+  it should "change names when the assets they reference change" in {
+    def cssName(png: String): String = {
+      val mappings = site("css/page.css" -> "div { background: url(bg.png) }", "css/bg.png" -> png)
+      val out      = Files.createTempDirectory("assets").toFile
+      SiteAssets.process(mappings, Set("css/page.css", "css/bg.png"), true, false, out).map(_._2).head
+    }
+    cssName("before") should not equal cssName("after")
+  }
+
+  "Site files" should "be precompressed" in {
+    val mappings  = site("index.html" -> "<p>index</p>", "img/bg.png" -> "png")
+    val out       = Files.createTempDirectory("assets").toFile
+    val processed = SiteAssets.process(mappings, Set.empty, false, true, out)
+    processed.map(_._2).toSet shouldEqual Set("index.html", "img/bg.png", "index.html.gz")
+    gunzip(processed.toMap.map(_.swap).apply("index.html.gz")) shouldEqual "<p>index</p>"
+  }
+
+}
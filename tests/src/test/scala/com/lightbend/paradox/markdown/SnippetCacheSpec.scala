@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.{File, FileNotFoundException}
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+class SnippetCacheSpec extends MarkdownBaseSpec {
+
+  def writeInFile(file: File, content: String): Unit =
+    Files.write(file.toPath, content.getBytes(StandardCharsets.UTF_8))
+
+  "Snippet labels" should "be found in a single pass over the lines" in {
+    SnippetFile.labels("val x = 1 // #example") shouldEqual List("example")
+    SnippetFile.labels("<!-- #html-label -->") shouldEqual List("html-label")
+    SnippetFile.labels("#first ##") shouldEqual List("first")
+    SnippetFile.labels("#not-at-end of line") shouldEqual Nil
+    SnippetFile.labels("#a#b") shouldEqual List("b")
+    SnippetFile.labels("no labels") shouldEqual Nil
+  }
+
+  it should "extract the same snippets from cached files" in {
+    val file   = new File("tests/src/test/scala/com/lightbend/paradox/markdown/example.scala")
+    val lines  = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8).split("\n").toSeq
+    val source = new SnippetCache().apply(file)
+    source.lines shouldEqual lines
+    for {
+      labels <- Seq(
+        Nil,
+        Seq("example"),
+        Seq("indented-example"),
+        Seq("multi-indented-example"),
+        Seq("example", "example-with-label")
+      )
+      filterLabels <- Seq(true, false)
+    } Snippet(source, labels, filterLabels) shouldEqual Snippet(file, labels, filterLabels)
+    Snippet.extractLabelRange(source, "example", filterLabelLines = true) shouldEqual
+      Snippet.extractLabelRange(file, "example")
+  }
+
+  "Snippet cache" should "only read files again when they change" in {
+    val file  = Files.createTempFile("snippet", ".scala").toFile
+    val cache = new SnippetCache
+    writeInFile(file, "// #a\nval a = 1\n// #a\n")
+    file.setLastModified(1000000L)
+
+    val first = cache(file)
+    cache(file) should be theSameInstanceAs first
+    Snippet(cache(file), Seq("a"), filterLabelLines = true)._1 shouldEqual "val a = 1"
+
+    writeInFile(file, "// #a\nval a = 2\n// #a\n")
+    file.setLastModified(2000000L)
+    Snippet(cache(file), Seq("a"), filterLabelLines = true)._1 shouldEqual "val a = 2"
+  }
+
+  it should "report missing files" in {
+    a[FileNotFoundException] should be thrownBy new SnippetCache().apply(new File("does-not-exist.scala"))
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.markdown
+
+import java.io.{File, StringWriter}
+
+import com.lightbend.paradox.{ParadoxLogger, ParadoxProcessor}
+import com.lightbend.paradox.tree.Tree.Location
+
+class StreamingOutputSpec extends MarkdownBaseSpec {
+
+  val text = prepare("""
+    |# Title
+    |
+    |Some *text* with `code`, a [link](https://example.com) and a [reference][ref].
+    |
+    |1. First item
+    |
+    |    With a paragraph
+    |
+    |2. Second item
+    |    * Nested
+    |
+    |> Quoted text
+    |
+    || Column | Other  |
+    ||--------|--------|
+    || a      | b      |
+    |
+    |```scala
+    |val x = "<escaped>"
+    |```
+    |
+    |@@@ note
+    |
+    |A callout
+    |
+    |@@@
+    |
+    |@@include(tests/src/test/resources/include-nested.md)
+    |
+    |<div class="raw">html</div>
+    |
+    |[ref]: https://example.com/ref
+    |""")
+
+  "Streaming serialization" should "write the same HTML as serializing to a string" in {
+    val loc    = Location.forest(pages("test.md" -> text)).get
+    val page   = loc.tree.label
+    val output = new StringWriter
+    markdownWriter.write(page.markdown, writerContext(loc), output)
+    output.toString shouldEqual markdownWriter.write(page.markdown, writerContext(loc))
+  }
+
+  it should "write blocks before the whole page is serialized" in {
+    val loc    = Location.forest(pages("test.md" -> text)).get
+    var writes = 0
+    val output = new StringWriter {
+      override def write(str: String): Unit = {
+        writes += 1
+        super.write(str)
+      }
+    }
+    markdownWriter.writeContent(loc.tree.label.markdown, writerContext(loc), output)
+    writes should be > 1
+  }
+
+  class CountingLogger extends ParadoxLogger {
+    var errors                               = 0
+    override def debug(msg: => String): Unit = ()
+    override def info(msg: => String): Unit  = ()
+    override def warn(msg: => String): Unit  = ()
+    override def error(msg: => String): Unit = synchronized(errors += 1)
+  }
+
+  def renderSite(streamOutput: Boolean, template: String): (Map[String, String], Int) = withSite(new SiteFixture) {
+    site =>
+      site.source("index.md", text.replace("tests/src/test/resources/include-nested.md", "include.md"))
+      site.source("other.md", "# Other\n\n@ref[missing](missing.md)\n")
+      site.source("include.md", "**An include**\n")
+      site.template("page", template)
+      val logger = new CountingLogger
+      site.process(
+        new ParadoxProcessor(streamOutput = streamOutput),
+        site.mappings("index.md", "other.md"),
+        logger,
+        expectedRoots = Nil
+      )
+      (site.outputs(), logger.errors)
+  }
+
+  "Streamed page output" should "be the same as rendering the content first" in {
+    val template = "<title>$page.title$</title><main>$page.content$</main><footer>$page.next.title$</footer>"
+    renderSite(streamOutput = true, template) shouldEqual renderSite(streamOutput = false, template)
+  }
+
+  it should "report errors once when the content is inserted more than once" in {
+    val template = "<main>$page.content$</main><aside>$page.content$</aside>"
+    val streamed = renderSite(streamOutput = true, template)
+    streamed shouldEqual renderSite(streamOutput = false, template)
+    streamed._2 shouldEqual renderSite(streamOutput = true, "<main>$page.content$</main>")._2
+  }
+
+  def renderSingle(streamOutput: Boolean, parallelism: Int): (String, Int) = withSite(new SiteFixture) { site =>
+    val chapters = (1 to 20).map(n => s"chapter$n.md")
+    val index    = chapters.map(c => s"* [$c]($c)").mkString("# Book\n\n@@@ index\n\n", "\n", "\n\n@@@\n")
+    site.source("index.md", index)
+    val content  = text.replace("tests/src/test/resources/include-nested.md", "include.md")
+    chapters.zipWithIndex.foreach { case (chapter, n) =>
+      val body = if (n % 5 == 0) s"@ref[missing](missing$n.md)\n" else content
+      site.source(chapter, s"# Chapter $n\n\n$body")
+    }
+    site.source("include.md", "**An include**\n")
+    site.template("single", "<h1>$page.title$</h1>$page.content$$pages:{p | <a name=\"$p.path$\"></a>$p.content$}$")
+    val logger = new CountingLogger
+    site.processSinglePage(
+      new ParadoxProcessor(parallelism = parallelism, streamOutput = streamOutput),
+      site.mappings(("index.md" +: chapters)*),
+      logger
+    )
+    (readFile(new File(site.outputDir, "index.html")), logger.errors)
+  }
+
+  "Streamed single-page output" should "be the same as rendering the content of every page first" in {
+    val expected = renderSingle(streamOutput = false, parallelism = 1)
+    expected._1 should include("<a name=\"chapter19.html\"></a>")
+    expected._2 should be > 0
+    renderSingle(streamOutput = true, parallelism = 1) shouldEqual expected
+  }
+
+  it should "be the same when pages are rendered ahead on several threads" in {
+    renderSingle(streamOutput = true, parallelism = 4) shouldEqual renderSingle(streamOutput = false, parallelism = 1)
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 - 2019 Lightbend, Inc. <http://www.lightbend.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lightbend.paradox.tree
+
+import com.lightbend.paradox.tree.Tree.{leaf, node, Location}
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class TreeSpec extends AnyFlatSpec with Matchers {
+
+  val tree = node("a", node("b", leaf("c"), leaf("d")), node("e", node("f", leaf("g"))), leaf("h"))
+
+  def rebuilt(location: Location[String]): Location[String] =
+    Location(location.tree, location.lefts, location.rights, location.parents)
+
+  def depthFirst(location: Option[Location[String]]): List[Location[String]] =
+    location.toList.flatMap(loc => loc :: depthFirst(loc.next))
+
+  "Locations" should "traverse the tree in depth-first order" in {
+    depthFirst(Some(tree.location)).map(_.tree.label) shouldEqual List("a", "b", "c", "d", "e", "f", "g", "h")
+    depthFirst(Some(tree.location)).reverse.map(loc => loc.prev.map(_.tree.label)) shouldEqual
+      List(Some("g"), Some("f"), Some("e"), Some("d"), Some("c"), Some("b"), Some("a"), None)
+  }
+
+  it should "reuse the parent location moved from" in {
+    val b = tree.location.leftmostChild.get
+    val e = b.right.get
+    val g = e.leftmostChild.get.leftmostChild.get
+    b.parent.get should be theSameInstanceAs b.parent.get
+    e.parent.get should be theSameInstanceAs b.parent.get
+    g.root should be theSameInstanceAs b.parent.get
+    g.path.map(_.tree.label) shouldEqual List("g", "f", "e", "a")
+    g.nextRight.map(_.tree.label) shouldEqual Some("h")
+  }
+
+  it should "find the same parents as locations without a known parent" in {
+    depthFirst(Some(tree.location)).foreach { loc =>
+      rebuilt(loc).parent shouldEqual loc.parent
+      rebuilt(loc).path shouldEqual loc.path
+      rebuilt(loc).next shouldEqual loc.next
+      rebuilt(loc).prev shouldEqual loc.prev
+    }
+  }
+
+  it should "rebuild the parent of a modified location" in {
+    val c = tree.location.leftmostChild.get.leftmostChild.get
+    c.set(leaf("x")).parent.map(_.tree.children.map(_.label)) shouldEqual Some(List("x", "d"))
+    c.set(leaf("x")).root.tree.toSet shouldEqual Set("a", "b", "x", "d", "e", "f", "g", "h")
+  }
+
+}